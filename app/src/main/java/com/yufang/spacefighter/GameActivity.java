@@ -4,9 +4,35 @@ import android.graphics.Point;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.view.Display;
+import android.widget.Toast;
+
+import com.yufang.spacefighter.logger.Log;
+import com.yufang.spacefighter.logger.LogWrapper;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
 
 public class GameActivity extends AppCompatActivity {
 
+    //"vsync" selects the Choreographer driven loop, anything else the sleep loop
+    public static final String EXTRA_FRAME_PACING = "frame_pacing";
+
+    //index of the level in the compiled level pack, the first one by default
+    public static final String EXTRA_LEVEL = "level";
+
+    //a network game: "host:port" of every player in player order, numeric addresses so
+    //nothing is looked up on the main thread
+    public static final String EXTRA_PEERS = "peers";
+
+    //index of this device in the peers
+    public static final String EXTRA_PLAYER = "player";
+
+    //seed every device of a network game plays with
+    public static final String EXTRA_SEED = "seed";
+
+    //rank of the kept run to race as a ghost, 0 for the best; no ghost when missing
+    public static final String EXTRA_GHOST = "ghost";
+
     //declaring gameview
     private GameView gameView;
 
@@ -14,6 +40,11 @@ public class GameActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        //routing the logger to logcat so frame statistics reach the field logs
+        if (Log.getLogNode() == null) {
+            Log.setLogNode(new LogWrapper());
+        }
+
         //Getting display object
         Display display = getWindowManager().getDefaultDisplay();
 
@@ -23,11 +54,44 @@ public class GameActivity extends AppCompatActivity {
 
         //Initializing game view object
         //this time we are also passing the screen size to the GameView constructor
-        gameView = new GameView(this, size.x, size.y);
+        int pacing = "vsync".equals(getIntent().getStringExtra(EXTRA_FRAME_PACING))
+                ? GameView.PACING_VSYNC : GameView.PACING_SLEEP;
+        int level = getIntent().getIntExtra(EXTRA_LEVEL, 0);
+        String peers = getIntent().getStringExtra(EXTRA_PEERS);
+        long seed = peers != null ? getIntent().getLongExtra(EXTRA_SEED, 0) : System.nanoTime();
+        gameView = new GameView(this, size.x, size.y, seed, pacing, level);
+
+        if (peers != null) {
+            joinSession(peers, getIntent().getIntExtra(EXTRA_PLAYER, 0));
+        } else if (savedInstanceState != null) {
+            //recreated after the process was killed, carrying on with the interrupted session
+            gameView.restoreSnapshot();
+        } else if (getIntent().hasExtra(EXTRA_GHOST)) {
+            gameView.raceGhost(getIntent().getIntExtra(EXTRA_GHOST, 0));
+        }
 
         //adding it to contentview
         setContentView(gameView);
     }
+
+    //falls back to playing alone if the peers cannot be used
+    private void joinSession(String peers, int player) {
+        String[] entries = peers.split(",");
+        InetSocketAddress[] addresses = new InetSocketAddress[entries.length];
+        try {
+            for (int i = 0; i < entries.length; i++) {
+                String entry = entries[i].trim();
+                int colon = entry.lastIndexOf(':');
+                addresses[i] = new InetSocketAddress(entry.substring(0, colon),
+                        Integer.parseInt(entry.substring(colon + 1)));
+            }
+            gameView.joinSession(player, addresses);
+        } catch (IOException | RuntimeException e) {
+            Log.e("GameActivity", "Cannot join network game " + peers + ": " + e.getMessage());
+            Toast.makeText(this, "Cannot join the network game", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     //pausing the game when activity is paused
     @Override
     protected void onPause() {
@@ -41,4 +105,19 @@ public class GameActivity extends AppCompatActivity {
         super.onResume();
         gameView.resume();
     }
+
+    //ending the loop thread, and handing the sprites back so the next game decodes into them
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        gameView.release();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            GameView.trimSprites();
+        }
+    }
 }
\ No newline at end of file
@@ -9,57 +9,176 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.content.SharedPreferences;
+import android.content.res.AssetFileDescriptor;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.media.MediaPlayer;
 import android.os.IBinder;
+import android.view.Display;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
+import android.view.WindowManager;
 import android.widget.Toast;
 
-import java.util.ArrayList;
-
-
-public class GameView extends SurfaceView implements Runnable {
+import com.yufang.spacefighter.anim.SpriteLoader;
+import com.yufang.spacefighter.audio.AudioEngine;
+import com.yufang.spacefighter.audio.Sounds;
+import com.yufang.spacefighter.input.BoostInput;
+import com.yufang.spacefighter.input.InputQueue;
+import com.yufang.spacefighter.level.Level;
+import com.yufang.spacefighter.level.LevelPack;
+import com.yufang.spacefighter.logger.Log;
+import com.yufang.spacefighter.anim.SpriteAtlas;
+import com.yufang.spacefighter.ecs.Projectiles;
+import com.yufang.spacefighter.ecs.SpriteId;
+import com.yufang.spacefighter.ecs.World;
+import com.yufang.spacefighter.fx.ParticleEmitter;
+import com.yufang.spacefighter.fx.ParticleRenderer;
+import com.yufang.spacefighter.fx.ParticleSystem;
+import com.yufang.spacefighter.loop.ChoreographerFrameDriver;
+import com.yufang.spacefighter.loop.FrameDriver;
+import com.yufang.spacefighter.loop.SleepFrameDriver;
+import com.yufang.spacefighter.net.LockstepSession;
+import com.yufang.spacefighter.net.UdpTransport;
+import com.yufang.spacefighter.perf.DeviceStateMonitor;
+import com.yufang.spacefighter.perf.FrameStats;
+import com.yufang.spacefighter.perf.PerfHud;
+import com.yufang.spacefighter.perf.QualityGovernor;
+import com.yufang.spacefighter.replay.Ghost;
+import com.yufang.spacefighter.replay.GhostStore;
+import com.yufang.spacefighter.replay.Replay;
+import com.yufang.spacefighter.replay.ReplayRecorder;
+import com.yufang.spacefighter.replay.SessionSnapshot;
+import com.yufang.spacefighter.sim.GameSimulation;
+import com.yufang.spacefighter.sim.SimConfig;
+import com.yufang.spacefighter.view.Camera;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+public class GameView extends SurfaceView implements FrameDriver.Callback {
+
+    public static final String TAG = "GameView";
+
+    //frame pacing modes, see FrameDriver
+    public static final int PACING_SLEEP = 0;
+    public static final int PACING_VSYNC = 1;
+
+    //length of one simulation tick
+    public static final long TICK_NANOS = 1000000000L / 60;
 
     volatile boolean playing;
-    private Thread gameThread = null;
-    private Player player;
+    private FrameDriver frameDriver;
 
     private Paint paint;
+
+    //bullets are drawn as short streaks, all of them in one drawLines call
+    private Paint bulletPaint;
+    private float[] bulletLines;
+    private int bulletLineCount;
     private Canvas canvas;
     private SurfaceHolder surfaceHolder;
 
-    private Enemy enemies;
+    //frames and animations for the sprite component of the simulation's entities
+    private Sprites sprites;
+
+    //the simulation works in world units, the same on every device; this maps them onto
+    //the screen
+    private final Camera camera = new Camera(SimConfig.WORLD_WIDTH, SimConfig.WORLD_HEIGHT);
+
+    //decodes the sprites for this screen, kept across games so their bitmaps are reused
+    private static SpriteLoader spriteLoader;
+
+    //share of the heap the sprites may take, handed out and pooled together
+    private static final int SPRITE_BUDGET_DIVISOR = 8;
+
+    //ticks between the animations of consecutive entities, so ships of a kind do not pulse
+    //in step
+    private static final int ANIMATION_PHASE = 5;
+
+    //the deterministic game state, everything that is not drawing lives here
+    private GameSimulation simulation;
+
+    //records the input of this session so it can be replayed later, null in a network game
+    private ReplayRecorder recorder;
+
+    //the network game this device plays in, null when playing alone
+    private LockstepSession session;
+    private UdpTransport transport;
+
+    //where the last finished session is saved
+    public static final String REPLAY_FILE_NAME = "last_run.sfr";
 
-    //created a reference of the class Friend
-    private Friend friend;
+    //the best runs, raced as ghosts
+    public static final String GHOST_FILE_NAME = "ghosts.sfg";
+    public static final int MAX_GHOSTS = 500;
 
+    //the recorded run raced against, null when racing nobody
+    private Ghost ghost;
+    private Paint ghostPaint;
 
-    private ArrayList<Star> stars = new
-            ArrayList<Star>();
+    //the session in progress, saved on pause so a killed process can carry on with it
+    public static final String SNAPSHOT_FILE_NAME = "session.sfs";
 
-    //defining a boom object to display blast
-    private Boom boom;
+    //snapshot file access off the game and UI threads, one at a time in order
+    private static final ExecutorService snapshotIo = Executors.newSingleThreadExecutor();
 
-    //a screenX holder
-    int screenX;
+    //the compiled levels, an uncompressed asset so it can be mapped in place
+    public static final String LEVEL_PACK = "levels.sfl";
 
-    //to count the number of Misses
-    int countMisses;
+    //touch events travel from the UI thread to the game thread through this queue
+    private final InputQueue inputQueue = new InputQueue(256);
+    private final BoostInput boostInput = new BoostInput(inputQueue);
 
-    //indicator that the enemy has just entered the game screen
-    boolean flag ;
+    //explosions: a burst of fire and one of sparks for every boom the simulation makes
+    private static final int MAX_PARTICLES = 2048;
+    private final ParticleEmitter fire = new ParticleEmitter();
+    private final ParticleEmitter sparks = new ParticleEmitter();
+    private final ParticleSystem particles = new ParticleSystem(MAX_PARTICLES, fire, sparks);
+    private final ParticleRenderer particleRenderer = new ParticleRenderer(particles);
+
+    //sound effects, started from the game thread without ever waiting on the audio thread
+    private final AudioEngine audio = new AudioEngine();
+
+    //only used to make the stars twinkle, never feeds back into the simulation
+    private final Random twinkle = new Random();
+
+    //frame timings and the overlay that shows them, toggled with a two finger tap
+    private FrameStats frameStats;
+    private PerfHud perfHud;
+
+    //lowers drawing quality when frames are late, the device is hot or the battery is low
+    private QualityGovernor governor;
+    private DeviceStateMonitor deviceStateMonitor;
+    private long lastRenderNanos;
+
+    //dirty-rect renderer state: the area the sprites covered last frame
+    private boolean fullRedraw = true;
+    private final Rect dirtyRect = new Rect();
+    private final Rect spriteBounds = new Rect();
+    private final Rect lastSpriteBounds = new Rect();
+    private final Rect screenBounds = new Rect();
+    private static final Rect SCORE_AREA = new Rect(0, 0, 650, 70);
+
+    //how often the frame timings are written to the log
+    private static final int STATS_EXPORT_FRAMES = 600;
+    private int framesUntilExport = STATS_EXPORT_FRAMES;
 
     //an indicator if the game is Over
     private boolean isGameOver ;
 
-    //the score holder
-    int score;
-
     //the high Scores Holder
     int highScore[] = new int[4];
 
@@ -67,36 +186,71 @@ public class GameView extends SurfaceView implements Runnable {
     SharedPreferences sharedPreferences;
 
     public GameView(Context context, int screenX, int screenY) {
+        this(context, screenX, screenY, System.nanoTime(), PACING_SLEEP, 0);
+    }
+
+    public GameView(Context context, int screenX, int screenY, long seed, int pacing, int level) {
         super(context);
-        player = new Player(context, screenX, screenY);
+        camera.setViewport(screenX, screenY);
+        sprites = new Sprites(context, getSpriteLoader(context, camera.getScale()));
 
         surfaceHolder = getHolder();
         paint = new Paint();
-
-        int starNums = 100;
-        for (int i = 0; i < starNums; i++) {
-            Star s = new Star(screenX, screenY);
-            stars.add(s);
+        bulletPaint = new Paint();
+        bulletPaint.setColor(Color.YELLOW);
+        bulletPaint.setStrokeWidth(3);
+        ghostPaint = new Paint();
+        ghostPaint.setAlpha(96);
+
+        fire.count = 48;
+        fire.minSpeed = 1;
+        fire.maxSpeed = 6;
+        fire.minLife = 20;
+        fire.maxLife = 40;
+        fire.drag = 0.9f;
+        fire.color = 0xFFFF7A1A;
+        fire.size = 6;
+        sparks.count = 16;
+        sparks.minSpeed = 8;
+        sparks.maxSpeed = 16;
+        sparks.minLife = 8;
+        sparks.maxLife = 16;
+        sparks.drag = 0.95f;
+        sparks.gravity = 0.3f;
+        sparks.color = 0xFFFFF0B0;
+        sparks.size = 2;
+
+        //the simulation only needs the sprite sizes for collision and spawning
+        SimConfig config = new SimConfig();
+        config.playerWidth = sprites.getWidth(SpriteId.PLAYER);
+        config.playerHeight = sprites.getHeight(SpriteId.PLAYER);
+        config.enemyWidth = sprites.getWidth(SpriteId.ENEMY);
+        config.enemyHeight = sprites.getHeight(SpriteId.ENEMY);
+        config.friendWidth = sprites.getWidth(SpriteId.FRIEND);
+        config.friendHeight = sprites.getHeight(SpriteId.FRIEND);
+        applyLevel(context, level, config);
+
+        //logging the seed so that a run can be reproduced from a bug report
+        Log.i(TAG, "Starting simulation with seed " + seed);
+        simulation = new GameSimulation(config, seed);
+        recorder = new ReplayRecorder(simulation);
+
+        //picking the loop driver, the vsync one adapts to the panel's refresh rate
+        if (pacing == PACING_VSYNC) {
+            Display display = ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE))
+                    .getDefaultDisplay();
+            frameDriver = new ChoreographerFrameDriver(this, TICK_NANOS, display);
+        } else {
+            frameDriver = new SleepFrameDriver(this);
         }
-
-        //single enemy initialization
-        enemies = new Enemy(context, screenX, screenY);
-
-        //initializing boom object
-        boom = new Boom(context);
-
-        //initializing the Friend class object
-        friend = new Friend(context, screenX, screenY);
-
-        this.screenX = screenX;
-
-        countMisses = 0;
+        frameStats = new FrameStats(frameDriver.getFrameIntervalNanos());
+        perfHud = new PerfHud(frameStats);
+        governor = new QualityGovernor(frameDriver.getFrameIntervalNanos());
+        deviceStateMonitor = new DeviceStateMonitor(context, governor);
+        Log.i(TAG, "Frame pacing " + (pacing == PACING_VSYNC ? "vsync" : "sleep"));
 
         isGameOver = false;
 
-        //setting the score to 0 initially
-        score = 0;
-
         sharedPreferences = context.getSharedPreferences("SHAR_PREF_NAME",Context.MODE_PRIVATE);
 
 //initializing the array high scores with the previous values
@@ -107,106 +261,119 @@ public class GameView extends SurfaceView implements Runnable {
     }
 
 
-    @Override
-    public void run() {
-        while (playing) {
-            update();
-            draw();
-            control();
+    //sets the rules and waves of a level, the defaults stay if the pack cannot be read
+    private static void applyLevel(Context context, int index, SimConfig config) {
+        try {
+            AssetFileDescriptor afd = context.getAssets().openFd(LEVEL_PACK);
+            FileInputStream in = afd.createInputStream();
+            try {
+                LevelPack pack = LevelPack.map(in.getChannel(),
+                        afd.getStartOffset(), afd.getLength());
+                if (index < 0 || index >= pack.getLevelCount()) {
+                    index = 0;
+                }
+                Level level = pack.getLevel(index);
+                level.applyTo(config);
+                Log.i(TAG, "Playing level " + level.getName());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to load levels: " + e.getMessage());
         }
     }
 
-    private void update() {
-        //incrementing score as time passes
-        score++;
-
-        player.update();
-
-        //setting boom outside the screen
-        boom.setX(-250);
-        boom.setY(-250);
+    @Override
+    public boolean isRunning() {
+        return playing;
+    }
 
-        for (Star s : stars) {
+    @Override
+    public void tick(long tickEndNanos) {
+        long start = System.nanoTime();
+        update(tickEndNanos);
+        frameStats.record(FrameStats.PHASE_UPDATE, System.nanoTime() - start);
+    }
 
-            s.update(player.getSpeed());
+    @Override
+    public void render(float alpha) {
+        long now = System.nanoTime();
+        //the vsync driver measures its interval as it goes, late is judged against that
+        long interval = frameDriver.getFrameIntervalNanos();
+        frameStats.setFrameBudgetNanos(interval);
+        governor.setBaseBudgetNanos(interval);
+        long frameCap = governor.getFrameCapNanos();
+        if (frameCap > 0 && playing && lastRenderNanos != 0
+                && now - lastRenderNanos < frameCap - frameCap / 4) {
+            //capped, the simulation ticked but this vsync is not drawn
+            return;
         }
-
-        //setting the flag true when the enemy just enters the screen
-        if(enemies.getX()==screenX){
-            flag = true;
+        if (lastRenderNanos != 0 && governor.onFrame(now - lastRenderNanos)) {
+            Log.i(TAG, "Quality level " + governor.getLevel());
+            fullRedraw = true;
         }
+        lastRenderNanos = now;
 
-        enemies.update(player.getSpeed());
-        //if collision occurs with player
-        if (Rect.intersects(player.getDetectCollision(), enemies.getDetectCollision())) {
-
-            //displaying boom at that location
-            boom.setX(enemies.getX());
-            boom.setY(enemies.getY());
-
-
-            //playing a sound at the collision between player and the enemy
-
-
-            enemies.setX(-200);
-        }// the condition where player misses the enemy
-        else{
-
-            //if the enemy has just entered
-            if(flag){
-
-                //if player's x coordinate is more than the enemies's x coordinate.i.e. enemy has just passed across the player
-                if(player.getDetectCollision().exactCenterX()>=enemies.getDetectCollision().exactCenterX()){
-
-                    //increment countMisses
-                    countMisses++;
+        frameStats.frame(now);
+        draw(alpha);
 
+        if (--framesUntilExport == 0) {
+            perfHud.export();
+            framesUntilExport = STATS_EXPORT_FRAMES;
+        }
+    }
 
-                    //setting the flag false so that the else part is executed only when new enemy enters the screen
-                    flag = false;
-                    //if no of Misses is equal to 3, then game is over.
-                    if(countMisses==3){
+    private void update(long tickEndNanos) {
+        boolean boost = boostInput.advance(tickEndNanos);
+        if (session != null) {
+            updateSession(boost);
+            return;
+        }
+        recorder.record(simulation.getTick(), boost);
+        int events = simulation.step(boost);
+        if (ghost != null) {
+            ghost.advanceTo(simulation.getTick());
+        }
+        updateParticles();
+        playSounds(events);
 
-                        //setting playing false to stop the game.
-                        playing = false;
-                        isGameOver = true;
+        //if no of Misses reached the limit, then game is over.
+        if ((events & GameSimulation.EVENT_GAME_OVER) != 0
+                && (events & GameSimulation.EVENT_FRIEND_DESTROYED) == 0) {
 
-                        //Assigning the scores to the highscore integer array
-                        for(int i=0;i < 4;i++){
-                            if(highScore[i] < score){
+            //setting playing false to stop the game.
+            playing = false;
+            isGameOver = true;
 
-                                final int finalI = i;
-                                highScore[i] = score;
-                                break;
-                            }
-                        }
+            //Assigning the scores to the highscore integer array
+            int score = simulation.getScore();
+            for(int i=0;i < 4;i++){
+                if(highScore[i] < score){
 
-                        //storing the scores through shared Preferences
-                        SharedPreferences.Editor e = sharedPreferences.edit();
-                        for(int i=0;i < 4;i++){
-                            int j = i+1;
-                            e.putInt("score"+j,highScore[i]);
-                        }
-                        e.apply();
-                    }
+                    final int finalI = i;
+                    highScore[i] = score;
+                    break;
                 }
             }
+
+            //storing the scores through shared Preferences
+            SharedPreferences.Editor e = sharedPreferences.edit();
+            for(int i=0;i < 4;i++){
+                int j = i+1;
+                e.putInt("score"+j,highScore[i]);
+            }
+            e.apply();
         }
 
-        //updating the friend ships coordinates
-        friend.update(player.getSpeed());
         //checking for a collision between player and a friend
-        if(Rect.intersects(player.getDetectCollision(),friend.getDetectCollision())){
-
-            //displaying the boom at the collision
-            boom.setX(friend.getX());
-            boom.setY(friend.getY());
+        if ((events & GameSimulation.EVENT_FRIEND_DESTROYED) != 0) {
             //setting playing false to stop the game
             playing = false;
             //setting the isGameOver true as the game is over
             isGameOver = true;
 
             //Assigning the scores to the highscore integer array
+            int score = simulation.getScore();
             for(int i=0;i<4;i++){
                 if(highScore[i]>score){
 
@@ -224,58 +391,269 @@ public class GameView extends SurfaceView implements Runnable {
             }
             e.apply();
         }
+
+        if ((events & GameSimulation.EVENT_GAME_OVER) != 0) {
+            saveReplay();
+            keepGhost();
+        }
     }
 
-    private void draw() {
-        if (surfaceHolder.getSurface().isValid()) {
-            canvas = surfaceHolder.lockCanvas();
-            canvas.drawColor(Color.BLACK);
+    //a network game has no replay and no high score, the players' ships are the only change
+    private void updateSession(boolean boost) {
+        int events;
+        try {
+            events = session.tick(boost);
+        } catch (IOException e) {
+            Log.e(TAG, "Network game failed: " + e.getMessage());
+            playing = false;
+            isGameOver = true;
+            return;
+        }
+        updateParticles();
+        playSounds(events);
+        if (session.isGameOverConfirmed()) {
+            playing = false;
+            isGameOver = true;
+        }
+    }
 
+    /**
+     * Turns this game into a network game with a player on each of the given addresses, in
+     * player order. Every device must be created with the same seed and level and join with
+     * the same addresses. Call before the first resume.
+     *
+     * @param localPlayer the index of this device's address
+     */
+    public void joinSession(int localPlayer, InetSocketAddress[] addresses) throws IOException {
+        SimConfig config = simulation.getConfig().copy();
+        config.playerCount = addresses.length;
+        simulation = new GameSimulation(config, simulation.getSeed());
+        transport = new UdpTransport(
+                new InetSocketAddress(addresses[localPlayer].getPort()), addresses.length);
+        for (int p = 0; p < addresses.length; p++) {
+            if (p != localPlayer) {
+                transport.setPlayerAddress(p, addresses[p]);
+            }
+        }
+        session = new LockstepSession(simulation, transport, localPlayer,
+                LockstepSession.DEFAULT_INPUT_DELAY);
+        recorder = null;
+        fullRedraw = true;
+        Log.i(TAG, "Joined network game as player " + localPlayer + " of " + addresses.length);
+    }
 
-            paint.setColor(Color.WHITE);
-            paint.setTextSize(20);
+    private void playSounds(int events) {
+        if ((events & GameSimulation.EVENT_ENEMY_DESTROYED) != 0) {
+            audio.play(Sounds.EXPLOSION, 200);
+        }
+        if ((events & GameSimulation.EVENT_ENEMY_MISSED) != 0) {
+            audio.play(Sounds.MISS, 255);
+        }
+        if ((events & GameSimulation.EVENT_FRIEND_DESTROYED) != 0) {
+            audio.play(Sounds.CRASH, 255);
+        }
+        if ((events & GameSimulation.EVENT_GAME_OVER) != 0) {
+            audio.play(Sounds.GAME_OVER, 255);
+        }
+    }
 
-            for (Star s : stars) {
-                paint.setStrokeWidth(s.getStarWidth());
-                canvas.drawPoint(s.getX(), s.getY(), paint);
+    //booms live for one tick, so every one in the world is new and starts an explosion
+    private void updateParticles() {
+        particles.setBudget(governor.getParticleBudget(MAX_PARTICLES));
+        particles.update();
+        World world = simulation.getWorld();
+        for (int e = 0; e < world.count; e++) {
+            if (world.sprite[e] == SpriteId.BOOM) {
+                particles.emit(fire, world.x[e], world.y[e]);
+                particles.emit(sparks, world.x[e], world.y[e]);
             }
+        }
+    }
 
-            //drawing the score on the game screen
-            paint.setTextSize(30);
-            canvas.drawText("Score:"+score,100,50,paint);
+    //the replay is taken on the game thread and written on the file thread
+    private void saveReplay() {
+        final File file = new File(getContext().getFilesDir(), REPLAY_FILE_NAME);
+        final Replay replay = recorder.toReplay();
+        snapshotIo.execute(new Runnable() {
+            @Override
+            public void run() {
+                try (FileOutputStream out = new FileOutputStream(file)) {
+                    replay.writeTo(out);
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to save replay: " + e.getMessage());
+                }
+            }
+        });
+    }
 
-            canvas.drawBitmap(
-                    player.getBitmap(),
-                    player.getX(),
-                    player.getY(),
-                    paint);
+    //the run joins the ghosts if it is among the best, on the file thread
+    private void keepGhost() {
+        final File file = new File(getContext().getFilesDir(), GHOST_FILE_NAME);
+        final Replay replay = recorder.toReplay();
+        snapshotIo.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int rank = new GhostStore(file, MAX_GHOSTS).add(replay);
+                    Log.i(TAG, "Run scored " + replay.getScore() + ", ghost rank " + rank);
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to keep ghost: " + e.getMessage());
+                }
+            }
+        });
+    }
 
+    /**
+     * Races the kept run of the given rank, 0 being the best: the game is played on that
+     * run's seed and level and its ship flies along as a ghost. Call before the first resume.
+     *
+     * @return false if there is no run of that rank
+     */
+    public boolean raceGhost(final int rank) {
+        final File file = new File(getContext().getFilesDir(), GHOST_FILE_NAME);
+        Replay replay;
+        try {
+            replay = snapshotIo.submit(new Callable<Replay>() {
+                @Override
+                public Replay call() throws IOException {
+                    if (!file.exists()) {
+                        return null;
+                    }
+                    GhostStore store = new GhostStore(file, MAX_GHOSTS);
+                    return rank < store.size() ? store.read(rank) : null;
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Failed to load ghost: " + e.getCause().getMessage());
+            return false;
+        }
+        if (replay == null) {
+            return false;
+        }
+        simulation = new GameSimulation(replay.getConfig(), replay.getSeed());
+        recorder = new ReplayRecorder(simulation);
+        ghost = new Ghost(replay);
+        fullRedraw = true;
+        Log.i(TAG, "Racing ghost " + rank + " scoring " + replay.getScore()
+                + " with seed " + replay.getSeed());
+        return true;
+    }
+
+    //position between the previous and the current tick
+    private static float lerp(int previous, int current, float alpha) {
+        return previous + (current - previous) * alpha;
+    }
+
+    private void draw(float alpha) {
+        if (surfaceHolder.getSurface().isValid()) {
+            World world = simulation.getWorld();
+            SpriteAtlas atlas = sprites.getAtlas();
+            long tick = simulation.getTick();
+
+            //the dirty-rect renderer only repaints where sprites were or are now,
+            //anything covering the whole screen needs a full frame
+            boolean partial = governor.useDirtyRects() && !fullRedraw
+                    && !isGameOver && !perfHud.isVisible();
+            dirtyRect.set(lastSpriteBounds);
+            lastSpriteBounds.setEmpty();
+            for (int e = 0; e < world.count; e++) {
+                int frame = sprites.getFrame(world.sprite[e],
+                        world.hasFlag(e, World.FLAG_BOOSTING), tick, e * ANIMATION_PHASE);
+                if (frame >= 0) {
+                    atlas.getBounds(frame, lerp(world.prevX[e], world.x[e], alpha),
+                            lerp(world.prevY[e], world.y[e], alpha), spriteBounds);
+                    lastSpriteBounds.union(spriteBounds);
+                }
+            }
+            int ghostFrame = -1;
+            World ghostWorld = null;
+            int ghostShip = 0;
+            if (ghost != null && !ghost.isFinished()) {
+                ghostWorld = ghost.getSimulation().getWorld();
+                ghostShip = ghost.getSimulation().getPlayer();
+                ghostFrame = sprites.getFrame(SpriteId.PLAYER,
+                        ghostWorld.hasFlag(ghostShip, World.FLAG_BOOSTING), tick, 0);
+                if (ghostFrame >= 0) {
+                    atlas.getBounds(ghostFrame,
+                            lerp(ghostWorld.prevX[ghostShip], ghostWorld.x[ghostShip], alpha),
+                            lerp(ghostWorld.prevY[ghostShip], ghostWorld.y[ghostShip], alpha),
+                            spriteBounds);
+                    lastSpriteBounds.union(spriteBounds);
+                }
+            }
+            collectBullets(simulation.getProjectiles(), alpha);
+            particleRenderer.prepare(alpha, lastSpriteBounds);
+            //the bounds are in world units, the dirty rect in screen pixels
+            toScreen(lastSpriteBounds, screenBounds);
+            lastSpriteBounds.set(screenBounds);
+            dirtyRect.union(lastSpriteBounds);
+            dirtyRect.union(SCORE_AREA);
+
+            long start = System.nanoTime();
+            canvas = partial ? surfaceHolder.lockCanvas(dirtyRect) : surfaceHolder.lockCanvas();
+            fullRedraw = false;
+            long locked = System.nanoTime();
+            frameStats.record(FrameStats.PHASE_LOCK, locked - start);
+
+            canvas.drawColor(Color.BLACK);
+
+            //the world is drawn in world units, clipped to its own edges
+            canvas.save();
+            canvas.clipRect(camera.getViewLeft(), camera.getViewTop(),
+                    camera.getViewRight(), camera.getViewBottom());
+            canvas.translate(camera.getTranslateX(), camera.getTranslateY());
+            canvas.scale(camera.getScale(), camera.getScale());
+
+            paint.setColor(Color.WHITE);
+            paint.setTextSize(20);
 
-            canvas.drawBitmap(
-                    enemies.getBitmap(),
-                    enemies.getX(),
-                    enemies.getY(),
-                    paint
-            );
+            //stars are the point sprites, the governor may thin them out
+            int visibleStars = governor.getVisibleStars(simulation.getConfig().starCount);
+            for (int e = 0; e < world.count && visibleStars > 0; e++) {
+                if (world.sprite[e] == SpriteId.POINT) {
+                    paint.setStrokeWidth(getStarWidth());
+                    canvas.drawPoint(lerp(world.prevX[e], world.x[e], alpha),
+                            lerp(world.prevY[e], world.y[e], alpha), paint);
+                    visibleStars--;
+                }
+            }
 
+            particleRenderer.draw(canvas);
 
-            //drawing boom image
-            canvas.drawBitmap(
-                    boom.getBitmap(),
-                    boom.getX(),
-                    boom.getY(),
-                    paint
-            );
+            if (bulletLineCount > 0) {
+                canvas.drawLines(bulletLines, 0, bulletLineCount * 4, bulletPaint);
+            }
 
+            //the ghost ship under everything live
+            if (ghostFrame >= 0) {
+                atlas.draw(canvas, ghostFrame,
+                        lerp(ghostWorld.prevX[ghostShip], ghostWorld.x[ghostShip], alpha),
+                        lerp(ghostWorld.prevY[ghostShip], ghostWorld.y[ghostShip], alpha),
+                        ghostPaint);
+            }
 
-            //drawing friends image
-            canvas.drawBitmap(
+            //drawing the player, enemy and friend in entity order
+            for (int e = 0; e < world.count; e++) {
+                int frame = sprites.getFrame(world.sprite[e],
+                        world.hasFlag(e, World.FLAG_BOOSTING), tick, e * ANIMATION_PHASE);
+                if (frame >= 0) {
+                    atlas.draw(canvas, frame,
+                            lerp(world.prevX[e], world.x[e], alpha),
+                            lerp(world.prevY[e], world.y[e], alpha),
+                            paint);
+                }
+            }
+            canvas.restore();
 
-                    friend.getBitmap(),
-                    friend.getX(),
-                    friend.getY(),
-                    paint
-            );
+            //drawing the score on the game screen
+            paint.setTextSize(30);
+            canvas.drawText("Score:"+simulation.getScore(),100,50,paint);
+            if (ghost != null) {
+                canvas.drawText("Ghost:" + ghost.getSimulation().getScore(), 350, 50, paint);
+            }
 
             //draw game Over when the game is over
             if(isGameOver){
@@ -286,41 +664,216 @@ public class GameView extends SurfaceView implements Runnable {
                 canvas.drawText("Game Over",canvas.getWidth()/2,yPos,paint);
             }
 
+            perfHud.draw(canvas);
+
+            long drawn = System.nanoTime();
+            frameStats.record(FrameStats.PHASE_DRAW, drawn - locked);
             surfaceHolder.unlockCanvasAndPost(canvas);
+            frameStats.record(FrameStats.PHASE_POST, System.nanoTime() - drawn);
 
         }
     }
 
-    private void control() {
-        try {
-            gameThread.sleep(17);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    //the screen pixels covering an area of the world
+    private void toScreen(Rect world, Rect out) {
+        if (world.isEmpty()) {
+            out.setEmpty();
+            return;
         }
+        out.set((int) Math.floor(camera.toScreenX(world.left)),
+                (int) Math.floor(camera.toScreenY(world.top)),
+                (int) Math.ceil(camera.toScreenX(world.right)),
+                (int) Math.ceil(camera.toScreenY(world.bottom)));
+    }
+
+    //fills bulletLines with a streak per bullet, trailing half a tick behind it, and adds
+    //their extent to the sprite bounds
+    private void collectBullets(Projectiles p, float alpha) {
+        bulletLineCount = p.count;
+        if (p.count == 0) {
+            return;
+        }
+        if (bulletLines == null) {
+            bulletLines = new float[p.capacity * 4];
+        }
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+        float[] lines = bulletLines;
+        for (int i = 0, j = 0; i < p.count; i++, j += 4) {
+            float x = lerp(p.prevX[i], p.x[i], alpha);
+            float y = lerp(p.prevY[i], p.y[i], alpha);
+            float tailX = x - p.vx[i] * 0.5f;
+            float tailY = y - p.vy[i] * 0.5f;
+            lines[j] = tailX;
+            lines[j + 1] = tailY;
+            lines[j + 2] = x;
+            lines[j + 3] = y;
+            left = Math.min(left, Math.min(tailX, x));
+            right = Math.max(right, Math.max(tailX, x));
+            top = Math.min(top, Math.min(tailY, y));
+            bottom = Math.max(bottom, Math.max(tailY, y));
+        }
+        //stroke width around the streaks
+        spriteBounds.set((int) left - 3, (int) top - 3, (int) right + 4, (int) bottom + 4);
+        lastSpriteBounds.union(spriteBounds);
+    }
+
+    private float getStarWidth() {
+        //Making the star width random so that
+        //it will give a real look
+        float minX = 1.0f;
+        float maxX = 4.0f;
+        return twinkle.nextFloat() * (maxX - minX) + minX;
     }
 
     public void pause() {
         playing = false;
+        frameDriver.stop();
+        audio.stop();
+        deviceStateMonitor.stop();
+        perfHud.export();
+        saveSnapshot();
+    }
+
+    /**
+     * Ends the loop and audio threads, leaves a network game and hands the sprite bitmaps back
+     * for the next game. Call once the view is paused for good.
+     */
+    public void release() {
+        frameDriver.shutdown();
+        audio.release();
+        sprites.release();
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close the network game: " + e.getMessage());
+            }
+        }
+    }
+
+    //the simulation is stopped, so the state is captured here and only the file is written
+    //in the background
+    private void saveSnapshot() {
+        //a network game cannot be carried on alone
+        if (session != null) {
+            return;
+        }
+        final File file = new File(getContext().getFilesDir(), SNAPSHOT_FILE_NAME);
+        final byte[] data = isGameOver ? null : SessionSnapshot.toByteArray(recorder);
+        snapshotIo.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (data == null) {
+                    //nothing to carry on with
+                    file.delete();
+                    return;
+                }
+                //written aside and renamed, a kill halfway leaves the previous one intact
+                File temp = new File(file.getPath() + ".tmp");
+                try (FileOutputStream out = new FileOutputStream(temp)) {
+                    out.write(data);
+                    out.getFD().sync();
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to save snapshot: " + e.getMessage());
+                    return;
+                }
+                if (!temp.renameTo(file)) {
+                    Log.e(TAG, "Failed to save snapshot: cannot rename " + temp);
+                }
+            }
+        });
+    }
+
+    /**
+     * Carries on with the session saved when the game was last paused, in place of the new
+     * one. Call before the first resume.
+     *
+     * @return false if there was no session to carry on with
+     */
+    public boolean restoreSnapshot() {
+        final File file = new File(getContext().getFilesDir(), SNAPSHOT_FILE_NAME);
+        //queued behind any snapshot still being written
+        SessionSnapshot snapshot;
         try {
-            gameThread.join();
+            snapshot = snapshotIo.submit(new Callable<SessionSnapshot>() {
+                @Override
+                public SessionSnapshot call() throws IOException {
+                    if (!file.exists()) {
+                        return null;
+                    }
+                    try (FileInputStream in = new FileInputStream(file)) {
+                        return SessionSnapshot.readFrom(new BufferedInputStream(in));
+                    }
+                }
+            }).get();
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Failed to restore snapshot: " + e.getCause().getMessage());
+            return false;
+        }
+        if (snapshot == null || snapshot.getSimulation().isGameOver()) {
+            return false;
+        }
+        simulation = snapshot.getSimulation();
+        recorder = new ReplayRecorder(simulation, snapshot.getReplay());
+        fullRedraw = true;
+        Log.i(TAG, "Restored session at tick " + simulation.getTick()
+                + " with seed " + simulation.getSeed());
+        return true;
+    }
+
+    /**
+     * Frees the sprite bitmaps kept for reuse, when the system runs low on memory.
+     */
+    public static void trimSprites() {
+        if (spriteLoader != null) {
+            spriteLoader.trim();
         }
     }
 
+    private static SpriteLoader getSpriteLoader(Context context, float scale) {
+        //a new screen size, like after a rotation, needs sprites of a new size
+        if (spriteLoader == null || spriteLoader.getScale() != scale) {
+            trimSprites();
+            spriteLoader = new SpriteLoader(context.getApplicationContext().getResources(),
+                    scale, Runtime.getRuntime().maxMemory() / SPRITE_BUDGET_DIVISOR);
+        }
+        return spriteLoader;
+    }
+
     public void resume() {
-        playing = true;
-        gameThread = new Thread(this);
-        gameThread.start();
+        //the game over screen stays up, only a game still on is played again
+        playing = !isGameOver;
+        frameStats.restart();
+        lastRenderNanos = 0;
+        fullRedraw = true;
+        //touches queued before the pause are not boost input for the game resumed
+        boostInput.reset();
+        deviceStateMonitor.start();
+        audio.start();
+        frameDriver.start();
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent motionEvent) {
-        switch (motionEvent.getAction() & MotionEvent.ACTION_MASK) {
+        //event times are uptimeMillis, which runs on the same clock as System.nanoTime()
+        long time = motionEvent.getEventTime() * 1000000L;
+        switch (motionEvent.getActionMasked()) {
             case MotionEvent.ACTION_UP:
-                player.stopBoosting();
+            case MotionEvent.ACTION_CANCEL:
+                inputQueue.offer(time, false);
                 break;
             case MotionEvent.ACTION_DOWN:
-                player.setBoosting();
+                inputQueue.offer(time, true);
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                //a second finger toggles the performance overlay
+                perfHud.toggle();
                 break;
         }
         return true;
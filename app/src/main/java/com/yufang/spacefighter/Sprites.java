@@ -0,0 +1,234 @@
+package com.yufang.spacefighter;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.LightingColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import com.yufang.spacefighter.anim.Animation;
+import com.yufang.spacefighter.anim.SpriteAtlas;
+import com.yufang.spacefighter.anim.SpriteLoader;
+import com.yufang.spacefighter.crypto.Crypto;
+import com.yufang.spacefighter.ecs.SpriteId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sprite frames for the sprite ids the simulation puts in its sprite component, and the
+ * animations that pick a frame for a tick.
+ *
+ * <p>The drawables hold one picture per sprite. The animation frames are derived from them
+ * here, once at load, and packed with them into a {@link SpriteAtlas}: the player gets a
+ * flickering thruster flame that grows while boosting, and the enemy pulses its lights.</p>
+ *
+ * <p>Everything is decoded and drawn through a {@link SpriteLoader}, at the size the sprites
+ * have on this screen. Lengths below are in world units, the sizes are the drawables' own
+ * and the same on every screen.</p>
+ */
+public class Sprites {
+
+    private static final int ATLAS_WIDTH = 1024;
+
+    //longest thruster flame, drawn left of the player's collision box
+    private static final int FLAME_LENGTH = 36;
+
+    private final SpriteLoader loader;
+    private final int flameLength;
+
+    private final int[] widths = new int[SpriteId.COUNT];
+    private final int[] heights = new int[SpriteId.COUNT];
+
+    //animation per sprite id, and the one used instead while boosting
+    private final Animation[] animations = new Animation[SpriteId.COUNT];
+    private final Animation[] boostAnimations = new Animation[SpriteId.COUNT];
+
+    private final SpriteAtlas atlas;
+
+    public Sprites(Context context, SpriteLoader loader) {
+        this.loader = loader;
+        flameLength = loader.scaled(FLAME_LENGTH);
+        Bitmap player = loadPlayer(context);
+        setSize(SpriteId.PLAYER);
+        Bitmap enemy = loader.decodeResource(R.drawable.enemy, false);
+        setSize(SpriteId.ENEMY);
+        Bitmap friend = loader.decodeResource(R.drawable.friend, false);
+        setSize(SpriteId.FRIEND);
+        //explosions are drawn as particles, see ParticleRenderer
+
+        SpriteAtlas.Builder builder = new SpriteAtlas.Builder(ATLAS_WIDTH);
+        List<Bitmap> scratch = new ArrayList<>();
+
+        //thruster: a small idle flicker, a long flicker while boosting
+        int[] flames = {6, 10, 24, 36, 30};
+        int[] flameFrames = new int[flames.length];
+        for (int i = 0; i < flames.length; i++) {
+            Bitmap frame = withFlame(player, loader.scaled(flames[i]));
+            scratch.add(frame);
+            flameFrames[i] = builder.add(frame, -flameLength, 0);
+        }
+        animations[SpriteId.PLAYER] = new Animation(
+                new int[]{flameFrames[0], flameFrames[1]}, new int[]{4, 4}, true);
+        boostAnimations[SpriteId.PLAYER] = new Animation(
+                new int[]{flameFrames[2], flameFrames[3], flameFrames[4], flameFrames[3]},
+                new int[]{2, 2, 2, 2}, true);
+
+        //enemy lights pulse brighter and back
+        int[] glow = {0, 24, 48, 24};
+        int[] enemyFrames = new int[glow.length];
+        for (int i = 0; i < glow.length; i++) {
+            Bitmap frame = brightened(enemy, glow[i]);
+            scratch.add(frame);
+            enemyFrames[i] = builder.add(frame, 0, 0);
+        }
+        animations[SpriteId.ENEMY] = new Animation(enemyFrames, new int[]{8, 8, 8, 8}, true);
+
+        animations[SpriteId.FRIEND] = Animation.still(builder.add(friend, 0, 0));
+
+        atlas = builder.build(loader, Bitmap.Config.ARGB_8888);
+        //only the atlas is drawn from, the rest is decoded into again next time
+        scratch.add(player);
+        scratch.add(enemy);
+        scratch.add(friend);
+        for (Bitmap b : scratch) {
+            loader.release(b);
+        }
+    }
+
+    /**
+     * Hands the atlas back to the loader. The sprites cannot be drawn afterwards.
+     */
+    public void release() {
+        loader.release(atlas.getBitmap());
+    }
+
+    //the size of the image the loader decoded last
+    private void setSize(int spriteId) {
+        widths[spriteId] = loader.getSourceWidth();
+        heights[spriteId] = loader.getSourceHeight();
+    }
+
+    //the ship with a flame of the given length out of its tail, centered vertically
+    private Bitmap withFlame(Bitmap ship, int length) {
+        Bitmap frame = loader.obtain(ship.getWidth() + flameLength, ship.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(frame);
+        float centerY = ship.getHeight() / 2f;
+        float halfHeight = ship.getHeight() / 6f;
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        Path path = new Path();
+        path.moveTo(flameLength, centerY - halfHeight);
+        path.lineTo(flameLength - length, centerY);
+        path.lineTo(flameLength, centerY + halfHeight);
+        path.close();
+        paint.setColor(0xFFFF7A1A);
+        canvas.drawPath(path, paint);
+        path.reset();
+        path.moveTo(flameLength, centerY - halfHeight / 2);
+        path.lineTo(flameLength - length / 2f, centerY);
+        path.lineTo(flameLength, centerY + halfHeight / 2);
+        path.close();
+        paint.setColor(0xFFFFF0B0);
+        canvas.drawPath(path, paint);
+        canvas.drawBitmap(ship, flameLength, 0, null);
+        return frame;
+    }
+
+    //a copy with every color channel raised by {@code amount}
+    private Bitmap brightened(Bitmap bitmap, int amount) {
+        Bitmap frame = loader.obtain(bitmap.getWidth(), bitmap.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint();
+        paint.setColorFilter(new LightingColorFilter(0xFFFFFF, amount * 0x010101));
+        new Canvas(frame).drawBitmap(bitmap, 0, 0, paint);
+        return frame;
+    }
+
+    public SpriteAtlas getAtlas() {
+        return atlas;
+    }
+
+    /**
+     * Returns the width of a sprite's collision box in world units, the size of its
+     * drawable.
+     */
+    public int getWidth(int spriteId) {
+        return widths[spriteId];
+    }
+
+    public int getHeight(int spriteId) {
+        return heights[spriteId];
+    }
+
+    /**
+     * Returns the atlas frame to draw for a sprite, or -1 for ids that are not drawn from the
+     * atlas.
+     *
+     * @param tick  the simulation tick, animations advance with it
+     * @param phase offsets the animation, so several entities of a kind do not move in step
+     */
+    public int getFrame(int spriteId, boolean boosting, long tick, int phase) {
+        if (spriteId < 0) {
+            return -1;
+        }
+        Animation animation = boosting && boostAnimations[spriteId] != null
+                ? boostAnimations[spriteId] : animations[spriteId];
+        return animation == null ? -1 : animation.frameAt(tick + phase);
+    }
+
+    /* (1) Invalid/Encrypted png file seems to cause issue if you put it under drawable
+       (2) Try to BitmapFactory.decodeByteArray from an invalid/encrypted file. You will get
+        caused by: java.lang.NullPointerException: Attempt to invoke virtual method 'int android.graphics.Bitmap.getHeight()' on a null object reference
+     */
+    private Bitmap loadPlayer(Context context) {
+        // bitmap = BitmapFactory.decodeResource(context.getResources(), R.drawable.player);
+
+        // "player_encrypted" cause fatal
+        // "player_decrypted"
+/*
+        InputStream ins = context.getResources().openRawResource(
+                context.getResources().getIdentifier("player_decrypted",
+                        "raw", context.getPackageName()));
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        int data = 0;
+        int size = 0;
+        try {
+            data = ins.read(); // read first byte
+            while (data != -1)
+            {
+                size=size + 1;
+                byteArrayOutputStream.write(data);
+                data = ins.read(); // read next byte
+            }
+            ins.close();
+        } catch (IOException e) {
+            return;
+        }
+        System.out.println("size: " + size);
+*/
+        // Someone bitmap created from decodeByteArray() is smaller than decodeResource().
+        // (decodeByteArray() knows no resource density, the SpriteLoader sizes both the same)
+        // bitmap = BitmapFactory.decodeByteArray(byteArrayOutputStream.toByteArray(),0,size);
+        // bitmap = BitmapFactory.decodeResource(context.getResources(), R.drawable.player);
+
+        ///*
+// DRM!!!!
+        byte[] png = Crypto.getInstance().decryptResource(
+                context.getResources().openRawResource(R.raw.player_enc));
+        if (png == null) {
+            throw new IllegalStateException("Cannot decrypt the player sprite");
+        }
+        Bitmap bitmap = loader.decodeByteArray(png, 0, png.length, false);
+// DRM!!!!
+        //*/
+        return bitmap;
+    }
+
+}
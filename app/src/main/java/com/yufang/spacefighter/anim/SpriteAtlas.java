@@ -0,0 +1,149 @@
+package com.yufang.spacefighter.anim;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * All sprite frames packed into one bitmap. A frame is drawn by copying its source rect, so
+ * drawing never creates or scales a bitmap.
+ *
+ * <p>Every frame has an anchor offset: a frame may reach beyond the sprite's collision box,
+ * like the player's thruster flame, and the offset says where the box's top left corner is
+ * inside it.</p>
+ *
+ * <p>Frames are drawn in world units. Built through a {@link SpriteLoader}, the frames have
+ * the loader's pixels per world unit and are drawn that much smaller, back at world size;
+ * the camera's canvas scale then maps them onto their own pixels again.</p>
+ */
+public class SpriteAtlas {
+
+    private final Bitmap bitmap;
+    private final Rect[] src;
+    private final int[] offsetX;
+    private final int[] offsetY;
+    private final float unitsPerPixel;
+    private final RectF dst = new RectF();
+
+    private SpriteAtlas(Bitmap bitmap, Rect[] src, int[] offsetX, int[] offsetY,
+            float unitsPerPixel) {
+        this.bitmap = bitmap;
+        this.src = src;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.unitsPerPixel = unitsPerPixel;
+    }
+
+    public int getFrameCount() {
+        return src.length;
+    }
+
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    /**
+     * Draws a frame with the sprite's collision box at (x, y).
+     */
+    public void draw(Canvas canvas, int frame, float x, float y, Paint paint) {
+        Rect s = src[frame];
+        float left = x + offsetX[frame] * unitsPerPixel;
+        float top = y + offsetY[frame] * unitsPerPixel;
+        dst.set(left, top, left + s.width() * unitsPerPixel, top + s.height() * unitsPerPixel);
+        canvas.drawBitmap(bitmap, s, dst, paint);
+    }
+
+    /**
+     * Sets {@code out} to the area a frame covers when drawn at (x, y).
+     */
+    public void getBounds(int frame, float x, float y, Rect out) {
+        Rect s = src[frame];
+        float left = x + offsetX[frame] * unitsPerPixel;
+        float top = y + offsetY[frame] * unitsPerPixel;
+        out.set((int) Math.floor(left), (int) Math.floor(top),
+                (int) Math.ceil(left + s.width() * unitsPerPixel) + 1,
+                (int) Math.ceil(top + s.height() * unitsPerPixel) + 1);
+    }
+
+    /**
+     * Collects frames and packs them into shelves, rows as tall as their tallest frame.
+     */
+    public static class Builder {
+
+        //one pixel between frames so filtering never bleeds a neighbour in
+        private static final int PADDING = 1;
+
+        private final int maxWidth;
+        private final List<Bitmap> frames = new ArrayList<>();
+        private final List<int[]> offsets = new ArrayList<>();
+
+        /**
+         * @param maxWidth width of the atlas, frames wrap to a new shelf beyond it
+         */
+        public Builder(int maxWidth) {
+            this.maxWidth = maxWidth;
+        }
+
+        /**
+         * Adds a frame. The atlas copies it, so the caller may recycle it after build().
+         * The anchor offset is in the frame's own pixels.
+         *
+         * @return the frame's index in the atlas
+         */
+        public int add(Bitmap frame, int offsetX, int offsetY) {
+            if (frame.getWidth() > maxWidth) {
+                throw new IllegalArgumentException("frame wider than the atlas");
+            }
+            frames.add(frame);
+            offsets.add(new int[]{offsetX, offsetY});
+            return frames.size() - 1;
+        }
+
+        public SpriteAtlas build(Bitmap.Config config) {
+            return build(null, config);
+        }
+
+        /**
+         * Builds the atlas into a bitmap from {@code loader}, so it counts against the sprite
+         * budget and can be released to it when the sprites are dropped.
+         */
+        public SpriteAtlas build(SpriteLoader loader, Bitmap.Config config) {
+            int n = frames.size();
+            Rect[] src = new Rect[n];
+            int x = 0;
+            int y = 0;
+            int shelfHeight = 0;
+            int width = 1;
+            for (int i = 0; i < n; i++) {
+                Bitmap f = frames.get(i);
+                if (x + f.getWidth() > maxWidth) {
+                    x = 0;
+                    y += shelfHeight + PADDING;
+                    shelfHeight = 0;
+                }
+                src[i] = new Rect(x, y, x + f.getWidth(), y + f.getHeight());
+                x += f.getWidth() + PADDING;
+                shelfHeight = Math.max(shelfHeight, f.getHeight());
+                width = Math.max(width, x);
+            }
+            int height = Math.max(1, y + shelfHeight);
+            Bitmap atlas = loader != null ? loader.obtain(width, height, config)
+                    : Bitmap.createBitmap(width, height, config);
+            Canvas canvas = new Canvas(atlas);
+            int[] offsetX = new int[n];
+            int[] offsetY = new int[n];
+            for (int i = 0; i < n; i++) {
+                canvas.drawBitmap(frames.get(i), src[i].left, src[i].top, null);
+                offsetX[i] = offsets.get(i)[0];
+                offsetY[i] = offsets.get(i)[1];
+            }
+            float unitsPerPixel = loader != null ? 1 / loader.getScale() : 1;
+            return new SpriteAtlas(atlas, src, offsetX, offsetY, unitsPerPixel);
+        }
+    }
+}
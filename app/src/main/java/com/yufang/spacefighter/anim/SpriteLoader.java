@@ -0,0 +1,228 @@
+package com.yufang.spacefighter.anim;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.yufang.spacefighter.logger.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes sprites at the size they are drawn at on this screen, within a memory budget.
+ *
+ * <p>The drawables are made at one pixel per world unit and scaled by the camera's scale,
+ * not by the display density: a sprite covers the same share of the world everywhere, and
+ * an xxhdpi device no longer triples the mdpi drawables at decode time. Resources and byte
+ * arrays, like the decrypted player, go through the same path and come out the same
+ * size.</p>
+ *
+ * <p>The scaling happens inside the decoder: inSampleSize drops whole pixels when the
+ * sprite shrinks by half or more, and inDensity/inTargetDensity do the rest, so no
+ * full-size bitmap is ever allocated. Opaque images decode as RGB_565. Bitmaps handed back
+ * with {@link #release(Bitmap)} are kept and decoded into again through inBitmap.</p>
+ */
+public class SpriteLoader {
+
+    public static final String TAG = "SpriteLoader";
+
+    private final Resources resources;
+    private final float scale;
+    private final long budgetBytes;
+
+    //bytes of the bitmaps handed out and not released, and of the ones kept for reuse
+    private long usedBytes;
+    private final List<Bitmap> reusable = new ArrayList<>();
+
+    //estimate reserved for the decode in progress, corrected once the bitmap exists
+    private long reservedBytes;
+
+    //size of the last decoded image before scaling
+    private int sourceWidth;
+    private int sourceHeight;
+
+    /**
+     * @param scale       screen pixels per world unit
+     * @param budgetBytes most memory the sprites may take, handed out and pooled together
+     */
+    public SpriteLoader(Resources resources, float scale, long budgetBytes) {
+        this.resources = resources;
+        this.scale = scale;
+        this.budgetBytes = budgetBytes;
+        Log.i(TAG, "Sprites scaled by " + scale);
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * Returns the width of the last decoded image in world units, the same on every screen.
+     */
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    /**
+     * Returns a length in world units scaled to this screen.
+     */
+    public int scaled(int length) {
+        return Math.max(1, Math.round(length * scale));
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public Bitmap decodeResource(int id, boolean opaque) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        //the file's own pixels, not scaled for the resource density
+        options.inScaled = false;
+        BitmapFactory.decodeResource(resources, id, options);
+        prepare(options, opaque);
+        Bitmap bitmap = BitmapFactory.decodeResource(resources, id, options);
+        return handOut(bitmap, options);
+    }
+
+    public Bitmap decodeByteArray(byte[] data, int offset, int length, boolean opaque) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, offset, length, options);
+        prepare(options, opaque);
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, offset, length, options);
+        return handOut(bitmap, options);
+    }
+
+    /**
+     * Returns a blank mutable bitmap, reusing a released one if one is large enough.
+     */
+    public Bitmap obtain(int width, int height, Bitmap.Config config) {
+        long bytes = (long) width * height * bytesPerPixel(config);
+        Bitmap bitmap = takeReusable(bytes);
+        if (bitmap != null) {
+            bitmap.reconfigure(width, height, config);
+            bitmap.eraseColor(0);
+        } else {
+            reserve(bytes);
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Takes back a bitmap from this loader that is no longer drawn, to decode into again.
+     */
+    public void release(Bitmap bitmap) {
+        if (bitmap != null && bitmap.isMutable() && !bitmap.isRecycled()) {
+            reusable.add(bitmap);
+        } else if (bitmap != null) {
+            usedBytes -= bitmap.getAllocationByteCount();
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Frees the bitmaps kept for reuse.
+     */
+    public void trim() {
+        for (Bitmap b : reusable) {
+            usedBytes -= b.getAllocationByteCount();
+            b.recycle();
+        }
+        reusable.clear();
+    }
+
+    //sets up the decode of an image whose bounds are in options
+    private void prepare(BitmapFactory.Options options, boolean opaque) {
+        sourceWidth = Math.max(1, options.outWidth);
+        sourceHeight = Math.max(1, options.outHeight);
+        opaque |= "image/jpeg".equals(options.outMimeType);
+        Bitmap.Config config = opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        int targetWidth = scaled(sourceWidth);
+        int targetHeight = scaled(sourceHeight);
+        long bytes = (long) targetWidth * targetHeight * bytesPerPixel(config);
+        Bitmap reuse = takeReusable(bytes);
+        reservedBytes = 0;
+        if (reuse == null) {
+            //shrink until it fits, dropping pooled bitmaps before shrinking
+            while (usedBytes + bytes > budgetBytes && !reusable.isEmpty()) {
+                Bitmap b = reusable.remove(reusable.size() - 1);
+                usedBytes -= b.getAllocationByteCount();
+                b.recycle();
+            }
+            while (usedBytes + bytes > budgetBytes && targetWidth > 1 && targetHeight > 1) {
+                targetWidth = Math.max(1, targetWidth * 3 / 4);
+                targetHeight = Math.max(1, targetHeight * 3 / 4);
+                bytes = (long) targetWidth * targetHeight * bytesPerPixel(config);
+            }
+            if (targetWidth != scaled(sourceWidth)) {
+                Log.w(TAG, "Sprite budget exceeded, decoding at " + targetWidth + "x"
+                        + targetHeight + " instead of " + scaled(sourceWidth) + "x"
+                        + scaled(sourceHeight));
+            }
+            reservedBytes = bytes;
+            reserve(bytes);
+        }
+
+        int sample = 1;
+        while (sourceWidth / (sample * 2) >= targetWidth
+                && sourceHeight / (sample * 2) >= targetHeight) {
+            sample *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sample;
+        options.inScaled = true;
+        options.inDensity = sourceWidth;
+        options.inTargetDensity = targetWidth * sample;
+        options.inPreferredConfig = config;
+        options.inMutable = true;
+        options.inBitmap = reuse;
+    }
+
+    private Bitmap handOut(Bitmap bitmap, BitmapFactory.Options options) {
+        if (bitmap == null) {
+            //undecodable, give back what was set aside for it
+            if (options.inBitmap != null) {
+                reusable.add(options.inBitmap);
+            }
+            usedBytes -= reservedBytes;
+            throw new IllegalArgumentException("Cannot decode sprite");
+        }
+        if (options.inBitmap == null) {
+            usedBytes += bitmap.getAllocationByteCount() - reservedBytes;
+        }
+        return bitmap;
+    }
+
+    //a pooled bitmap with room for bytes, the bytes it holds stay accounted for
+    private Bitmap takeReusable(long bytes) {
+        for (int i = 0; i < reusable.size(); i++) {
+            if (reusable.get(i).getAllocationByteCount() >= bytes) {
+                return reusable.remove(i);
+            }
+        }
+        return null;
+    }
+
+    private void reserve(long bytes) {
+        usedBytes += bytes;
+        if (usedBytes > budgetBytes) {
+            Log.w(TAG, "Sprites use " + usedBytes + " bytes, over the budget of " + budgetBytes);
+        }
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        return config == Bitmap.Config.RGB_565 ? 2 : 4;
+    }
+}
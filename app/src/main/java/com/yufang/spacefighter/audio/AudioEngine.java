@@ -0,0 +1,141 @@
+package com.yufang.spacefighter.audio;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Process;
+
+import com.yufang.spacefighter.logger.Log;
+
+/**
+ * Plays the sound effects with low latency: the PCM is rendered once at load, and a
+ * dedicated audio thread mixes it into a streaming {@link AudioTrack} in small blocks.
+ *
+ * <p>{@link #play(int, int)} only puts a command on a lock-free queue, so the game thread
+ * never waits on audio. The audio thread picks the commands up before each block, so a
+ * sound starts within a block plus the track's buffer, a few tens of milliseconds, where a
+ * MediaPlayer per effect takes hundreds. Like the frame drivers, the thread is created once
+ * and parked while the game is paused.</p>
+ */
+public class AudioEngine implements Runnable {
+
+    public static final String TAG = "AudioEngine";
+
+    //voices mixed at once, more sounds steal the oldest voice
+    public static final int MAX_VOICES = 8;
+
+    //samples mixed per write, about 6ms at 44.1kHz
+    private static final int BLOCK_FRAMES = 256;
+
+    private final AudioTrack track;
+    private final Mixer mixer;
+    private final CommandQueue commands = new CommandQueue(64);
+
+    private final short[] block = new short[BLOCK_FRAMES];
+    private final int[] mixBuffer = new int[BLOCK_FRAMES];
+
+    private Thread thread;
+
+    //read by the audio thread every block without locking
+    private volatile boolean running;
+    //guarded by this
+    private boolean quit;
+
+    public AudioEngine() {
+        int sampleRate = AudioTrack.getNativeOutputSampleRate(AudioManager.STREAM_MUSIC);
+        long start = System.nanoTime();
+        mixer = new Mixer(Sounds.render(sampleRate), MAX_VOICES);
+        Log.i(TAG, "Rendered sounds at " + sampleRate + "Hz in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+
+        //the smallest buffer the device takes, but room for two blocks at least
+        int minBytes = AudioTrack.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_OUT_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        int bytes = Math.max(minBytes, BLOCK_FRAMES * 2 * 2);
+        track = new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate,
+                AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT, bytes,
+                AudioTrack.MODE_STREAM);
+    }
+
+    /**
+     * Starts a sound. Never blocks; called from the game thread.
+     *
+     * @param gain volume out of 255
+     */
+    public void play(int soundId, int gain) {
+        commands.offer(soundId, gain);
+    }
+
+    public synchronized void start() {
+        if (quit) {
+            throw new IllegalStateException("engine was released");
+        }
+        running = true;
+        if (thread == null) {
+            thread = new Thread(this, "Audio");
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Silences the output and parks the audio thread.
+     */
+    public synchronized void stop() {
+        running = false;
+    }
+
+    /**
+     * Ends the audio thread and frees the track. The engine cannot be started again.
+     */
+    public void release() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            quit = true;
+            notifyAll();
+            t = thread;
+            thread = null;
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        track.release();
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        while (awaitStart()) {
+            track.play();
+            while (running) {
+                for (int c = commands.poll(); c >= 0; c = commands.poll()) {
+                    mixer.play(CommandQueue.soundOf(c), CommandQueue.gainOf(c));
+                }
+                mixer.mix(block, mixBuffer, BLOCK_FRAMES);
+                //blocks until the track has room, which paces this loop
+                track.write(block, 0, BLOCK_FRAMES);
+            }
+            //whatever was playing is cut, nothing resumes mid-sound after a pause
+            track.pause();
+            track.flush();
+            mixer.stopAll();
+        }
+    }
+
+    //parks until started again, false once the thread should end
+    private synchronized boolean awaitStart() {
+        while (!running && !quit) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return !quit;
+    }
+}
@@ -16,7 +16,8 @@
 
 package com.yufang.spacefighter.crypto;
 
-import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
 import android.media.MediaDrm;
 import android.media.MediaDrmException;
 import android.media.NotProvisionedException;
@@ -27,15 +28,18 @@ import android.util.Pair;
 // import com.yufang.spacefighter.logger.Log;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 public class Crypto {
 
@@ -49,12 +53,32 @@ public class Crypto {
     private static final String OPERATOR_SESSION_KEY_SERVER_URL =
             "http://widevine-proxy.appspot.com/proxy";
 
+    private static volatile LicenseTransport sTransport = new HttpLicenseTransport();
+    private static volatile String sLicenseServerUrl = OPERATOR_SESSION_KEY_SERVER_URL;
+
     private static final UUID WIDEVINE_SCHEME = new UUID(0xEDEF8BA979D64ACEL, 0xA3C827DCD51D21EDL);
 
-    private static byte[] sKeySetId = null;
+    //renew this long before the license expires, at least this often, and retry after this
+    private static final long RENEWAL_MARGIN_MILLIS = 5 * 60 * 1000;
+    private static final long HEARTBEAT_MILLIS = 30 * 60 * 1000;
+    private static final long RENEWAL_RETRY_MILLIS = 2000;
+
+    //key status entry with the seconds the license has left
+    private static final String LICENSE_DURATION_REMAINING = "LicenseDurationRemaining";
+
+    //the offline license in use, swapped by renewals
+    private static volatile byte[] sKeySetId = null;
+    //held to restore sKeySetId and to swap and remove it, so no restore gets a removed one
+    private static final Object sKeySetLock = new Object();
+
+    private static Crypto sInstance;
 
-    private int mDataLength = 0;
     private MediaDrm mDrm = null;
+    private ScheduledExecutorService mRenewalExecutor;
+    private volatile LicenseRenewalScheduler mRenewal;
+    private volatile LicenseRenewalScheduler.Listener mLicenseListener;
+    //where renewals go once the license server named one
+    private volatile String mHeartbeatUrl;
     private Looper mLooper;
     private final Object mLock = new Object();
 
@@ -113,13 +137,19 @@ public class Crypto {
                         @Override
                         public void onEvent(MediaDrm md, byte[] sessionId, int event,
                                             int extra, byte[] data) {
+                            LicenseRenewalScheduler renewal = mRenewal;
                             if (event == MediaDrm.EVENT_PROVISION_REQUIRED) {
                                 Log.i(TAG, "Provisioning is required");
                             } else if (event == MediaDrm.EVENT_KEY_REQUIRED) {
                                 Log.i(TAG, "MediaDrm event: Key required");
+                                if (renewal != null) {
+                                    renewal.renew();
+                                }
                             } else if (event == MediaDrm.EVENT_KEY_EXPIRED) {
                                 Log.i(TAG, "MediaDrm event: Key expired");
-                                // Do nothing.
+                                if (renewal != null) {
+                                    renewal.keyExpired();
+                                }
                             } else if (event == MediaDrm.EVENT_VENDOR_DEFINED) {
                                 Log.i(TAG, "MediaDrm event: Vendor defined: " + event);
                             }
@@ -157,7 +187,7 @@ public class Crypto {
     }
 
     /**
-     * Executes a post request using {@link HttpURLConnection}.
+     * Executes a post request over the license transport.
      *
      * @param url               The request URL.
      * @param data              The request body, or null.
@@ -168,69 +198,28 @@ public class Crypto {
     public static Pair<Integer, byte[]> executePost(
             String url, byte[] data,
             Map<String, String> requestProperties) throws IOException {
-        HttpURLConnection urlConnection = null;
-        try {
-            urlConnection = (HttpURLConnection) new URL(url).openConnection();
-            urlConnection.setRequestMethod("POST");
-            urlConnection.setDoOutput(data != null);
-            urlConnection.setDoInput(true);
-            urlConnection.setConnectTimeout(6000);
-            urlConnection.setReadTimeout(6000);
-            if (requestProperties != null) {
-                for (Map.Entry<String, String> requestProperty : requestProperties.entrySet()) {
-                    urlConnection.setRequestProperty(requestProperty.getKey(),
-                            requestProperty.getValue());
-                }
-            }
-            // Write the request body, if there is one.
-            if (data != null) {
-                try (OutputStream out = urlConnection.getOutputStream()) {
-                    out.write(data);
-                }
-            /*
-                OutputStream out = urlConnection.getOutputStream();
-                try {
-                    out.write(data);
-                } finally {
-                    out.close();
-                }
-                */
-            }
-            // Read the response code.
-            int responseCode = urlConnection.getResponseCode();
-            try (InputStream inputStream = urlConnection.getInputStream()) {
-                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                byte scratch[] = new byte[1024];
-                int bytesRead;
-                while ((bytesRead = inputStream.read(scratch)) != -1) {
-                    byteArrayOutputStream.write(scratch, 0, bytesRead);
-                }
-                byte[] responseBody = byteArrayOutputStream.toByteArray();
-                Log.d(TAG, "responseCode=" + responseCode + ", length=" + responseBody.length);
-                return Pair.create(responseCode, responseBody);
-            }
-            /*
-            // Read the response body.
-            InputStream inputStream = urlConnection.getInputStream();
-            try {
-                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                byte scratch[] = new byte[1024];
-                int bytesRead;
-                while ((bytesRead = inputStream.read(scratch)) != -1) {
-                    byteArrayOutputStream.write(scratch, 0, bytesRead);
-                }
-                byte[] responseBody = byteArrayOutputStream.toByteArray();
-                Log.d(TAG, "responseCode=" + responseCode + ", length=" + responseBody.length);
-                return Pair.create(responseCode, responseBody);
-            } finally {
-                inputStream.close();
-            }
-            */
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-        }
+        LicenseTransport.Response response = sTransport.post(url, data, requestProperties);
+        Log.d(TAG, "responseCode=" + response.code + ", length=" + response.body.length);
+        return Pair.create(response.code, response.body);
+    }
+
+    /**
+     * Sets what carries license and provisioning requests, a {@link MockLicenseServer} to
+     * run without the network. Requests already under way keep the old one.
+     */
+    public static void setLicenseTransport(LicenseTransport transport) {
+        sTransport = transport;
+    }
+
+    public static LicenseTransport getLicenseTransport() {
+        return sTransport;
+    }
+
+    /**
+     * Sets where the operator session key is fetched, until the server names a heartbeat url.
+     */
+    public static void setLicenseServerUrl(String url) {
+        sLicenseServerUrl = url;
     }
 
     /**
@@ -274,97 +263,253 @@ public class Crypto {
     }
 
     /**
-     * Initializes crypto operations.
+     * Returns the crypto of the process, initialized on first use. The license it renews
+     * serves every game, so there is only the one.
+     */
+    public static synchronized Crypto getInstance() {
+        if (sInstance == null) {
+            Crypto crypto = new Crypto();
+            crypto.init();
+            sInstance = crypto;
+        }
+        return sInstance;
+    }
+
+    /**
+     * Initializes crypto operations and starts fetching the license in the background. It
+     * is renewed ahead of its expiry from then on, so a session opened mid-game finds keys
+     * that are valid instead of fetching them.
      */
     public void init() {
+        mRenewalExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LicenseRenewal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        LicenseRenewalScheduler renewal = new LicenseRenewalScheduler(
+                new LicenseRenewalScheduler.Renewer() {
+                    @Override
+                    public long renew() throws Exception {
+                        return fetchLicense();
+                    }
+                }, mRenewalExecutor, RENEWAL_MARGIN_MILLIS, HEARTBEAT_MILLIS,
+                RENEWAL_RETRY_MILLIS);
+        renewal.setListener(new LicenseRenewalScheduler.Listener() {
+            @Override
+            public void onLicenseStateChanged(int state, long expiresAt) {
+                Log.i(TAG, "License state " + state + ", expires at " + expiresAt);
+                LicenseRenewalScheduler.Listener listener = mLicenseListener;
+                if (listener != null) {
+                    listener.onLicenseStateChanged(state, expiresAt);
+                }
+            }
+        });
+        mRenewal = renewal;
         mDrm = startDrm(WIDEVINE_SCHEME);
-        mDataLength = 0;
+        renewal.renew();
+    }
+
+    /**
+     * Sets who hears about license renewals, on the renewal thread.
+     */
+    public void setLicenseListener(LicenseRenewalScheduler.Listener listener) {
+        mLicenseListener = listener;
     }
 
     /**
-     * Cleans up crypto operations.
+     * Cleans up crypto operations. The next {@link #getInstance()} starts afresh.
      */
     public void close() {
+        synchronized (Crypto.class) {
+            if (sInstance == this) {
+                sInstance = null;
+            }
+        }
+        if (mRenewal != null) {
+            mRenewal.shutdown();
+            mRenewalExecutor.shutdownNow();
+        }
         stopDrm(mDrm);
     }
 
     /**
-     * Returns data size.
+     * Decrypts a raw resource written by the build's AssetEncryptor as it is read, chunk by
+     * chunk, into an array of exactly the asset's length. A resource encrypted on a device
+     * before that has no header; it is decrypted whole with the fixed key id and IV below and
+     * comes back padded to 16 bytes.
      *
-     * @return length of data
+     * @return the plain asset, null if it could not be decrypted
      */
-    final public int getDataLength() {
-        return mDataLength;
-    }
-
-    public byte[] decryptResource(Context context, InputStream inputStream, final long length) {
-        // Log.e(TAG, "length: " + length);
-        int paddedLength = ((int) length + 15) & ~15;
-        byte[] data = new byte[(int) paddedLength];
-
+    public byte[] decryptResource(InputStream inputStream) {
         if (null == mDrm) {
             Log.e(TAG, "null Drm object");
-            return data;
+            return null;
         }
-
-        byte[] sessionId = openSession(mDrm);
-
-        KeyRequester keyRequester = new KeyRequester(
-                GENERIC_OPS_PSSH, OPERATOR_SESSION_KEY_SERVER_URL);
-
-        if (null == sKeySetId) {
-            sKeySetId = keyRequester.doTransact(mDrm, sessionId, MediaDrm.KEY_TYPE_OFFLINE);
-            Log.i(TAG, "sKeySetId is null");
-        } else {
-            mDrm.restoreKeys(sessionId, sKeySetId);
-            Log.i(TAG, "sKeySetId is not null");
+        BufferedInputStream in = new BufferedInputStream(inputStream);
+        byte[] sessionId;
+        try {
+            sessionId = openKeySession();
+        } catch (IOException e) {
+            Log.e(TAG, "Resource decrypt error: " + e.getMessage());
+            return null;
         }
+        try {
+            final MediaDrm.CryptoSession cs =
+                    mDrm.getCryptoSession(sessionId, "AES/CBC/NoPadding", "HmacSHA256");
+
+            byte[] magic = new byte[4];
+            in.mark(magic.length);
+            int size = in.read(magic);
+            in.reset();
+            if (EncryptedAsset.hasMagic(magic, size)) {
+                return EncryptedAssetReader.decrypt(in, decryptor(cs));
+            }
 
-        MediaDrm.CryptoSession cs = mDrm.getCryptoSession(sessionId, "AES/CBC/NoPadding", "HmacSHA256");
-
-        // operator_session_key_permissions = allow_encrypt | allow_decrypt
-        byte[] aes_key_id = hex2ba("3be2b25db355fc64a0e69a50f4dbb298");
-        byte[] iv = hex2ba("3ec0f3d3970fbd541ac4e7e1d06a6131");
+            // operator_session_key_permissions = allow_encrypt | allow_decrypt
+            byte[] aes_key_id = hex2ba("3be2b25db355fc64a0e69a50f4dbb298");
+            byte[] iv = hex2ba("3ec0f3d3970fbd541ac4e7e1d06a6131");
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                data.write(buffer, 0, n);
+            }
+            byte[] padded = Arrays.copyOf(data.toByteArray(),
+                    EncryptedAsset.paddedLength(data.size()));
+            return cs.decrypt(aes_key_id, padded, iv);
+        } catch (IOException e) {
+            Log.e(TAG, "Resource decrypt error: " + e.getMessage());
+            return null;
+        } finally {
+            closeSession(mDrm, sessionId);
+        }
+    }
 
+    /**
+     * Maps a raw resource written by the build's AssetEncryptor, which must be stored
+     * uncompressed, and decrypts its chunks as they are read. Nothing is decrypted up front.
+     * The resource keeps a DRM session open until it is closed.
+     *
+     * @param cachedChunks decrypted chunks kept for reading again
+     */
+    public MappedResource openResource(Resources resources, int id, int cachedChunks)
+            throws IOException {
+        if (null == mDrm) {
+            throw new IOException("null Drm object");
+        }
+        AssetFileDescriptor afd = resources.openRawResourceFd(id);
+        if (afd == null) {
+            throw new IOException("Raw resource " + id + " is compressed, cannot map it");
+        }
+        byte[] sessionId = openKeySession();
+        FileInputStream in = afd.createInputStream();
         try {
-            inputStream.read(data, 0, (int) length);
-        } catch (IndexOutOfBoundsException | IOException ei) {
-            Log.e(TAG, "Resource read error: " + ei.getMessage());
+            MediaDrm.CryptoSession cs =
+                    mDrm.getCryptoSession(sessionId, "AES/CBC/NoPadding", "HmacSHA256");
+            EncryptedAssetReader reader = EncryptedAssetReader.map(in.getChannel(),
+                    afd.getStartOffset(), afd.getLength(), decryptor(cs), cachedChunks);
+            return new MappedResource(this, sessionId, reader);
+        } catch (IOException | RuntimeException e) {
+            closeSession(mDrm, sessionId);
+            throw e;
+        } finally {
+            in.close();
         }
+    }
 
-        //[ew] data len=73836, 73840
-// Use the code below to encrypt file.
-/*
-        byte[] encData = {0};
-        if (data.length > 0) {
-            encData = cs.encrypt(aes_key_id, data, iv);
-            if (encData.length <= 0) {
-                Log.d(TAG, "!!!ewew Fail to encrypt");
+    void closeResource(byte[] sessionId) {
+        closeSession(mDrm, sessionId);
+    }
+
+    //opens a session holding the operator session key, restored from the license the
+    //renewal keeps; waits for a renewal only when there is no license or it has lapsed
+    private byte[] openKeySession() throws IOException {
+        if (null == sKeySetId || !mRenewal.isValid()) {
+            Log.i(TAG, "No valid license, waiting for the renewal");
+            try {
+                mRenewal.renew().get();
+            } catch (ExecutionException e) {
+                throw new IOException("No license: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for the license");
             }
-        } else {
-            Log.d(TAG, "!!!ewew Fail to load resource");
         }
-        Log.d(TAG, "!!!ewew enc data length=" + encData.length);
-// Output file can be found by going Tool -> Android -> Android Device Monitor -> File Manager
-// data -> data -> com.yufang.spacefighter -> files
-        // write encrypted file
-        final String encFileName = "player_enc.bin";
-        FileOutputStream encFileStream;
+        byte[] sessionId = openSession(mDrm);
+        if (sessionId == null) {
+            throw new IOException("Cannot open a DRM session");
+        }
         try {
-            encFileStream = context.openFileOutput(encFileName, context.MODE_PRIVATE);
-            encFileStream.write(encData);
-            encFileStream.close();
-        } catch (Exception efos) {
-            efos.getMessage();
+            synchronized (sKeySetLock) {
+                mDrm.restoreKeys(sessionId, sKeySetId);
+            }
+        } catch (RuntimeException e) {
+            closeSession(mDrm, sessionId);
+            throw new IOException("Cannot restore the license: " + e.getMessage());
         }
- */
+        return sessionId;
+    }
 
-        byte[] clearData = cs.decrypt(aes_key_id, data, iv);
+    //fetches a new offline license on the renewal thread
+    //returns when it expires, Long.MAX_VALUE if the key status does not say
+    private long fetchLicense() throws IOException {
+        byte[] sessionId = openSession(mDrm);
+        if (sessionId == null) {
+            throw new IOException("Cannot open a DRM session");
+        }
+        try {
+            String url = mHeartbeatUrl;
+            KeyRequester keyRequester = new KeyRequester(GENERIC_OPS_PSSH,
+                    url != null && !url.isEmpty() ? url : sLicenseServerUrl, sTransport);
+            byte[] keySetId = keyRequester.doTransact(mDrm, sessionId, MediaDrm.KEY_TYPE_OFFLINE);
+            if (keySetId == null) {
+                throw new IOException("License server gave no keys");
+            }
+            if (keyRequester.getDefaultHeartbeatUrl() != null) {
+                mHeartbeatUrl = keyRequester.getDefaultHeartbeatUrl();
+            }
+            synchronized (sKeySetLock) {
+                byte[] oldKeySetId = sKeySetId;
+                sKeySetId = keySetId;
+                //the offline license it replaces would otherwise stay on the device
+                if (oldKeySetId != null && !Arrays.equals(oldKeySetId, keySetId)) {
+                    try {
+                        mDrm.removeKeys(oldKeySetId);
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "Cannot release the old key set: " + e.getMessage());
+                    }
+                }
+            }
+            return expiresAt(mDrm.queryKeyStatus(sessionId));
+        } finally {
+            closeSession(mDrm, sessionId);
+        }
+    }
 
-        mDataLength = clearData.length;
+    private static long expiresAt(Map<String, String> keyStatus) {
+        String remaining = keyStatus == null ? null : keyStatus.get(LICENSE_DURATION_REMAINING);
+        long now = System.currentTimeMillis();
+        try {
+            long seconds = Long.parseLong(remaining);
+            if (seconds > 0 && seconds < (Long.MAX_VALUE - now) / 1000) {
+                return now + seconds * 1000;
+            }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "No license duration in the key status: " + remaining);
+        }
+        return Long.MAX_VALUE;
+    }
 
-        closeSession(mDrm, sessionId);
-        return clearData;
+    private static EncryptedAssetReader.Decryptor decryptor(final MediaDrm.CryptoSession cs) {
+        return new EncryptedAssetReader.Decryptor() {
+            @Override
+            public byte[] decrypt(byte[] keyId, byte[] data, byte[] iv) {
+                return cs.decrypt(keyId, data, iv);
+            }
+        };
     }
 
     /**
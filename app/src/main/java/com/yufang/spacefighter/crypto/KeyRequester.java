@@ -23,15 +23,8 @@ import android.media.NotProvisionedException;
 // import com.yufang.spacefighter.logger.Log;
 import android.util.Log;
 
-import java.io.UnsupportedEncodingException;
-import java.util.Arrays;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.io.IOException;
+import java.util.HashMap;
 
 public class KeyRequester {
 
@@ -40,10 +33,16 @@ public class KeyRequester {
     private byte[] mPssh;
     private String mDefaultHeartbeatUrl;
     private String mServerUrl;
+    private final LicenseTransport mTransport;
 
     public KeyRequester(byte[] pssh, String url) {
+        this(pssh, url, Crypto.getLicenseTransport());
+    }
+
+    public KeyRequester(byte[] pssh, String url, LicenseTransport transport) {
         mPssh = pssh;
         mServerUrl = url;
+        mTransport = transport;
     }
 
     public final String getDefaultHeartbeatUrl() {
@@ -59,9 +58,7 @@ public class KeyRequester {
     }
 
     public byte[] doTransact(final MediaDrm drm, final byte[] sessionId, final int keyType) {
-        final int KEYREQUEST_MS_TIMEOUT = 6500;  // in milliseconds
         final int MAX_RETRY_COUNT = 3;
-        final int POOL_SIZE = 1;
 
         boolean retryRequest;
         boolean retryTransaction;
@@ -69,11 +66,11 @@ public class KeyRequester {
         int getKeyRequestRetryCount;
         int provisioningRetryCount = 0;
 
-        ExecutorService executorService;
-        Future<byte[]> future;
         MediaDrm.KeyRequest drmRequest;
 
-        executorService = Executors.newFixedThreadPool(POOL_SIZE);
+        HashMap<String, String> headers = new HashMap<>();
+        headers.put("User-Agent", "Widevine CDM v1.0");
+        headers.put("Connection", "close");
 
         do {
             drmRequest = null;
@@ -89,7 +86,7 @@ public class KeyRequester {
                         "video/avc", keyType, null);
                 } catch (NotProvisionedException e) {
                     Log.i(TAG, "Invalid certificate, reprovisioning");
-                    ProvisionRequester provisionRequester = new ProvisionRequester();
+                    ProvisionRequester provisionRequester = new ProvisionRequester(mTransport);
                     provisionRequester.doTransact(drm);
                     retryRequest = true;
                 }
@@ -100,122 +97,51 @@ public class KeyRequester {
                 return null;
             }
 
+            byte[] responseBody;
             try {
-                future = executorService.submit(new KeyRequesterTask(mServerUrl, drmRequest));
-            } catch (RejectedExecutionException e) {
-                Log.e(TAG, "Failed to submit KeyRequesterTask for execution", e);
-                if (++provisioningRetryCount < MAX_RETRY_COUNT) {
-                    continue;
-                } else {
-                    break;
-                }
+                // times out and retries on its own
+                responseBody = new LicenseExchange(mTransport).post(mServerUrl,
+                        drmRequest.getData(), headers);
+            } catch (IOException e) {
+                Log.e(TAG, "No response from license server! " + e.getMessage());
+                break;
+            }
+            // logBytes(responseBody);
+            byte[] drmResponse = LicenseExchange.parseResponseBody(responseBody);
+            if (drmResponse == null) {
+                Log.e(TAG, "Failed to parse response");
+                break;
             }
 
             try {
-                byte[] responseBody = future.get(KEYREQUEST_MS_TIMEOUT, TimeUnit.MILLISECONDS);
-                // logBytes(responseBody);
-                if (responseBody == null) {
-                    Log.e(TAG, "No response from license server!");
-                    retryTransaction = true;
-                } else {
-                    byte[] drmResponse = parseResponseBody(responseBody);
-                    if (drmResponse == null) {
-                        Log.e(TAG, "Failed to parse response");
-                        retryTransaction = true;
-                        break;
-                    }
-
-                    try {
-                        keySetIdResult = drm.provideKeyResponse(sessionId, drmResponse);
-                    } catch (NotProvisionedException e) {
-                        Log.i(TAG, "Response invalidated the certificate, reprovisioning");
-                        ProvisionRequester provisionRequester = new ProvisionRequester();
-                        provisionRequester.doTransact(drm);
-                        retryTransaction = true;
-                    } catch (DeniedByServerException e) {
-                        // informational, the event handler will take care of provisioning
-                        Log.i(TAG, "Server rejected the key request");
-                    }  catch (IllegalStateException e) {
-                        Log.e(TAG, "provideKeyResponse failed", e);
-                    }
-
-                    try {
-                        // first call to getKeyRequest does not return heartbeat url
-                        drmRequest = drm.getKeyRequest(sessionId, mPssh, "video/avc",
-                                keyType, null);
-                        try {
-                            mDefaultHeartbeatUrl = drmRequest.getDefaultUrl();
-                        } catch (Exception e) {
-                            // ignore
-                        }
-                    } catch (NotProvisionedException e) {
-                        Log.e(TAG, "Fails to get heartbeat url");
-                    }
-                    break;
-                }
-            } catch (ExecutionException | InterruptedException ex) {
-                Log.e(TAG, "Failed to execute KeyRequesterTask" + ex.getMessage());
-                shutdownAndAwaitTermination(executorService);
-                return null;
-            } catch (TimeoutException te) {
-                // The request timed out. The network is possibly too slow.
-                // Cancel the running task.
-                Log.d(TAG, "Request timed out, retry...");
-                future.cancel(true);
+                keySetIdResult = drm.provideKeyResponse(sessionId, drmResponse);
+            } catch (NotProvisionedException e) {
+                Log.i(TAG, "Response invalidated the certificate, reprovisioning");
+                ProvisionRequester provisionRequester = new ProvisionRequester(mTransport);
+                provisionRequester.doTransact(drm);
                 retryTransaction = true;
+                continue;
+            } catch (DeniedByServerException e) {
+                // informational, the event handler will take care of provisioning
+                Log.i(TAG, "Server rejected the key request");
+            }  catch (IllegalStateException e) {
+                Log.e(TAG, "provideKeyResponse failed", e);
             }
-        } while (retryTransaction && ++provisioningRetryCount < MAX_RETRY_COUNT);
 
-        shutdownAndAwaitTermination(executorService);
-        return keySetIdResult;
-    }
-
-    private void shutdownAndAwaitTermination(ExecutorService pool) {
-        final int POOL_TERMINATION_MS_TIMEOUT = 3000;  // in milliseconds
-
-        pool.shutdown();  // disable new tasks from being submitted
-        try {
-            // wait for existing tasks to terminate
-            if (!pool.awaitTermination(POOL_TERMINATION_MS_TIMEOUT, TimeUnit.MILLISECONDS)) {
-                pool.shutdownNow();
-                // wait for tasks to respond to being cancelled
-                if (!pool.awaitTermination(POOL_TERMINATION_MS_TIMEOUT, TimeUnit.MILLISECONDS))
-                    Log.e(TAG, "Pool did not terminate");
+            try {
+                // first call to getKeyRequest does not return heartbeat url
+                drmRequest = drm.getKeyRequest(sessionId, mPssh, "video/avc",
+                        keyType, null);
+                try {
+                    mDefaultHeartbeatUrl = drmRequest.getDefaultUrl();
+                } catch (Exception e) {
+                    // ignore
+                }
+            } catch (NotProvisionedException e) {
+                Log.e(TAG, "Fails to get heartbeat url");
             }
-        } catch (InterruptedException ie) {
-            // (Re-)Cancel if current thread also interrupted
-            pool.shutdownNow();
-            // Preserve interrupt status
-            Thread.currentThread().interrupt();
-        }
-    }
-
-    // Validate the response body and return the drmResponse blob.
-    private byte[] parseResponseBody(byte[] responseBody) {
-        String bodyString = null;
-        try {
-            bodyString = new String(responseBody, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
-
-        if (bodyString == null) {
-            return null;
-        }
+        } while (retryTransaction && ++provisioningRetryCount < MAX_RETRY_COUNT);
 
-        if (bodyString.startsWith("GLS/")) {
-            if (!bodyString.startsWith("GLS/1.")) {
-                Log.e(TAG, "Invalid server version, expected 1.x");
-                return null;
-            }
-            int drmMessageOffset = bodyString.indexOf("\r\n\r\n");
-            if (drmMessageOffset == -1) {
-                Log.e(TAG, "Invalid server response, could not locate drm message");
-                return null;
-            }
-            responseBody = Arrays.copyOfRange(responseBody, drmMessageOffset + 4,
-                    responseBody.length);
-        }
-        return responseBody;
+        return keySetIdResult;
     }
 }
@@ -0,0 +1,45 @@
+package com.yufang.spacefighter.crypto;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+/**
+ * An encrypted raw resource mapped by {@link Crypto#openResource}, decrypted a chunk at a
+ * time as it is read. Holds a DRM session until closed.
+ */
+public class MappedResource implements Closeable {
+
+    private final Crypto crypto;
+    private final byte[] sessionId;
+    private final EncryptedAssetReader reader;
+    private boolean closed;
+
+    MappedResource(Crypto crypto, byte[] sessionId, EncryptedAssetReader reader) {
+        this.crypto = crypto;
+        this.sessionId = sessionId;
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the reader for random access to the plain bytes.
+     */
+    public EncryptedAssetReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Returns a stream over the plain bytes, for decoders that take one.
+     */
+    public InputStream newInputStream() {
+        return reader.newInputStream();
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            reader.clearCache();
+            crypto.closeResource(sessionId);
+        }
+    }
+}
@@ -17,7 +17,6 @@ package com.yufang.spacefighter.crypto;
 
 import android.media.DeniedByServerException;
 import android.media.MediaDrm;
-import android.util.Pair;
 
 // import com.yufang.spacefighter.logger.Log;
 import android.util.Log;
@@ -29,7 +28,14 @@ public class ProvisionRequester {
 
     public static final String TAG = "ProvisionRequester";
 
+    private final LicenseTransport mTransport;
+
     public ProvisionRequester() {
+        this(Crypto.getLicenseTransport());
+    }
+
+    public ProvisionRequester(LicenseTransport transport) {
+        mTransport = transport;
     }
 
     public void doTransact(final MediaDrm drm) {
@@ -73,15 +79,9 @@ public class ProvisionRequester {
         headers.put("Connection", "close");
 
         try {
-            Pair<Integer, byte[]> response = Crypto.executePost(signedUrl, null, headers);
-            int responseCode = response.first;
-            if (responseCode != 200) {
-                Log.d(TAG, "Server returned HTTP error code " + responseCode);
-                return null;
-            }
-            return response.second;
+            return new LicenseExchange(mTransport).post(signedUrl, null, headers);
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.d(TAG, "Provisioning request failed: " + e.getMessage());
             return null;
         }
     }
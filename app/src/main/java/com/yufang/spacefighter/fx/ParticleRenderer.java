@@ -0,0 +1,108 @@
+package com.yufang.spacefighter.fx;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+
+/**
+ * Draws a {@link ParticleSystem} with additive blending, so overlapping particles brighten
+ * each other like fire does.
+ *
+ * <p>Particles are bucketed by emitter and by how far they have faded, and each bucket is a
+ * single drawPoints call: a handful of calls per frame however many particles are alive.
+ * The point buffer is allocated once for the pool's capacity.</p>
+ */
+public class ParticleRenderer {
+
+    //steps a particle fades through over its life
+    private static final int FADE_STEPS = 4;
+
+    private final ParticleSystem particles;
+    private final Paint paint = new Paint();
+
+    //points of all buckets back to back, and where each bucket starts and ends in it
+    private final float[] points;
+    private final int[] bucketStart;
+    private final int[] bucketEnd;
+
+    public ParticleRenderer(ParticleSystem particles) {
+        this.particles = particles;
+        points = new float[particles.capacity * 2];
+        int buckets = particles.getEmitters().length * FADE_STEPS;
+        bucketStart = new int[buckets + 1];
+        bucketEnd = new int[buckets];
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setAntiAlias(true);
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.ADD));
+    }
+
+    private static int bucket(ParticleSystem p, int i) {
+        return p.emitter[i] * FADE_STEPS + p.age[i] * FADE_STEPS / p.life[i];
+    }
+
+    /**
+     * Sorts the particles into their buckets at the interpolated positions and adds the area
+     * they cover to {@code bounds}. Call before locking the canvas.
+     */
+    public void prepare(float alpha, Rect bounds) {
+        ParticleSystem p = particles;
+        int[] start = bucketStart;
+        int buckets = bucketEnd.length;
+
+        //counting sort: sizes, then offsets, then fill
+        for (int b = 0; b <= buckets; b++) {
+            start[b] = 0;
+        }
+        for (int i = 0; i < p.count; i++) {
+            start[bucket(p, i) + 1] += 2;
+        }
+        for (int b = 0; b < buckets; b++) {
+            start[b + 1] += start[b];
+            bucketEnd[b] = start[b];
+        }
+
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+        for (int i = 0; i < p.count; i++) {
+            float x = p.prevX[i] + (p.x[i] - p.prevX[i]) * alpha;
+            float y = p.prevY[i] + (p.y[i] - p.prevY[i]) * alpha;
+            int b = bucket(p, i);
+            int at = bucketEnd[b];
+            points[at] = x;
+            points[at + 1] = y;
+            bucketEnd[b] = at + 2;
+            left = Math.min(left, x);
+            right = Math.max(right, x);
+            top = Math.min(top, y);
+            bottom = Math.max(bottom, y);
+        }
+        if (p.count > 0) {
+            //room for the largest point size
+            int pad = 8;
+            bounds.union((int) left - pad, (int) top - pad, (int) right + pad, (int) bottom + pad);
+        }
+    }
+
+    /**
+     * Draws what the last {@link #prepare(float, Rect)} sorted.
+     */
+    public void draw(Canvas canvas) {
+        ParticleEmitter[] emitters = particles.getEmitters();
+        for (int b = 0; b < bucketEnd.length; b++) {
+            int floats = bucketEnd[b] - bucketStart[b];
+            if (floats == 0) {
+                continue;
+            }
+            ParticleEmitter e = emitters[b / FADE_STEPS];
+            int fade = b % FADE_STEPS;
+            paint.setColor(e.color);
+            paint.setAlpha((e.color >>> 24) * (FADE_STEPS - fade) / FADE_STEPS);
+            paint.setStrokeWidth(e.size);
+            canvas.drawPoints(points, bucketStart[b], floats, paint);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.yufang.spacefighter.loop;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Choreographer;
+import android.view.Display;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Drives the game from display vsync.
+ *
+ * <p>A {@link Choreographer} on a dedicated looper thread calls back once per vsync with the
+ * frame's timestamp. The simulation keeps its fixed tick length: each frame runs as many
+ * ticks as the elapsed time covers, and the leftover fraction of a tick is handed to
+ * {@link Callback#render(float)} so positions are drawn where they are at vsync time. That
+ * makes the game speed independent of the panel's refresh rate, 60, 90 or 120Hz alike.</p>
+ *
+ * <p>The frame interval it reports is the measured vsync period, smoothed. Frames that
+ * missed a vsync are left out of it, and the display's refresh rate is read again now and
+ * then so a switch of rate is followed.</p>
+ *
+ * <p>The looper thread outlives a pause. Stopping only takes the frame callback off its
+ * Choreographer and the idle looper parks the thread, so resuming posts a callback to a
+ * thread that is already there.</p>
+ */
+public class ChoreographerFrameDriver implements FrameDriver, Choreographer.FrameCallback {
+
+    //never run more ticks than this in one frame, after a hitch the game slows down instead
+    private static final int MAX_TICKS_PER_FRAME = 4;
+
+    //frames between reads of the display's refresh rate
+    private static final int REFRESH_CHECK_FRAMES = 64;
+
+    private final Callback callback;
+    private final long tickNanos;
+    private final Display display;
+
+    private HandlerThread thread;
+    private Handler handler;
+    private volatile boolean running;
+
+    //only touched on the loop thread
+    private long lastFrameTimeNanos;
+    private long accumulatorNanos;
+    private int framesSinceRefreshCheck;
+    private volatile long nominalIntervalNanos;
+    private volatile long frameIntervalNanos;
+
+    /**
+     * @param tickNanos length of one simulation tick
+     * @param display   the display drawn on, its refresh rate is the nominal vsync period
+     */
+    public ChoreographerFrameDriver(Callback callback, long tickNanos, Display display) {
+        this.callback = callback;
+        this.tickNanos = tickNanos;
+        this.display = display;
+        checkRefreshRate();
+    }
+
+    //starts over from the nominal period when the display switched rate
+    private void checkRefreshRate() {
+        long nominal = (long) (1000000000L / display.getRefreshRate());
+        if (nominal != nominalIntervalNanos) {
+            nominalIntervalNanos = nominal;
+            frameIntervalNanos = nominal;
+        }
+    }
+
+    @Override
+    public void start() {
+        checkRefreshRate();
+        running = true;
+        lastFrameTimeNanos = 0;
+        accumulatorNanos = 0;
+        if (thread == null) {
+            thread = new HandlerThread("GameLoop");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(ChoreographerFrameDriver.this);
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        // take the pending callback off the loop thread's own Choreographer, then leave
+        final CountDownLatch removed = new CountDownLatch(1);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().removeFrameCallback(ChoreographerFrameDriver.this);
+                removed.countDown();
+            }
+        });
+        try {
+            removed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        stop();
+        if (thread == null) {
+            return;
+        }
+        thread.quitSafely();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        handler = null;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        if (lastFrameTimeNanos == 0) {
+            // first frame, show the current state and start counting from here
+            lastFrameTimeNanos = frameTimeNanos;
+            accumulatorNanos = tickNanos;
+        }
+        long elapsed = frameTimeNanos - lastFrameTimeNanos;
+        lastFrameTimeNanos = frameTimeNanos;
+        if (++framesSinceRefreshCheck >= REFRESH_CHECK_FRAMES) {
+            framesSinceRefreshCheck = 0;
+            checkRefreshRate();
+        }
+        long nominal = nominalIntervalNanos;
+        if (elapsed > nominal / 2 && elapsed < nominal + nominal / 2) {
+            // smoothed vsync period; a frame that missed a vsync says nothing about it
+            frameIntervalNanos += (elapsed - frameIntervalNanos) / 8;
+        }
+
+        accumulatorNanos += elapsed;
+        int ticks = 0;
+        while (accumulatorNanos >= tickNanos && callback.isRunning()) {
+            if (ticks == MAX_TICKS_PER_FRAME) {
+                accumulatorNanos = 0;
+                break;
+            }
+            callback.tick(frameTimeNanos - accumulatorNanos + tickNanos);
+            accumulatorNanos -= tickNanos;
+            ticks++;
+        }
+        callback.render(Math.min(1f, (float) accumulatorNanos / tickNanos));
+
+        if (running && callback.isRunning()) {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public long getFrameIntervalNanos() {
+        return frameIntervalNanos;
+    }
+}
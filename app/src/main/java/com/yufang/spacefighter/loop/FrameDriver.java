@@ -0,0 +1,55 @@
+package com.yufang.spacefighter.loop;
+
+/**
+ * Decides when the game ticks and when it draws.
+ */
+public interface FrameDriver {
+
+    /**
+     * What a driver drives, implemented by the game view.
+     */
+    interface Callback {
+
+        /**
+         * @return false once the game has stopped and no more frames should be produced
+         */
+        boolean isRunning();
+
+        /**
+         * Advances the simulation by one fixed tick.
+         *
+         * @param tickEndNanos the {@link System#nanoTime()} the tick ends at, input that
+         *                     happened up to then belongs to this tick
+         */
+        void tick(long tickEndNanos);
+
+        /**
+         * Draws a frame.
+         *
+         * @param alpha how far between the previous and the current tick the frame is,
+         *              0 shows the previous tick and 1 the current one
+         */
+        void render(float alpha);
+    }
+
+    /**
+     * Starts producing frames on the driver's own thread. The thread is created on the first
+     * start and parked in between, so resuming does not pay for a new one.
+     */
+    void start();
+
+    /**
+     * Stops producing frames and waits until the current one has finished.
+     */
+    void stop();
+
+    /**
+     * Stops and ends the driver's thread. The driver cannot be started again.
+     */
+    void shutdown();
+
+    /**
+     * Returns the measured interval between frames in nanoseconds.
+     */
+    long getFrameIntervalNanos();
+}
@@ -0,0 +1,124 @@
+package com.yufang.spacefighter.loop;
+
+/**
+ * The original game loop: tick once, draw, sleep 17ms, repeat. The game speed therefore
+ * follows the frame rate, and the sleep drifts against the display refresh.
+ *
+ * <p>The loop thread outlives a pause: stopping parks it on a monitor and starting wakes it
+ * up again, so a resume costs a notify rather than a thread start.</p>
+ */
+public class SleepFrameDriver implements FrameDriver, Runnable {
+
+    private static final long SLEEP_MS = 17;
+
+    private final Callback callback;
+    private Thread gameThread = null;
+
+    //guarded by this: whether frames are wanted, whether the loop is between frames and
+    //whether the thread should end
+    private boolean running;
+    private boolean parked = true;
+    private boolean quit;
+
+    public SleepFrameDriver(Callback callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public void run() {
+        while (awaitStart()) {
+            while (isRunning() && callback.isRunning()) {
+                callback.tick(System.nanoTime());
+                callback.render(1f);
+                control();
+            }
+            finished();
+        }
+    }
+
+    //the game stopped itself, at game over: park until the next start() instead of spinning.
+    //a game resumed meanwhile runs again before start(), so its start is not lost
+    private synchronized void finished() {
+        if (!callback.isRunning()) {
+            running = false;
+        }
+    }
+
+    //parks until started again, false once the thread should end
+    private synchronized boolean awaitStart() {
+        parked = true;
+        notifyAll();
+        while (!running && !quit) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        parked = false;
+        return !quit;
+    }
+
+    private synchronized boolean isRunning() {
+        return running;
+    }
+
+    private void control() {
+        try {
+            Thread.sleep(SLEEP_MS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (quit) {
+            throw new IllegalStateException("driver was shut down");
+        }
+        running = true;
+        if (gameThread == null) {
+            gameThread = new Thread(this, "GameLoop");
+            gameThread.start();
+        }
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        //a loop that ended on its own, at game over, is parked already
+        while (gameThread != null && !parked) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            quit = true;
+            notifyAll();
+            thread = gameThread;
+            gameThread = null;
+        }
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+        }
+    }
+
+    @Override
+    public long getFrameIntervalNanos() {
+        return SLEEP_MS * 1000000L;
+    }
+}
@@ -0,0 +1,73 @@
+package com.yufang.spacefighter.perf;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+
+/**
+ * Feeds battery level, charging state, battery temperature and battery saver into a
+ * {@link QualityGovernor}. The battery broadcast is sticky, so the governor gets the current
+ * state as soon as the monitor is started.
+ */
+public class DeviceStateMonitor extends BroadcastReceiver {
+
+    private final Context context;
+    private final QualityGovernor governor;
+    private boolean registered;
+
+    public DeviceStateMonitor(Context context, QualityGovernor governor) {
+        this.context = context.getApplicationContext();
+        this.governor = governor;
+    }
+
+    public void start() {
+        if (registered) {
+            return;
+        }
+        IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        }
+        Intent battery = context.registerReceiver(this, filter);
+        registered = true;
+        if (battery != null) {
+            onReceive(context, battery);
+        }
+    }
+
+    public void stop() {
+        if (registered) {
+            context.unregisterReceiver(this);
+            registered = false;
+        }
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+            // power save mode changed, the battery state itself is still the sticky one
+            intent = context.registerReceiver(null,
+                    new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            if (intent == null) {
+                return;
+            }
+        }
+        int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+        int percent = level < 0 || scale <= 0 ? 100 : level * 100 / scale;
+        int plugged = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+        int temperature = intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0);
+
+        boolean powerSave = false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            PowerManager powerManager =
+                    (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+            powerSave = powerManager != null && powerManager.isPowerSaveMode();
+        }
+        governor.setDeviceState(percent, plugged != 0, temperature, powerSave);
+    }
+}
@@ -0,0 +1,118 @@
+package com.yufang.spacefighter.perf;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Build;
+import android.os.Debug;
+
+import com.yufang.spacefighter.logger.Log;
+
+/**
+ * Draws {@link FrameStats} as an overlay and exports them through the logger.
+ *
+ * <p>The text is rebuilt every {@value #REFRESH_FRAMES} frames into reused builders, so an
+ * open overlay costs a few drawText calls per frame and does not allocate.</p>
+ */
+public class PerfHud {
+
+    public static final String TAG = "FrameStats";
+
+    private static final int REFRESH_FRAMES = 30;
+    private static final float TEXT_SIZE = 24;
+
+    private final FrameStats stats;
+    private final Paint textPaint = new Paint();
+    private final Paint backgroundPaint = new Paint();
+    private final StringBuilder[] lines = new StringBuilder[FrameStats.PHASE_COUNT + 1];
+
+    private volatile boolean visible;
+    private int framesUntilRefresh;
+
+    public PerfHud(FrameStats stats) {
+        this.stats = stats;
+        textPaint.setColor(Color.GREEN);
+        textPaint.setTextSize(TEXT_SIZE);
+        textPaint.setAntiAlias(true);
+        backgroundPaint.setColor(Color.argb(160, 0, 0, 0));
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = new StringBuilder(64);
+        }
+    }
+
+    /**
+     * Shows or hides the overlay. May be called from any thread.
+     */
+    public void toggle() {
+        visible = !visible;
+        framesUntilRefresh = 0;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Draws the overlay in the top right corner, if it is visible.
+     */
+    public void draw(Canvas canvas) {
+        if (!visible) {
+            return;
+        }
+        if (--framesUntilRefresh <= 0) {
+            refresh();
+            framesUntilRefresh = REFRESH_FRAMES;
+        }
+        float lineHeight = TEXT_SIZE * 1.25f;
+        float width = TEXT_SIZE * 16;
+        float left = canvas.getWidth() - width - 10;
+        canvas.drawRect(left, 10, left + width, 10 + lineHeight * lines.length + 10,
+                backgroundPaint);
+        for (int i = 0; i < lines.length; i++) {
+            canvas.drawText(lines[i], 0, lines[i].length(),
+                    left + 10, 10 + lineHeight * (i + 1), textPaint);
+        }
+    }
+
+    private void refresh() {
+        stats.setGcCount(readGcCount());
+        for (int i = 0; i < FrameStats.PHASE_COUNT; i++) {
+            StringBuilder line = lines[i];
+            line.setLength(0);
+            line.append(FrameStats.getPhaseName(i)).append(' ');
+            stats.appendPercentiles(line, i);
+            line.append(" ms");
+        }
+        StringBuilder last = lines[FrameStats.PHASE_COUNT];
+        last.setLength(0);
+        last.append("late ").append(stats.getLateFrames())
+                .append('/').append(stats.getFrames())
+                .append("  gc ").append(stats.getGcCount());
+    }
+
+    /**
+     * Writes a summary line to the logger so it ends up wherever the log chain sends it.
+     */
+    public void export() {
+        stats.setGcCount(readGcCount());
+        Log.i(TAG, stats.summary());
+    }
+
+    /**
+     * Returns the number of garbage collections since the process started, or -1 before
+     * Marshmallow where the runtime does not expose it.
+     */
+    public static long readGcCount() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            String count = Debug.getRuntimeStat("art.gc.gc-count");
+            if (count != null) {
+                try {
+                    return Long.parseLong(count);
+                } catch (NumberFormatException e) {
+                    // fall through
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,78 @@
+package com.yufang.spacefighter.benchmark;
+
+import com.yufang.spacefighter.ecs.EntityType;
+import com.yufang.spacefighter.ecs.World;
+import com.yufang.spacefighter.sim.SimRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overlap tests between {@link World} entities at increasing entity counts: the player against every entity, as the
+ * game does today, and every entity against every other as a worst case.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+
+    @Param({"16", "128", "1024"})
+    int entityCount;
+
+    private World world;
+    private int player;
+
+    @Setup
+    public void setUp() {
+        SimRandom random = new SimRandom(7);
+        EntityType playerType = new EntityType();
+        playerType.width = 100;
+        playerType.height = 50;
+        EntityType shipType = new EntityType();
+        shipType.width = 100;
+        shipType.height = 72;
+        world = new World(entityCount + 1);
+        player = world.create(playerType, 75, 300, 0);
+        for (int i = 0; i < entityCount; i++) {
+            world.create(shipType, random.nextInt(1280), random.nextInt(720), 0);
+        }
+    }
+
+    @Benchmark
+    public int playerAgainstAll() {
+        int hits = 0;
+        for (int e = 1; e < world.count; e++) {
+            if (world.overlaps(player, e)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int allPairs() {
+        int hits = 0;
+        for (int i = 1; i < world.count; i++) {
+            for (int j = i + 1; j < world.count; j++) {
+                if (world.overlaps(i, j)) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,72 @@
+package com.yufang.spacefighter.benchmark;
+
+import com.yufang.spacefighter.ecs.EntityType;
+import com.yufang.spacefighter.ecs.PlayerSystem;
+import com.yufang.spacefighter.ecs.ScrollSystem;
+import com.yufang.spacefighter.ecs.World;
+import com.yufang.spacefighter.sim.GameSimulation;
+import com.yufang.spacefighter.sim.SimConfig;
+import com.yufang.spacefighter.sim.SimRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-system update cost over a {@link World}: the player system on its single entity and
+ * the scroll system over the ships and a field of stars.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntityUpdateBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int starCount;
+
+    private SimRandom random;
+    private World world;
+    private EntityType[] types;
+    private int player;
+    private PlayerSystem playerSystem;
+    private ScrollSystem scrollSystem;
+    private long tick;
+
+    @Setup
+    public void setUp() {
+        SimConfig config = new SimConfig();
+        config.starCount = starCount;
+        GameSimulation simulation = new GameSimulation(config, 1);
+        random = new SimRandom(2);
+        world = simulation.getWorld();
+        types = simulation.getTypes();
+        player = simulation.getPlayer();
+        playerSystem = new PlayerSystem(config);
+        scrollSystem = new ScrollSystem(config.screenX, config.screenY);
+    }
+
+    @Benchmark
+    public int playerUpdate() {
+        playerSystem.update(world, player, (++tick & 16) == 0);
+        return world.y[player];
+    }
+
+    @Benchmark
+    public int scrollUpdate() {
+        scrollSystem.update(world, types, 5, random);
+        return world.x[world.count - 1];
+    }
+}
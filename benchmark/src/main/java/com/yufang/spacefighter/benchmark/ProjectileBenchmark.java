@@ -0,0 +1,83 @@
+package com.yufang.spacefighter.benchmark;
+
+import com.yufang.spacefighter.ecs.EntityType;
+import com.yufang.spacefighter.ecs.Projectiles;
+import com.yufang.spacefighter.ecs.WeaponSystem;
+import com.yufang.spacefighter.ecs.World;
+import com.yufang.spacefighter.sim.SimConfig;
+import com.yufang.spacefighter.sim.SimRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One bullet tick at bullet-hell densities: move and sweep every bullet against a screen
+ * full of hostiles. The pool is topped up before each update, so the cost of refilling it
+ * is included and the density stays constant.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProjectileBenchmark {
+
+    @Param({"1000", "4096"})
+    int bulletCount;
+
+    @Param({"4", "16"})
+    int hostileCount;
+
+    private SimRandom random;
+    private World world;
+    private EntityType[] types;
+    private Projectiles projectiles;
+    private WeaponSystem weapons;
+
+    @Setup
+    public void setUp() {
+        random = new SimRandom(11);
+        EntityType hostile = new EntityType();
+        hostile.behavior = EntityType.BEHAVIOR_HOSTILE;
+        hostile.width = 100;
+        hostile.height = 72;
+        EntityType boom = new EntityType();
+        boom.id = 1;
+        //expires at once, so explosions do not pile up across invocations
+        boom.lifetime = 1;
+        types = new EntityType[]{hostile, boom};
+
+        world = new World(hostileCount * 2);
+        for (int i = 0; i < hostileCount; i++) {
+            world.create(hostile, 300 + random.nextInt(900), random.nextInt(650), 10);
+        }
+        projectiles = new Projectiles(bulletCount);
+        weapons = new WeaponSystem(new SimConfig(), boom);
+    }
+
+    @Benchmark
+    public int update() {
+        while (projectiles.count < bulletCount) {
+            projectiles.add(random.nextInt(1280), random.nextInt(720), 30, random.nextInt(9) - 4);
+        }
+        int kills = weapons.update(projectiles, world, types);
+        //put shot down hostiles back and drop their explosions
+        world.count = hostileCount;
+        for (int e = 0; e < hostileCount; e++) {
+            world.teleport(e, 300 + random.nextInt(900), world.y[e]);
+        }
+        return kills;
+    }
+}
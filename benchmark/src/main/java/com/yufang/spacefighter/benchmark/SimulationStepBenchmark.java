@@ -0,0 +1,57 @@
+package com.yufang.spacefighter.benchmark;
+
+import com.yufang.spacefighter.sim.GameSimulation;
+import com.yufang.spacefighter.sim.SimConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one full game tick, i.e. what used to be GameView.update().
+ *
+ * <p>A game ends after a few hundred ticks, so a finished game is replaced by a new one with
+ * the next seed. The miss limit is raised to make that rare; what is left of the restart
+ * cost shows up in the allocation rate.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulationStepBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int starCount;
+
+    private SimConfig config;
+    private GameSimulation simulation;
+    private long seed;
+
+    @Setup
+    public void setUp() {
+        config = new SimConfig();
+        config.starCount = starCount;
+        config.missLimit = Integer.MAX_VALUE;
+        simulation = new GameSimulation(config, seed);
+    }
+
+    @Benchmark
+    public int step() {
+        if (simulation.isGameOver()) {
+            simulation = new GameSimulation(config, ++seed);
+        }
+        return simulation.step((simulation.getTick() & 16) == 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.yufang.spacefighter.anim;
+
+/**
+ * A sequence of atlas frames, each shown for a number of ticks. The timeline is expanded
+ * once at load into one frame index per tick, so looking up the frame for a tick is a
+ * single array read.
+ */
+public class Animation {
+
+    private final int[] timeline;
+    private final boolean loop;
+
+    /**
+     * @param frames atlas frame indexes in playing order
+     * @param ticks  how many ticks each frame is shown, at least one
+     * @param loop   whether to start over after the last frame or hold it
+     */
+    public Animation(int[] frames, int[] ticks, boolean loop) {
+        if (frames.length == 0 || frames.length != ticks.length) {
+            throw new IllegalArgumentException("need one duration per frame");
+        }
+        int length = 0;
+        for (int t : ticks) {
+            if (t < 1) {
+                throw new IllegalArgumentException("frame shown for " + t + " ticks");
+            }
+            length += t;
+        }
+        timeline = new int[length];
+        for (int f = 0, at = 0; f < frames.length; f++) {
+            for (int t = 0; t < ticks[f]; t++) {
+                timeline[at++] = frames[f];
+            }
+        }
+        this.loop = loop;
+    }
+
+    /**
+     * A single frame that never changes.
+     */
+    public static Animation still(int frame) {
+        return new Animation(new int[]{frame}, new int[]{1}, true);
+    }
+
+    /**
+     * Returns the atlas frame shown {@code tick} ticks after the animation started.
+     */
+    public int frameAt(long tick) {
+        if (tick < 0) {
+            tick = 0;
+        }
+        if (loop) {
+            return timeline[(int) (tick % timeline.length)];
+        }
+        return timeline[(int) Math.min(tick, timeline.length - 1)];
+    }
+
+    /**
+     * Returns the length of one run through the animation, in ticks.
+     */
+    public int getLength() {
+        return timeline.length;
+    }
+}
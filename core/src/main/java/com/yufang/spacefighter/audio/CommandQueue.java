@@ -0,0 +1,71 @@
+package com.yufang.spacefighter.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single producer, single consumer queue of sound commands.
+ *
+ * <p>The game thread offers a command for every sound to start, the audio thread drains
+ * them before mixing each block. A command is one int: the sound id in the low byte and
+ * the gain, 0 to 255, in the next. Neither side blocks or allocates; when the ring is full
+ * new sounds are dropped, a missing effect being better than a late tick.</p>
+ */
+public class CommandQueue {
+
+    private static final int EMPTY = -1;
+
+    private final int[] entries;
+    private final int mask;
+
+    //next slot to read, written only by the consumer
+    private final AtomicLong head = new AtomicLong();
+    //next slot to write, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public CommandQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        entries = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Producer side.
+     *
+     * @return false if the queue was full and the command was dropped
+     */
+    public boolean offer(int soundId, int gain) {
+        long t = tail.get();
+        if (t - head.get() == entries.length) {
+            return false;
+        }
+        entries[(int) t & mask] = (soundId & 0xFF) | (Math.max(0, Math.min(255, gain)) << 8);
+        // publishes the entry, ordered after the array store
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side. Removes and returns the oldest command, or -1 if there is none; decode
+     * it with {@link #soundOf(int)} and {@link #gainOf(int)}.
+     */
+    public int poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return EMPTY;
+        }
+        int entry = entries[(int) h & mask];
+        head.lazySet(h + 1);
+        return entry;
+    }
+
+    public static int soundOf(int entry) {
+        return entry & 0xFF;
+    }
+
+    public static int gainOf(int entry) {
+        return (entry >>> 8) & 0xFF;
+    }
+}
@@ -0,0 +1,124 @@
+package com.yufang.spacefighter.audio;
+
+/**
+ * Mixes a fixed number of voices of preloaded 16-bit mono PCM into blocks.
+ *
+ * <p>Starting a sound takes a free voice, or steals the one that has played longest when
+ * all are busy: the tail of an old sound matters least. Mixing sums the voices in 32 bits
+ * and clamps once per sample. Nothing here allocates after construction, and it is only
+ * ever touched by the audio thread.</p>
+ */
+public class Mixer {
+
+    private final short[][] sounds;
+
+    //per voice: the sound playing or -1, the next sample and the gain out of 256
+    private final int[] sound;
+    private final int[] position;
+    private final int[] gain;
+
+    private int masterGain = 256;
+
+    /**
+     * @param sounds the PCM of each sound id
+     */
+    public Mixer(short[][] sounds, int voices) {
+        this.sounds = sounds;
+        sound = new int[voices];
+        position = new int[voices];
+        gain = new int[voices];
+        for (int v = 0; v < voices; v++) {
+            sound[v] = -1;
+        }
+    }
+
+    /**
+     * Sets the overall volume out of 256.
+     */
+    public void setMasterGain(int masterGain) {
+        this.masterGain = masterGain;
+    }
+
+    /**
+     * Starts a sound.
+     *
+     * @param gain volume out of 255
+     * @return the voice it plays on, -1 for an unknown sound
+     */
+    public int play(int soundId, int gain) {
+        if (soundId < 0 || soundId >= sounds.length || sounds[soundId] == null) {
+            return -1;
+        }
+        int voice = 0;
+        for (int v = 0; v < sound.length; v++) {
+            if (sound[v] < 0) {
+                voice = v;
+                break;
+            }
+            if (position[v] > position[voice]) {
+                voice = v;
+            }
+        }
+        sound[voice] = soundId;
+        position[voice] = 0;
+        this.gain[voice] = gain + 1;
+        return voice;
+    }
+
+    public void stopAll() {
+        for (int v = 0; v < sound.length; v++) {
+            sound[v] = -1;
+        }
+    }
+
+    /**
+     * Returns the number of voices playing.
+     */
+    public int getActiveVoices() {
+        int active = 0;
+        for (int s : sound) {
+            if (s >= 0) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Mixes the next {@code frames} samples into {@code out}, overwriting it.
+     *
+     * @param mix scratch of at least {@code frames} ints
+     */
+    public void mix(short[] out, int[] mix, int frames) {
+        for (int i = 0; i < frames; i++) {
+            mix[i] = 0;
+        }
+        for (int v = 0; v < sound.length; v++) {
+            if (sound[v] < 0) {
+                continue;
+            }
+            short[] pcm = sounds[sound[v]];
+            int p = position[v];
+            int n = Math.min(frames, pcm.length - p);
+            int g = gain[v];
+            for (int i = 0; i < n; i++) {
+                mix[i] += pcm[p + i] * g;
+            }
+            position[v] = p + n;
+            if (position[v] >= pcm.length) {
+                sound[v] = -1;
+            }
+        }
+        //voice gain and master gain are both out of 256
+        int master = masterGain;
+        for (int i = 0; i < frames; i++) {
+            long s = ((long) mix[i] * master) >> 16;
+            if (s > Short.MAX_VALUE) {
+                s = Short.MAX_VALUE;
+            } else if (s < Short.MIN_VALUE) {
+                s = Short.MIN_VALUE;
+            }
+            out[i] = (short) s;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.yufang.spacefighter.audio;
+
+/**
+ * The game's sound effects, rendered to 16-bit mono PCM once at load.
+ *
+ * <p>The effects are synthesized rather than decoded from files: noise bursts and tone
+ * sweeps are a few lines each, cost no APK space and come out at whatever rate the device
+ * mixes at, so nothing is resampled while playing. The noise uses its own generator, it
+ * must not draw from the simulation's.</p>
+ */
+public final class Sounds {
+
+    public static final int EXPLOSION = 0;
+    public static final int MISS = 1;
+    public static final int CRASH = 2;
+    public static final int GAME_OVER = 3;
+    public static final int COUNT = 4;
+
+    private Sounds() {
+    }
+
+    /**
+     * Renders every effect at the given sample rate, indexed by sound id.
+     */
+    public static short[][] render(int sampleRate) {
+        short[][] bank = new short[COUNT][];
+        bank[EXPLOSION] = noiseBurst(sampleRate, 0.45f, 0.8f, 0.25f, 1);
+        bank[MISS] = sweep(sampleRate, 0.25f, 660, 220, 0.35f);
+        bank[CRASH] = noiseBurst(sampleRate, 0.7f, 0.9f, 0.08f, 2);
+        float third = 0.33f;
+        bank[GAME_OVER] = concat(tone(sampleRate, third, 440, 0.4f),
+                tone(sampleRate, third, 370, 0.4f), tone(sampleRate, third * 1.5f, 294, 0.4f));
+        return bank;
+    }
+
+    //low-passed noise with an exponential decay, the filter closing as it fades
+    private static short[] noiseBurst(int sampleRate, float seconds, float volume,
+            float brightness, int seed) {
+        int n = (int) (sampleRate * seconds);
+        short[] pcm = new short[n];
+        int noise = 0x9E3779B9 * seed;
+        float filtered = 0;
+        for (int i = 0; i < n; i++) {
+            float t = (float) i / n;
+            noise = noise * 1103515245 + 12345;
+            float white = (noise >> 16) / 32768f;
+            float cutoff = brightness * (1 - t) + 0.01f;
+            filtered += (white - filtered) * cutoff;
+            float envelope = (float) Math.exp(-5 * t);
+            pcm[i] = toSample(filtered * envelope * volume * 2);
+        }
+        return pcm;
+    }
+
+    //a square wave gliding from one pitch to another, fading out linearly
+    private static short[] sweep(int sampleRate, float seconds, float fromHz, float toHz,
+            float volume) {
+        int n = (int) (sampleRate * seconds);
+        short[] pcm = new short[n];
+        float phase = 0;
+        for (int i = 0; i < n; i++) {
+            float t = (float) i / n;
+            phase += (fromHz + (toHz - fromHz) * t) / sampleRate;
+            phase -= (int) phase;
+            float square = phase < 0.5f ? 1 : -1;
+            pcm[i] = toSample(square * (1 - t) * volume);
+        }
+        return pcm;
+    }
+
+    //a sine with short fades at both ends so it does not click
+    private static short[] tone(int sampleRate, float seconds, float hz, float volume) {
+        int n = (int) (sampleRate * seconds);
+        int fade = Math.max(1, sampleRate / 100);
+        short[] pcm = new short[n];
+        for (int i = 0; i < n; i++) {
+            float envelope = Math.min(1f, Math.min(i, n - 1 - i) / (float) fade);
+            double s = Math.sin(2 * Math.PI * hz * i / sampleRate);
+            pcm[i] = toSample((float) s * envelope * volume);
+        }
+        return pcm;
+    }
+
+    private static short[] concat(short[]... parts) {
+        int n = 0;
+        for (short[] p : parts) {
+            n += p.length;
+        }
+        short[] pcm = new short[n];
+        int at = 0;
+        for (short[] p : parts) {
+            System.arraycopy(p, 0, pcm, at, p.length);
+            at += p.length;
+        }
+        return pcm;
+    }
+
+    private static short toSample(float value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value * 32767));
+    }
+}
@@ -0,0 +1,233 @@
+package com.yufang.spacefighter.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts assets at build time into raw resources the game decrypts through MediaDrm, in
+ * place of encrypting them on a device and pulling the files off it.
+ *
+ * <p>Every source becomes {@code <name>_enc.bin}, an {@link EncryptedAsset} container with a
+ * fresh random IV and the chunks in order. The key is the one the license server hands out
+ * for the key id, read from a key file that stays out of the repository: two hex strings,
+ * the key id and the AES-128 key, {@code #} starts a comment. Assets are independent, so
+ * they are encrypted in parallel on all cores.</p>
+ */
+public class AssetEncryptor {
+
+    public static final String SUFFIX = "_enc.bin";
+
+    //plain bytes per chunk, the most a reader decrypts to get at any one byte
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final byte[] keyId;
+    private final SecretKeySpec key;
+    private final int chunkSize;
+    private final SecureRandom random = new SecureRandom();
+
+    public AssetEncryptor(byte[] keyId, byte[] key) {
+        this(keyId, key, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize a multiple of 16
+     */
+    public AssetEncryptor(byte[] keyId, byte[] key, int chunkSize) {
+        if (keyId.length != EncryptedAsset.KEY_ID_SIZE || key.length != 16) {
+            throw new IllegalArgumentException("Key id and key must be 16 bytes");
+        }
+        if (chunkSize <= 0 || chunkSize % EncryptedAsset.BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Chunk size " + chunkSize);
+        }
+        this.keyId = keyId;
+        this.key = new SecretKeySpec(key, "AES");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads the key id and key from a key file.
+     */
+    public static AssetEncryptor fromKeyFile(File file) throws IOException {
+        String text = new String(readFully(new FileInputStream(file)), "UTF-8");
+        List<String> tokens = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            for (String token : line.trim().split("\\s+")) {
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        if (tokens.size() != 2) {
+            throw new IOException(file + ": expected a key id and a key");
+        }
+        try {
+            return new AssetEncryptor(parseHex(tokens.get(0)), parseHex(tokens.get(1)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Encrypts one asset, header included.
+     */
+    public byte[] encrypt(byte[] plain) throws GeneralSecurityException {
+        byte[] iv = new byte[EncryptedAsset.BLOCK_SIZE];
+        synchronized (random) {
+            random.nextBytes(iv);
+        }
+        int count = EncryptedAsset.chunkCount(plain.length, chunkSize);
+        int[] offsets = new int[count];
+        int[] checksums = new int[count];
+        int offset = EncryptedAsset.headerSize(count);
+        for (int chunk = 0; chunk < count; chunk++) {
+            int start = chunk * chunkSize;
+            int length = Math.min(chunkSize, plain.length - start);
+            offsets[chunk] = offset;
+            checksums[chunk] = (int) EncryptedAsset.checksum(plain, start, length);
+            offset += EncryptedAsset.paddedLength(length);
+        }
+        EncryptedAsset asset = new EncryptedAsset(keyId, iv, plain.length, chunkSize, offsets,
+                checksums);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(offset);
+        try {
+            asset.writeHeader(out);
+        } catch (IOException e) {
+            // cannot happen on a byte array
+            throw new IllegalStateException(e);
+        }
+        Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+        for (int chunk = 0; chunk < count; chunk++) {
+            int start = chunk * chunkSize;
+            byte[] padded = Arrays.copyOfRange(plain, start,
+                    start + asset.getChunkPaddedLength(chunk));
+            cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(asset.getChunkIv(chunk)));
+            byte[] body = cipher.doFinal(padded);
+            out.write(body, 0, body.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encrypts every source into the output directory, in parallel.
+     *
+     * @return the files written, in the order of the sources
+     */
+    public List<File> encryptAll(List<File> sources, final File outputDir) throws IOException {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Cannot create " + outputDir);
+        }
+        int threads = Math.max(1, Math.min(sources.size(),
+                Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<File>> results = new ArrayList<>();
+            for (final File source : sources) {
+                results.add(pool.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        File output = new File(outputDir, outputName(source));
+                        byte[] encrypted = encrypt(readFully(new FileInputStream(source)));
+                        try (OutputStream out = new FileOutputStream(output)) {
+                            out.write(encrypted);
+                        }
+                        return output;
+                    }
+                }));
+            }
+            List<File> outputs = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    outputs.add(results.get(i).get());
+                } catch (ExecutionException e) {
+                    throw new IOException(sources.get(i) + ": " + e.getCause().getMessage(),
+                            e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted");
+                }
+            }
+            return outputs;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the raw resource file name for a source, its name up to the first dot plus
+     * {@value #SUFFIX}.
+     */
+    public static String outputName(File source) {
+        String name = source.getName();
+        int dot = name.indexOf('.');
+        if (dot >= 0) {
+            name = name.substring(0, dot);
+        }
+        if (!name.matches("[a-z][a-z0-9_]*")) {
+            throw new IllegalArgumentException(source + ": not a valid resource name");
+        }
+        return name + SUFFIX;
+    }
+
+    static byte[] parseHex(String hex) {
+        if ((hex.length() & 1) != 0 || !hex.matches("[0-9a-fA-F]*")) {
+            throw new IllegalArgumentException("not a hex string: " + hex);
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static byte[] readFully(InputStream stream) throws IOException {
+        try (InputStream in = stream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: AssetEncryptor key-file output-dir source...");
+            System.exit(2);
+        }
+        AssetEncryptor encryptor = fromKeyFile(new File(args[0]));
+        List<File> sources = new ArrayList<>();
+        for (String source : Arrays.asList(args).subList(2, args.length)) {
+            sources.add(new File(source));
+        }
+        long start = System.nanoTime();
+        List<File> outputs = encryptor.encryptAll(sources, new File(args[1]));
+        System.out.println("Encrypted " + outputs.size() + " assets into " + args[1] + " in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+}
@@ -0,0 +1,267 @@
+package com.yufang.spacefighter.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Header and chunk index of an asset encrypted at build time by {@link AssetEncryptor}.
+ *
+ * <p>The asset is cut into chunks of a fixed size, each encrypted on its own with AES-CBC
+ * without padding, as MediaDrm's generic crypto session does it. A chunk's IV is the
+ * asset's IV with the chunk number xor-ed into its last four bytes, so any chunk can be
+ * decrypted without the ones before it. Chunks are zero padded to whole blocks, and the
+ * index keeps where each starts and a CRC32 of its plain bytes to check the decryption.</p>
+ * <pre>
+ *   "SFEA"            magic
+ *   u8                format version
+ *   16 bytes          id of the key it is encrypted with
+ *   16 bytes          IV
+ *   i32               length of the plain asset
+ *   i32               plain bytes per chunk, a multiple of 16, the last chunk may be shorter
+ *   i32               number of chunks
+ *   8 bytes x n       index: i32 offset of the chunk in the file, i32 CRC32 of its plain bytes
+ *   bytes             the encrypted chunks
+ * </pre>
+ * <p>All integers are big endian.</p>
+ */
+public final class EncryptedAsset {
+
+    private static final byte[] MAGIC = {'S', 'F', 'E', 'A'};
+    public static final int VERSION = 2;
+
+    public static final int BLOCK_SIZE = 16;
+    public static final int KEY_ID_SIZE = 16;
+
+    //the header up to the index, and one index entry
+    public static final int FIXED_HEADER_SIZE = MAGIC.length + 1 + KEY_ID_SIZE + BLOCK_SIZE + 12;
+    private static final int ENTRY_SIZE = 8;
+    //index entries read from a stream at a time
+    private static final int INDEX_PIECE = 1024;
+
+    private final byte[] keyId;
+    private final byte[] iv;
+    private final int length;
+    private final int chunkSize;
+    private final int[] offsets;
+    private final int[] checksums;
+
+    /**
+     * @param offsets   where each chunk starts in the file
+     * @param checksums CRC32 of each chunk's plain bytes
+     */
+    public EncryptedAsset(byte[] keyId, byte[] iv, int length, int chunkSize, int[] offsets,
+            int[] checksums) {
+        if (keyId.length != KEY_ID_SIZE || iv.length != BLOCK_SIZE || length < 0) {
+            throw new IllegalArgumentException("Bad key id, IV or length");
+        }
+        if (chunkSize <= 0 || chunkSize % BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Chunk size " + chunkSize);
+        }
+        if (offsets.length != chunkCount(length, chunkSize)
+                || checksums.length != offsets.length) {
+            throw new IllegalArgumentException(offsets.length + " chunks for " + length
+                    + " bytes");
+        }
+        this.keyId = keyId;
+        this.iv = iv;
+        this.length = length;
+        this.chunkSize = chunkSize;
+        this.offsets = offsets;
+        this.checksums = checksums;
+    }
+
+    public byte[] getKeyId() {
+        return keyId;
+    }
+
+    public byte[] getIv() {
+        return iv;
+    }
+
+    /**
+     * Returns the length of the plain asset.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the size of the header, index included; the first chunk may start here.
+     */
+    public int getHeaderSize() {
+        return headerSize(offsets.length);
+    }
+
+    public int getChunkOffset(int chunk) {
+        return offsets[chunk];
+    }
+
+    /**
+     * Returns the number of plain bytes in a chunk.
+     */
+    public int getChunkLength(int chunk) {
+        return (int) Math.min(chunkSize, length - (long) chunk * chunkSize);
+    }
+
+    /**
+     * Returns the number of encrypted bytes of a chunk in the file.
+     */
+    public int getChunkPaddedLength(int chunk) {
+        return paddedLength(getChunkLength(chunk));
+    }
+
+    /**
+     * Returns the IV a chunk is encrypted with.
+     */
+    public byte[] getChunkIv(int chunk) {
+        byte[] chunkIv = Arrays.copyOf(iv, BLOCK_SIZE);
+        for (int i = 0; i < 4; i++) {
+            chunkIv[BLOCK_SIZE - 1 - i] ^= (byte) (chunk >>> (i * 8));
+        }
+        return chunkIv;
+    }
+
+    /**
+     * Returns true if the decrypted bytes of a chunk are what was encrypted.
+     */
+    public boolean checkChunk(int chunk, byte[] plain, int offset) {
+        return (int) checksum(plain, offset, getChunkLength(chunk)) == checksums[chunk];
+    }
+
+    public static long checksum(byte[] plain, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(plain, offset, length);
+        return crc.getValue();
+    }
+
+    public static int paddedLength(int length) {
+        return (length + BLOCK_SIZE - 1) & ~(BLOCK_SIZE - 1);
+    }
+
+    public static int chunkCount(int length, int chunkSize) {
+        return (int) (((long) length + chunkSize - 1) / chunkSize);
+    }
+
+    public static int headerSize(int chunkCount) {
+        return FIXED_HEADER_SIZE + chunkCount * ENTRY_SIZE;
+    }
+
+    /**
+     * Returns true if the bytes start like an encrypted asset. Assets encrypted on a device
+     * before the build tool existed have no header at all.
+     */
+    public static boolean hasMagic(byte[] prefix, int size) {
+        return size >= MAGIC.length
+                && Arrays.equals(Arrays.copyOf(prefix, MAGIC.length), MAGIC);
+    }
+
+    public void writeHeader(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.write(keyId);
+        out.write(iv);
+        out.writeInt(length);
+        out.writeInt(chunkSize);
+        out.writeInt(offsets.length);
+        for (int i = 0; i < offsets.length; i++) {
+            out.writeInt(offsets[i]);
+            out.writeInt(checksums[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads the header from the start of a stream, leaving the stream at the first byte
+     * after the index.
+     */
+    public static EncryptedAsset readFrom(DataInputStream in) throws IOException {
+        byte[] fixed = new byte[FIXED_HEADER_SIZE];
+        in.readFully(fixed);
+        //the index is sized from the header, so its count must agree before it is allocated
+        ByteBuffer sizes = ByteBuffer.wrap(fixed, FIXED_HEADER_SIZE - 12, 12);
+        int length = sizes.getInt();
+        int chunkSize = sizes.getInt();
+        int count = sizes.getInt();
+        if (length < 0 || chunkSize <= 0 || chunkSize % BLOCK_SIZE != 0
+                || count != chunkCount(length, chunkSize)) {
+            throw new IOException("Corrupt encrypted asset header");
+        }
+        //read in pieces, a truncated stream runs out before a huge index is allocated
+        ByteArrayOutputStream header = new ByteArrayOutputStream(
+                FIXED_HEADER_SIZE + Math.min(count, INDEX_PIECE) * ENTRY_SIZE);
+        header.write(fixed, 0, fixed.length);
+        byte[] piece = new byte[Math.min(count, INDEX_PIECE) * ENTRY_SIZE];
+        for (int left = count; left > 0; left -= INDEX_PIECE) {
+            int n = Math.min(left, INDEX_PIECE) * ENTRY_SIZE;
+            in.readFully(piece, 0, n);
+            header.write(piece, 0, n);
+        }
+        return readHeader(ByteBuffer.wrap(header.toByteArray()), Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the header of an asset held whole from the position of a buffer on, and checks
+     * that every chunk lies within it. Offsets count from that position, which is left alone.
+     */
+    public static EncryptedAsset readHeader(ByteBuffer file) throws IOException {
+        return readHeader(file.slice(), file.remaining());
+    }
+
+    private static EncryptedAsset readHeader(ByteBuffer in, long fileSize) throws IOException {
+        in.order(ByteOrder.BIG_ENDIAN);
+        if (in.remaining() < FIXED_HEADER_SIZE) {
+            throw new IOException("Not an encrypted asset");
+        }
+        byte[] magic = new byte[MAGIC.length];
+        in.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not an encrypted asset");
+        }
+        int version = in.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported encrypted asset version " + version
+                    + ", encrypt it again");
+        }
+        byte[] keyId = new byte[KEY_ID_SIZE];
+        in.get(keyId);
+        byte[] iv = new byte[BLOCK_SIZE];
+        in.get(iv);
+        int length = in.getInt();
+        int chunkSize = in.getInt();
+        int count = in.getInt();
+        if (length < 0 || chunkSize <= 0 || chunkSize % BLOCK_SIZE != 0
+                || count != chunkCount(length, chunkSize)
+                || in.remaining() < (long) count * ENTRY_SIZE) {
+            throw new IOException("Corrupt encrypted asset header");
+        }
+        int[] offsets = new int[count];
+        int[] checksums = new int[count];
+        long headerSize = headerSize(count);
+        for (int i = 0; i < count; i++) {
+            offsets[i] = in.getInt();
+            checksums[i] = in.getInt();
+            int chunkLength = (int) Math.min(chunkSize, length - (long) i * chunkSize);
+            long end = (long) offsets[i] + paddedLength(chunkLength);
+            if (offsets[i] < headerSize || end > fileSize) {
+                throw new IOException("Encrypted asset chunk " + i + " out of bounds");
+            }
+        }
+        return new EncryptedAsset(keyId, iv, length, chunkSize, offsets, checksums);
+    }
+}
@@ -0,0 +1,252 @@
+package com.yufang.spacefighter.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the plain bytes of an {@link EncryptedAsset}, decrypting only the chunks asked for
+ * and checking each against the index before handing it out.
+ *
+ * <p>An instance reads an asset held whole in a buffer, usually a file mapped with
+ * {@link #map(FileChannel, long, long, Decryptor, int)}, at any position. The chunks read
+ * last are kept decrypted in a small LRU, so reading near the last read costs no decryption
+ * and memory stays at a few chunks however large the asset is. The first byte costs one
+ * chunk, not the whole asset. The static {@link #decrypt(InputStream, Decryptor)} streams
+ * an asset from start to end instead. Not thread safe.</p>
+ */
+public class EncryptedAssetReader {
+
+    /**
+     * Decrypts AES-CBC without padding with the key of the given id. On a device that is the
+     * DRM crypto session, which holds the key.
+     */
+    public interface Decryptor {
+        byte[] decrypt(byte[] keyId, byte[] data, byte[] iv) throws IOException;
+    }
+
+    //decrypted chunks kept by default, enough for reads straddling a chunk boundary
+    public static final int DEFAULT_CACHED_CHUNKS = 4;
+
+    //most bytes a stream is read by at a time, whatever sizes its header claims
+    private static final int STREAM_PIECE = 64 * 1024;
+
+    private final ByteBuffer file;
+    private final EncryptedAsset asset;
+    private final Decryptor decryptor;
+
+    //decrypted chunks by number, least recently read first
+    private final LinkedHashMap<Integer, byte[]> cache;
+
+    /**
+     * @param file the whole asset from its position on
+     */
+    public EncryptedAssetReader(ByteBuffer file, Decryptor decryptor) throws IOException {
+        this(file, decryptor, DEFAULT_CACHED_CHUNKS);
+    }
+
+    /**
+     * @param file         the whole asset from its position on
+     * @param cachedChunks decrypted chunks kept for reading again, at least 1
+     */
+    public EncryptedAssetReader(ByteBuffer file, Decryptor decryptor, final int cachedChunks)
+            throws IOException {
+        if (cachedChunks < 1) {
+            throw new IllegalArgumentException("cachedChunks " + cachedChunks);
+        }
+        this.file = file.slice();
+        this.decryptor = decryptor;
+        asset = EncryptedAsset.readHeader(this.file);
+        cache = new LinkedHashMap<Integer, byte[]>(cachedChunks * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                return size() > cachedChunks;
+            }
+        };
+    }
+
+    /**
+     * Maps {@code length} bytes of a channel starting at {@code offset}, like a raw resource
+     * inside an apk. The mapping stays valid after the channel is closed.
+     */
+    public static EncryptedAssetReader map(FileChannel channel, long offset, long length,
+            Decryptor decryptor, int cachedChunks) throws IOException {
+        return new EncryptedAssetReader(
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, length), decryptor,
+                cachedChunks);
+    }
+
+    public EncryptedAsset getAsset() {
+        return asset;
+    }
+
+    /**
+     * Returns the length of the plain asset.
+     */
+    public int getLength() {
+        return asset.getLength();
+    }
+
+    /**
+     * Drops the decrypted chunks kept for reading again.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Decrypts one chunk, bypassing the cache.
+     *
+     * @return its plain bytes, at least {@link EncryptedAsset#getChunkLength(int)} of them
+     */
+    public byte[] decryptChunk(int chunk) throws IOException {
+        byte[] data = new byte[asset.getChunkPaddedLength(chunk)];
+        ByteBuffer in = file.duplicate();
+        in.position(asset.getChunkOffset(chunk));
+        in.get(data);
+        return decryptChunk(asset, chunk, data, decryptor);
+    }
+
+    /**
+     * Reads plain bytes from any position, decrypting only the chunks they lie in.
+     *
+     * @return the number of bytes read, less than {@code length} only at the end of the asset
+     */
+    public int read(long position, byte[] out, int offset, int length) throws IOException {
+        int chunkSize = asset.getChunkSize();
+        int read = 0;
+        while (read < length && position + read < asset.getLength()) {
+            long at = position + read;
+            int chunk = (int) (at / chunkSize);
+            byte[] plain = cache.get(chunk);
+            if (plain == null) {
+                plain = decryptChunk(chunk);
+                cache.put(chunk, plain);
+            }
+            int within = (int) (at - (long) chunk * chunkSize);
+            int n = Math.min(length - read, asset.getChunkLength(chunk) - within);
+            System.arraycopy(plain, within, out, offset + read, n);
+            read += n;
+        }
+        return read;
+    }
+
+    /**
+     * Returns a stream over the plain asset from its start, reading through the cache, for
+     * decoders that take a stream.
+     */
+    public InputStream newInputStream() {
+        return new InputStream() {
+
+            private final byte[] one = new byte[1];
+            private long position;
+
+            @Override
+            public int read() throws IOException {
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                int n = EncryptedAssetReader.this.read(position, buffer, offset, length);
+                if (n == 0) {
+                    return -1;
+                }
+                position += n;
+                return n;
+            }
+
+            @Override
+            public long skip(long n) {
+                long skipped = Math.max(0, Math.min(n, asset.getLength() - position));
+                position += skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return (int) (asset.getLength() - position);
+            }
+        };
+    }
+
+    /**
+     * Decrypts the whole asset into an array of exactly its length, bypassing the cache.
+     */
+    public byte[] readFully() throws IOException {
+        byte[] plain = new byte[asset.getLength()];
+        for (int chunk = 0; chunk < asset.getChunkCount(); chunk++) {
+            System.arraycopy(decryptChunk(chunk), 0, plain, chunk * asset.getChunkSize(),
+                    asset.getChunkLength(chunk));
+        }
+        return plain;
+    }
+
+    /**
+     * Decrypts a whole asset as it is read from a stream, into an array of exactly its
+     * length. The chunks must be stored in order, as {@link AssetEncryptor} writes them.
+     * Memory grows with the bytes the stream holds, not with the sizes its header claims.
+     */
+    public static byte[] decrypt(InputStream stream, Decryptor decryptor) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        EncryptedAsset asset = EncryptedAsset.readFrom(in);
+        ByteArrayOutputStream plain =
+                new ByteArrayOutputStream(Math.min(asset.getLength(), STREAM_PIECE));
+        long position = asset.getHeaderSize();
+        for (int chunk = 0; chunk < asset.getChunkCount(); chunk++) {
+            long offset = asset.getChunkOffset(chunk);
+            if (offset < position) {
+                throw new IOException("Encrypted asset chunks out of order, cannot stream");
+            }
+            while (position < offset) {
+                int skipped = in.skipBytes((int) Math.min(Integer.MAX_VALUE, offset - position));
+                if (skipped <= 0) {
+                    throw new IOException("Encrypted asset truncated");
+                }
+                position += skipped;
+            }
+            byte[] data = readPieces(in, asset.getChunkPaddedLength(chunk));
+            position += data.length;
+            plain.write(decryptChunk(asset, chunk, data, decryptor), 0,
+                    asset.getChunkLength(chunk));
+        }
+        return plain.toByteArray();
+    }
+
+    //reads length bytes a piece at a time, so a stream shorter than that ends in an
+    //EOFException before the whole length is allocated
+    private static byte[] readPieces(DataInputStream in, int length) throws IOException {
+        if (length <= STREAM_PIECE) {
+            byte[] data = new byte[length];
+            in.readFully(data);
+            return data;
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream(STREAM_PIECE);
+        byte[] piece = new byte[STREAM_PIECE];
+        while (data.size() < length) {
+            int n = Math.min(piece.length, length - data.size());
+            in.readFully(piece, 0, n);
+            data.write(piece, 0, n);
+        }
+        return data.toByteArray();
+    }
+
+    private static byte[] decryptChunk(EncryptedAsset asset, int chunk, byte[] data,
+            Decryptor decryptor) throws IOException {
+        byte[] plain = decryptor.decrypt(asset.getKeyId(), data, asset.getChunkIv(chunk));
+        if (plain == null || plain.length < asset.getChunkLength(chunk)
+                || !asset.checkChunk(chunk, plain, 0)) {
+            throw new IOException("Encrypted asset chunk " + chunk
+                    + " does not check out, wrong key or damaged");
+        }
+        return plain;
+    }
+}
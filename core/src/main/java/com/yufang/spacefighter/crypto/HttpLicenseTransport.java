@@ -0,0 +1,70 @@
+package com.yufang.spacefighter.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Posts requests with {@link HttpURLConnection}.
+ */
+public class HttpLicenseTransport implements LicenseTransport {
+
+    public static final int DEFAULT_TIMEOUT_MILLIS = 6000;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public HttpLicenseTransport() {
+        this(DEFAULT_TIMEOUT_MILLIS, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public HttpLicenseTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public Response post(String url, byte[] body, Map<String, String> headers)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(body != null);
+            connection.setDoInput(true);
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+            }
+            if (body != null) {
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+            int code = connection.getResponseCode();
+            //error responses have their body on the error stream, if any
+            InputStream stream = code >= 400
+                    ? connection.getErrorStream() : connection.getInputStream();
+            if (stream == null) {
+                return new Response(code, new byte[0]);
+            }
+            try (InputStream in = stream) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+                return new Response(code, out.toByteArray());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
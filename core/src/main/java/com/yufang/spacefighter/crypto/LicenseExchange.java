@@ -0,0 +1,138 @@
+package com.yufang.spacefighter.crypto;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Posts a request over a {@link LicenseTransport} with a time limit on every attempt and a
+ * few attempts, until the server answers 200.
+ *
+ * <p>An attempt runs on a shared pool so a server that hangs is given up on at the time
+ * limit, whatever the transport's own timeouts; it is interrupted then.</p>
+ */
+public class LicenseExchange {
+
+    public static final int DEFAULT_TIMEOUT_MILLIS = 6500;
+    public static final int DEFAULT_ATTEMPTS = 3;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final byte[] GLS = "GLS/".getBytes(ASCII);
+    private static final byte[] GLS_1 = "GLS/1.".getBytes(ASCII);
+    private static final byte[] HEADER_END = "\r\n\r\n".getBytes(ASCII);
+
+    //runs the attempts of every exchange, threads go away when idle
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "LicenseExchange");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final LicenseTransport transport;
+    private final long timeoutMillis;
+    private final int attempts;
+
+    public LicenseExchange(LicenseTransport transport) {
+        this(transport, DEFAULT_TIMEOUT_MILLIS, DEFAULT_ATTEMPTS);
+    }
+
+    public LicenseExchange(LicenseTransport transport, long timeoutMillis, int attempts) {
+        if (timeoutMillis <= 0 || attempts < 1) {
+            throw new IllegalArgumentException("timeout " + timeoutMillis + ", attempts "
+                    + attempts);
+        }
+        this.transport = transport;
+        this.timeoutMillis = timeoutMillis;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Posts until the server answers 200 or the attempts run out.
+     *
+     * @return the body of the 200 response
+     * @throws IOException the failure of the last attempt
+     */
+    public byte[] post(final String url, final byte[] body, final Map<String, String> headers)
+            throws IOException {
+        IOException failure = null;
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            Future<LicenseTransport.Response> future = POOL.submit(
+                    new Callable<LicenseTransport.Response>() {
+                        @Override
+                        public LicenseTransport.Response call() throws IOException {
+                            return transport.post(url, body, headers);
+                        }
+                    });
+            try {
+                LicenseTransport.Response response =
+                        future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                if (response.code == 200) {
+                    return response.body;
+                }
+                failure = new IOException("Server returned HTTP error code " + response.code);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                failure = new IOException("No response within " + timeoutMillis + "ms");
+            } catch (ExecutionException e) {
+                failure = e.getCause() instanceof IOException
+                        ? (IOException) e.getCause() : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted posting to " + url);
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Returns the DRM message of a license response, which may come wrapped in a "GLS/1.x"
+     * header.
+     *
+     * @return null if the response is not one
+     */
+    public static byte[] parseResponseBody(byte[] responseBody) {
+        if (!matches(responseBody, 0, GLS)) {
+            return responseBody;
+        }
+        if (!matches(responseBody, 0, GLS_1)) {
+            //invalid server version, expected 1.x
+            return null;
+        }
+        //the drm message follows the blank line, searched as bytes since it is binary
+        for (int i = 0; i + HEADER_END.length <= responseBody.length; i++) {
+            if (matches(responseBody, i, HEADER_END)) {
+                return Arrays.copyOfRange(responseBody, i + HEADER_END.length,
+                        responseBody.length);
+            }
+        }
+        return null;
+    }
+
+    //true if the bytes hold the pattern at the position
+    private static boolean matches(byte[] bytes, int at, byte[] pattern) {
+        if (at + pattern.length > bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length; i++) {
+            if (bytes[at + i] != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
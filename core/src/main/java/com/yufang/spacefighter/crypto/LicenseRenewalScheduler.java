@@ -0,0 +1,253 @@
+package com.yufang.spacefighter.crypto;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a license from lapsing by renewing it on a background executor ahead of its expiry.
+ *
+ * <p>After each renewal the next one is scheduled {@code margin} before the new expiry, or
+ * after the heartbeat interval if that comes first, so the license server hears from the
+ * device regularly even for long licenses. A failed renewal is retried with a doubling
+ * delay for as long as it takes. Renewals asked for while one is running share it, however
+ * many threads ask. Nothing here blocks the caller; only {@link #renew()}'s future does, for
+ * a caller that has nothing to play without keys, like loading before the first session.</p>
+ *
+ * <p>State changes are reported to the {@link Listener} on the executor, in the order they
+ * happen and without the scheduler's lock held, whichever thread caused them.</p>
+ */
+public class LicenseRenewalScheduler {
+
+    /**
+     * Fetches a new license. Runs on the executor.
+     */
+    public interface Renewer {
+        /**
+         * @return when the new license expires, in {@link System#currentTimeMillis()} time,
+         * or {@link Long#MAX_VALUE} if it does not say
+         */
+        long renew() throws Exception;
+    }
+
+    public interface Listener {
+        /**
+         * @param expiresAt when the license in use expires, 0 while there is none
+         */
+        void onLicenseStateChanged(int state, long expiresAt);
+    }
+
+    //no license fetched yet
+    public static final int STATE_NONE = 0;
+    public static final int STATE_RENEWING = 1;
+    public static final int STATE_VALID = 2;
+    //the last renewal failed, the license in use, if any, is still valid; retrying
+    public static final int STATE_RETRYING = 3;
+    public static final int STATE_EXPIRED = 4;
+
+    //longest wait between retries
+    private static final long MAX_RETRY_MILLIS = 5 * 60 * 1000;
+
+    private final Renewer renewer;
+    private final ScheduledExecutorService executor;
+    private final long marginMillis;
+    private final long heartbeatMillis;
+    private final long retryMillis;
+
+    //guarded by this
+    private Listener listener;
+    private int state = STATE_NONE;
+    private long expiresAt;
+    private Future<Long> running;
+    private ScheduledFuture<?> next;
+    private long retryDelay;
+    private boolean shutdown;
+    //state changes not told to the listener yet, as {state, expiresAt}
+    private final ArrayDeque<long[]> notifications = new ArrayDeque<>();
+    private boolean notifying;
+
+    //tells the listener the state changes in order, one at a time
+    private final Runnable notifier = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                long[] change;
+                Listener l;
+                synchronized (LicenseRenewalScheduler.this) {
+                    change = notifications.poll();
+                    if (change == null) {
+                        notifying = false;
+                        return;
+                    }
+                    l = listener;
+                }
+                if (l != null) {
+                    l.onLicenseStateChanged((int) change[0], change[1]);
+                }
+            }
+        }
+    };
+
+    /**
+     * @param marginMillis    how long before expiry to renew
+     * @param heartbeatMillis longest time between renewals
+     * @param retryMillis     wait before the first retry of a failed renewal
+     */
+    public LicenseRenewalScheduler(Renewer renewer, ScheduledExecutorService executor,
+            long marginMillis, long heartbeatMillis, long retryMillis) {
+        if (marginMillis < 0 || heartbeatMillis <= 0 || retryMillis <= 0) {
+            throw new IllegalArgumentException("Bad renewal timing");
+        }
+        this.renewer = renewer;
+        this.executor = executor;
+        this.marginMillis = marginMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.retryMillis = retryMillis;
+        retryDelay = retryMillis;
+    }
+
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized int getState() {
+        return state;
+    }
+
+    /**
+     * Returns when the license in use expires, 0 while there is none.
+     */
+    public synchronized long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Returns true while there is a license that has not expired.
+     */
+    public synchronized boolean isValid() {
+        return expiresAt > now();
+    }
+
+    /**
+     * Renews now, or joins the renewal already running.
+     *
+     * @return completes with the new expiry, or the failure, of the renewal
+     */
+    public synchronized Future<Long> renew() {
+        if (running != null) {
+            return running;
+        }
+        if (shutdown) {
+            throw new IllegalStateException("scheduler was shut down");
+        }
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+        setState(STATE_RENEWING, expiresAt);
+        running = executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return runRenewal();
+            }
+        });
+        return running;
+    }
+
+    /**
+     * Reports that the license expired before it was renewed, as the DRM key expired event
+     * tells. Renews right away unless shut down.
+     */
+    public synchronized void keyExpired() {
+        expiresAt = Math.min(expiresAt, now());
+        if (running == null) {
+            setState(STATE_EXPIRED, expiresAt);
+        }
+        if (!shutdown) {
+            renew();
+        }
+    }
+
+    /**
+     * Stops scheduling renewals. A renewal already running finishes.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+    }
+
+    private long runRenewal() throws Exception {
+        long newExpiry;
+        try {
+            newExpiry = renewer.renew();
+        } catch (Exception e) {
+            synchronized (this) {
+                running = null;
+                int failed = expiresAt > now() ? STATE_RETRYING : STATE_EXPIRED;
+                setState(failed, expiresAt);
+                scheduleNext(retryDelay);
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_MILLIS);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            running = null;
+            retryDelay = retryMillis;
+            expiresAt = newExpiry;
+            setState(STATE_VALID, expiresAt);
+            long untilRenewal = newExpiry == Long.MAX_VALUE
+                    ? heartbeatMillis
+                    : Math.min(heartbeatMillis, newExpiry - marginMillis - now());
+            scheduleNext(Math.max(0, untilRenewal));
+        }
+        return newExpiry;
+    }
+
+    //guarded by this
+    private void scheduleNext(long delayMillis) {
+        if (shutdown) {
+            return;
+        }
+        next = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (LicenseRenewalScheduler.this) {
+                    next = null;
+                    if (shutdown) {
+                        return;
+                    }
+                }
+                renew();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //guarded by this
+    private void setState(int newState, long newExpiresAt) {
+        state = newState;
+        if (listener == null) {
+            return;
+        }
+        notifications.add(new long[]{newState, newExpiresAt});
+        if (!notifying) {
+            try {
+                executor.execute(notifier);
+                notifying = true;
+            } catch (RejectedExecutionException e) {
+                //the executor is gone, nobody is listening any more
+                notifications.clear();
+            }
+        }
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+}
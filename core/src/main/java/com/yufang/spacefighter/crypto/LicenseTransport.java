@@ -0,0 +1,31 @@
+package com.yufang.spacefighter.crypto;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Carries license and provisioning requests to their server. {@link HttpLicenseTransport}
+ * talks to the real one, {@link MockLicenseServer} answers in process.
+ */
+public interface LicenseTransport {
+
+    final class Response {
+
+        public final int code;
+        public final byte[] body;
+
+        public Response(int code, byte[] body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Posts a request and waits for the whole response. May be interrupted.
+     *
+     * @param body    the request body, or null
+     * @param headers request properties, or null
+     * @throws IOException if no response came back
+     */
+    Response post(String url, byte[] body, Map<String, String> headers) throws IOException;
+}
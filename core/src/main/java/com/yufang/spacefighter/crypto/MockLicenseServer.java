@@ -0,0 +1,130 @@
+package com.yufang.spacefighter.crypto;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A license server in process, for running the DRM startup path without the network.
+ *
+ * <p>It replays responses recorded from the real servers, each url prefix cycling through
+ * its own in turn, and answers 404 to anything else. Every request waits a latency drawn
+ * between a minimum and a maximum, then may fail to connect or get a server error at the
+ * rates set, drawn from a seeded random. Thread safe; requests wait in parallel.</p>
+ */
+public class MockLicenseServer implements LicenseTransport {
+
+    //recorded responses by url prefix, in the order added
+    private final Map<String, List<Response>> routes = new LinkedHashMap<>();
+    private final Map<String, Integer> nextResponse = new LinkedHashMap<>();
+    private final Random random;
+
+    private long minLatencyMillis;
+    private long maxLatencyMillis;
+    private double failureRate;
+    private double errorRate;
+
+    private int requests;
+    private int failures;
+    private int errors;
+
+    public MockLicenseServer(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Adds a recorded response for the urls starting with a prefix. A prefix with several
+     * replays them in turn.
+     */
+    public synchronized MockLicenseServer respond(String urlPrefix, int code, byte[] body) {
+        List<Response> responses = routes.get(urlPrefix);
+        if (responses == null) {
+            responses = new ArrayList<>();
+            routes.put(urlPrefix, responses);
+            nextResponse.put(urlPrefix, 0);
+        }
+        responses.add(new Response(code, body));
+        return this;
+    }
+
+    /**
+     * Sets how long each request waits before it is answered, drawn evenly from the range.
+     */
+    public synchronized MockLicenseServer setLatency(long minMillis, long maxMillis) {
+        if (minMillis < 0 || maxMillis < minMillis) {
+            throw new IllegalArgumentException("Latency " + minMillis + ".." + maxMillis);
+        }
+        minLatencyMillis = minMillis;
+        maxLatencyMillis = maxMillis;
+        return this;
+    }
+
+    /**
+     * @param failureRate share of requests failing with an {@link IOException}, as if the
+     *                    connection dropped
+     * @param errorRate   share of requests answered with a 500
+     */
+    public synchronized MockLicenseServer setFailureRates(double failureRate, double errorRate) {
+        if (failureRate < 0 || errorRate < 0 || failureRate + errorRate > 1) {
+            throw new IllegalArgumentException("Rates " + failureRate + ", " + errorRate);
+        }
+        this.failureRate = failureRate;
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public synchronized int getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * Returns the number of requests failed on purpose, dropped ones and server errors.
+     */
+    public synchronized int getFailureCount() {
+        return failures + errors;
+    }
+
+    @Override
+    public Response post(String url, byte[] body, Map<String, String> headers)
+            throws IOException {
+        long latency;
+        double draw;
+        synchronized (this) {
+            requests++;
+            latency = minLatencyMillis
+                    + (long) (random.nextDouble() * (maxLatencyMillis - minLatencyMillis));
+            draw = random.nextDouble();
+        }
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Request to " + url + " interrupted");
+            }
+        }
+        synchronized (this) {
+            if (draw < failureRate) {
+                failures++;
+                throw new IOException("Connection to " + url + " reset");
+            }
+            if (draw < failureRate + errorRate) {
+                errors++;
+                return new Response(500, new byte[0]);
+            }
+            for (Map.Entry<String, List<Response>> route : routes.entrySet()) {
+                if (url.startsWith(route.getKey())) {
+                    List<Response> responses = route.getValue();
+                    int next = nextResponse.get(route.getKey());
+                    nextResponse.put(route.getKey(), (next + 1) % responses.size());
+                    return responses.get(next);
+                }
+            }
+        }
+        return new Response(404, new byte[0]);
+    }
+}
@@ -0,0 +1,94 @@
+package com.yufang.spacefighter.ecs;
+
+/**
+ * Checks the player against everything it can hit.
+ *
+ * <p>Ramming a hostile destroys it and leaves an explosion; ramming a friend does the same
+ * but is reported separately because it ends the game. A hostile that enters the screen is
+ * armed, and if it then gets past the player's center without being rammed it counts as a
+ * miss, once.</p>
+ */
+public class CollisionSystem {
+
+    //event bits returned by update()
+    public static final int HIT_HOSTILE = 1;
+    public static final int HIT_FRIENDLY = 1 << 1;
+    public static final int MISSED_HOSTILE = 1 << 2;
+
+    //where a rammed hostile is parked until it respawns
+    static final int RAMMED_X = -200;
+
+    private final int screenX;
+    private final EntityType explosion;
+    private int misses;
+    private int kills;
+
+    /**
+     * @param explosion type spawned where something was rammed
+     */
+    public CollisionSystem(int screenX, EntityType explosion) {
+        this.screenX = screenX;
+        this.explosion = explosion;
+    }
+
+    /**
+     * Arms the hostiles that are just entering the screen. Runs before they move.
+     */
+    public void arm(World w, EntityType[] types) {
+        for (int e = 0, n = w.count; e < n; e++) {
+            if (w.x[e] == screenX && types[w.type[e]].is(EntityType.BEHAVIOR_HOSTILE)) {
+                w.setFlag(e, World.FLAG_ARMED, true);
+            }
+        }
+    }
+
+    /**
+     * @return a combination of the HIT_ and MISSED_ bits
+     */
+    public int update(World w, EntityType[] types, int player) {
+        int events = 0;
+        misses = 0;
+        kills = 0;
+        int playerCenter2 = 2 * w.x[player] + w.width[player];
+        for (int e = 0, n = w.count; e < n; e++) {
+            int behavior = types[w.type[e]].behavior;
+            if ((behavior & (EntityType.BEHAVIOR_HOSTILE | EntityType.BEHAVIOR_FRIENDLY)) == 0
+                    || e == player) {
+                continue;
+            }
+            if (w.overlaps(player, e)) {
+                //explosions are centered on what was hit
+                w.create(explosion, w.x[e] + w.width[e] / 2, w.y[e] + w.height[e] / 2, 0);
+                if ((behavior & EntityType.BEHAVIOR_HOSTILE) != 0) {
+                    w.teleport(e, RAMMED_X, w.y[e]);
+                    kills++;
+                    events |= HIT_HOSTILE;
+                } else {
+                    events |= HIT_FRIENDLY;
+                }
+            } else if ((behavior & EntityType.BEHAVIOR_HOSTILE) != 0
+                    && w.hasFlag(e, World.FLAG_ARMED)
+                    && playerCenter2 >= 2 * w.x[e] + w.width[e]) {
+                //the hostile has just passed across the player
+                w.setFlag(e, World.FLAG_ARMED, false);
+                misses++;
+                events |= MISSED_HOSTILE;
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Returns how many hostiles got past the player in the last update.
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns how many hostiles were rammed in the last update.
+     */
+    public int getKills() {
+        return kills;
+    }
+}
@@ -0,0 +1,46 @@
+package com.yufang.spacefighter.ecs;
+
+/**
+ * Describes a kind of entity: what it looks like, how big its collider is, how it moves and
+ * spawns, and what touching it does. Adding a new kind of ship is a new instance of this
+ * class, not a new class.
+ */
+public class EntityType {
+
+    //scrolls left with the player speed plus its own, and respawns on the right edge
+    public static final int BEHAVIOR_SCROLL = 1;
+    //destroyed when rammed, counts as a miss when it gets past the player
+    public static final int BEHAVIOR_HOSTILE = 1 << 1;
+    //ends the game when rammed
+    public static final int BEHAVIOR_FRIENDLY = 1 << 2;
+    //background decoration; respawns at a new height before picking a new speed
+    public static final int BEHAVIOR_BACKGROUND = 1 << 3;
+    //moved by the player's input
+    public static final int BEHAVIOR_PLAYER = 1 << 4;
+
+    //index in the simulation's type table, assigned when registered
+    public int id;
+
+    public int behavior;
+    public int sprite = SpriteId.NONE;
+
+    //collider size, 0 for none
+    public int width;
+    public int height;
+
+    //speed is base + nextInt(range), on first spawn and on every respawn
+    public int spawnSpeedBase;
+    public int spawnSpeedRange = 1;
+    public int respawnSpeedBase;
+    public int respawnSpeedRange = 1;
+
+    //spawn at a random x instead of the right edge
+    public boolean spawnAnywhere;
+
+    //ticks until the entity is removed, -1 to live forever
+    public int lifetime = -1;
+
+    public boolean is(int behavior) {
+        return (this.behavior & behavior) != 0;
+    }
+}
@@ -0,0 +1,17 @@
+package com.yufang.spacefighter.ecs;
+
+/**
+ * Counts down entity lifetimes and removes the entities that expired.
+ */
+public class LifetimeSystem {
+
+    public void update(World w) {
+        int[] lifetime = w.lifetime;
+        // backwards, so the entity moved into a freed slot has already been visited
+        for (int e = w.count - 1; e >= 0; e--) {
+            if (lifetime[e] > 0 && --lifetime[e] == 0) {
+                w.destroy(e);
+            }
+        }
+    }
+}
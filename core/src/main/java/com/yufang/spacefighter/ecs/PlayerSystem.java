@@ -0,0 +1,60 @@
+package com.yufang.spacefighter.ecs;
+
+import com.yufang.spacefighter.sim.SimConfig;
+
+/**
+ * Moves player entities. Boosting pushes the ship up against gravity, releasing lets it
+ * sink; it never leaves the screen vertically.
+ */
+public class PlayerSystem {
+
+    private final int gravity;
+    private final int minSpeed;
+    private final int maxSpeed;
+    private final int boostAcceleration;
+    private final int deceleration;
+    private final int minY;
+    private final int maxY;
+
+    public PlayerSystem(SimConfig config) {
+        gravity = config.gravity;
+        minSpeed = config.playerMinSpeed;
+        maxSpeed = config.playerMaxSpeed;
+        boostAcceleration = config.boostAcceleration;
+        deceleration = config.deceleration;
+        minY = 0;
+        maxY = config.screenY - config.playerHeight;
+    }
+
+    public void update(World w, int e, boolean boosting) {
+        w.setFlag(e, World.FLAG_BOOSTING, boosting);
+        w.prevY[e] = w.y[e];
+
+        int speed = w.speed[e];
+        if (boosting) {
+            speed += boostAcceleration;
+        } else {
+            speed -= deceleration;
+        }
+
+        if (speed > maxSpeed) {
+            speed = maxSpeed;
+        }
+
+        if (speed < minSpeed) {
+            speed = minSpeed;
+        }
+
+        int y = w.y[e] - (speed + gravity);
+
+        if (y < minY) {
+            y = minY;
+        }
+        if (y > maxY) {
+            y = maxY;
+        }
+
+        w.speed[e] = speed;
+        w.y[e] = y;
+    }
+}
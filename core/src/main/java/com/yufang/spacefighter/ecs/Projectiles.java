@@ -0,0 +1,61 @@
+package com.yufang.spacefighter.ecs;
+
+/**
+ * Pool of bullets in flight, one primitive array per field. Bullets are not {@link World}
+ * entities: there can be thousands of them and they need nothing but a position and a
+ * velocity, so they get their own tightly packed storage that is allocated once.
+ */
+public class Projectiles {
+
+    public final int capacity;
+    public int count;
+
+    public final int[] x;
+    public final int[] y;
+    public final int[] prevX;
+    public final int[] prevY;
+    public final int[] vx;
+    public final int[] vy;
+
+    public Projectiles(int capacity) {
+        this.capacity = capacity;
+        x = new int[capacity];
+        y = new int[capacity];
+        prevX = new int[capacity];
+        prevY = new int[capacity];
+        vx = new int[capacity];
+        vy = new int[capacity];
+    }
+
+    /**
+     * Adds a bullet at (x, y).
+     *
+     * @return false if the pool is full and the bullet was dropped
+     */
+    public boolean add(int x, int y, int vx, int vy) {
+        if (count == capacity) {
+            return false;
+        }
+        int i = count++;
+        this.x[i] = x;
+        this.y[i] = y;
+        prevX[i] = x;
+        prevY[i] = y;
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+        return true;
+    }
+
+    /**
+     * Removes a bullet by moving the last one into its slot.
+     */
+    public void remove(int i) {
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        prevX[i] = prevX[last];
+        prevY[i] = prevY[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+    }
+}
@@ -0,0 +1,54 @@
+package com.yufang.spacefighter.ecs;
+
+import com.yufang.spacefighter.sim.SimRandom;
+
+/**
+ * Scrolls every {@link EntityType#BEHAVIOR_SCROLL} entity left and respawns the ones that
+ * left the screen on the right edge, at a new height and speed.
+ */
+public class ScrollSystem {
+
+    private final int screenX;
+    private final int screenY;
+
+    public ScrollSystem(int screenX, int screenY) {
+        this.screenX = screenX;
+        this.screenY = screenY;
+    }
+
+    /**
+     * Creates an entity of a scrolling type at its spawn position.
+     */
+    public int spawn(World w, EntityType t, SimRandom random) {
+        int speed = random.nextInt(t.spawnSpeedRange) + t.spawnSpeedBase;
+        int x = t.spawnAnywhere ? random.nextInt(screenX) : screenX;
+        int y = random.nextInt(screenY) - t.height;
+        return w.create(t, x, y, speed);
+    }
+
+    public void update(World w, EntityType[] types, int playerSpeed, SimRandom random) {
+        int[] x = w.x;
+        int[] y = w.y;
+        int[] speed = w.speed;
+        for (int e = 0, n = w.count; e < n; e++) {
+            EntityType t = types[w.type[e]];
+            if ((t.behavior & EntityType.BEHAVIOR_SCROLL) == 0) {
+                continue;
+            }
+            w.prevX[e] = x[e];
+            w.prevY[e] = y[e];
+            x[e] -= playerSpeed + speed[e];
+            if (x[e] < -t.width) {
+                if ((t.behavior & EntityType.BEHAVIOR_BACKGROUND) != 0) {
+                    y[e] = random.nextInt(screenY) - t.height;
+                    speed[e] = random.nextInt(t.respawnSpeedRange) + t.respawnSpeedBase;
+                } else {
+                    speed[e] = random.nextInt(t.respawnSpeedRange) + t.respawnSpeedBase;
+                    y[e] = random.nextInt(screenY) - t.height;
+                }
+                //jumped to the other side, nothing to interpolate
+                w.teleport(e, screenX, y[e]);
+            }
+        }
+    }
+}
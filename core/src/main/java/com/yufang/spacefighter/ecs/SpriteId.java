@@ -0,0 +1,22 @@
+package com.yufang.spacefighter.ecs;
+
+/**
+ * Sprite identifiers stored in the sprite component. The renderer maps them to bitmaps.
+ */
+public final class SpriteId {
+
+    //not drawn at all
+    public static final int NONE = -1;
+    //drawn as a single point, used for the star field
+    public static final int POINT = 0;
+    public static final int PLAYER = 1;
+    public static final int ENEMY = 2;
+    public static final int FRIEND = 3;
+    //an explosion, the renderer turns it into particles
+    public static final int BOOM = 4;
+
+    public static final int COUNT = 5;
+
+    private SpriteId() {
+    }
+}
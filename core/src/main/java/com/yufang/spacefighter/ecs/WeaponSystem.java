@@ -0,0 +1,188 @@
+package com.yufang.spacefighter.ecs;
+
+import com.yufang.spacefighter.sim.SimConfig;
+
+import java.util.Arrays;
+
+/**
+ * Fires the player's weapon and moves its bullets.
+ *
+ * <p>A bullet moves up to a few dozen pixels per tick, more than an enemy is wide once both
+ * speeds add up, so testing the end positions would let it pass straight through. Instead
+ * each bullet's path over the tick is tested against every hostile's box, in the hostile's
+ * frame of reference so the hostile's own movement is accounted for too. Friendly ships are
+ * not hit.</p>
+ */
+public class WeaponSystem {
+
+    private final int screenX;
+    private final int screenY;
+    private final int fireInterval;
+    private final int volley;
+    private final int bulletSpeed;
+    private final int bulletSpread;
+    private final EntityType explosion;
+
+    //hostiles gathered before the bullet pass, reused across ticks
+    private int[] hostiles = new int[8];
+    private int kills;
+
+    /**
+     * @param explosion type spawned where a hostile was shot down
+     */
+    public WeaponSystem(SimConfig config, EntityType explosion) {
+        screenX = config.screenX;
+        screenY = config.screenY;
+        fireInterval = config.fireInterval;
+        volley = config.volley;
+        bulletSpeed = config.bulletSpeed;
+        bulletSpread = config.bulletSpread;
+        this.explosion = explosion;
+    }
+
+    /**
+     * Fires a volley from the player's nose if one is due this tick.
+     */
+    public void fire(Projectiles p, World w, int player, long tick) {
+        if (fireInterval <= 0 || tick % fireInterval != 0) {
+            return;
+        }
+        int x = w.x[player] + w.width[player];
+        int y = w.y[player] + w.height[player] / 2;
+        for (int i = 0; i < volley; i++) {
+            int vy = volley == 1 ? 0 : -bulletSpread + 2 * bulletSpread * i / (volley - 1);
+            if (!p.add(x, y, bulletSpeed, vy)) {
+                //pool is full, the rest of the volley is dropped
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves the bullets, removes the ones that left the screen and shoots down the hostiles
+     * they hit.
+     *
+     * @return the number of hostiles shot down
+     */
+    public int update(Projectiles p, World w, EntityType[] types) {
+        kills = 0;
+        int hostileCount = 0;
+        for (int e = 0, n = w.count; e < n; e++) {
+            if (types[w.type[e]].is(EntityType.BEHAVIOR_HOSTILE)) {
+                if (hostileCount == hostiles.length) {
+                    hostiles = Arrays.copyOf(hostiles, hostileCount * 2);
+                }
+                hostiles[hostileCount++] = e;
+            }
+        }
+
+        int[] x = p.x;
+        int[] y = p.y;
+        for (int i = 0; i < p.count; ) {
+            int x0 = x[i];
+            int y0 = y[i];
+            int x1 = x0 + p.vx[i];
+            int y1 = y0 + p.vy[i];
+            p.prevX[i] = x0;
+            p.prevY[i] = y0;
+            x[i] = x1;
+            y[i] = y1;
+
+            boolean spent = x1 > screenX || y1 < 0 || y1 > screenY;
+            for (int h = 0; h < hostileCount && !spent; h++) {
+                int e = hostiles[h];
+                if (segmentHitsBox(x0 - w.prevX[e], y0 - w.prevY[e], x1 - w.x[e], y1 - w.y[e],
+                        w.width[e], w.height[e])) {
+                    shootDown(w, e);
+                    spent = true;
+                }
+            }
+            if (spent) {
+                p.remove(i);
+            } else {
+                i++;
+            }
+        }
+        return kills;
+    }
+
+    private void shootDown(World w, int e) {
+        //explosions are centered on what was hit
+        w.create(explosion, w.x[e] + w.width[e] / 2, w.y[e] + w.height[e] / 2, 0);
+        //parked like a rammed hostile, and it cannot count as a miss on its way out
+        w.teleport(e, CollisionSystem.RAMMED_X, w.y[e]);
+        w.setFlag(e, World.FLAG_ARMED, false);
+        kills++;
+    }
+
+    /**
+     * Returns how many hostiles were shot down in the last update.
+     */
+    public int getKills() {
+        return kills;
+    }
+
+    /**
+     * Returns true if the segment from (x0, y0) to (x1, y1) touches the box [0, w] x [0, h].
+     * Liang-Barsky clipping, with the entry and exit parameters kept as exact fractions so
+     * the result is the same on every device.
+     */
+    static boolean segmentHitsBox(int x0, int y0, int x1, int y1, int w, int h) {
+        if (Math.max(x0, x1) < 0 || Math.min(x0, x1) > w
+                || Math.max(y0, y1) < 0 || Math.min(y0, y1) > h) {
+            return false;
+        }
+        long dx = x1 - x0;
+        long dy = y1 - y0;
+        //the segment is inside for t in [enter, exit], starting as [0, 1]
+        long enterNum = 0;
+        long enterDen = 1;
+        long exitNum = 1;
+        long exitDen = 1;
+        for (int edge = 0; edge < 4; edge++) {
+            long p;
+            long q;
+            switch (edge) {
+                case 0:
+                    p = -dx;
+                    q = x0;
+                    break;
+                case 1:
+                    p = dx;
+                    q = w - x0;
+                    break;
+                case 2:
+                    p = -dy;
+                    q = y0;
+                    break;
+                default:
+                    p = dy;
+                    q = h - y0;
+                    break;
+            }
+            if (p == 0) {
+                //parallel to this edge, inside or never
+                if (q < 0) {
+                    return false;
+                }
+                continue;
+            }
+            //t = q / p, with the denominator made positive
+            long num = p < 0 ? -q : q;
+            long den = Math.abs(p);
+            if (p < 0) {
+                if (num * enterDen > enterNum * den) {
+                    enterNum = num;
+                    enterDen = den;
+                }
+            } else if (num * exitDen < exitNum * den) {
+                exitNum = num;
+                exitDen = den;
+            }
+            if (enterNum * exitDen > exitNum * enterDen) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
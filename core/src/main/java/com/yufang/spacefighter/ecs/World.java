@@ -0,0 +1,140 @@
+package com.yufang.spacefighter.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Entity storage as dense component arrays.
+ *
+ * <p>An entity is an index below {@link #count}. Every component is a primitive array
+ * indexed by entity, so a system touching one component streams through one or two arrays
+ * instead of chasing an object per entity. The arrays are public for the systems to iterate
+ * directly; outside the systems treat them as read only.</p>
+ *
+ * <p>{@link #destroy(int)} moves the last entity into the freed slot. Entities created before
+ * any destroyable one therefore keep their index for their whole life, which is how the
+ * simulation keeps stable handles to the player and the ships.</p>
+ */
+public class World {
+
+    //entity state bits
+    public static final int FLAG_BOOSTING = 1;
+    //a hostile that has entered the screen and not yet been counted as a miss
+    public static final int FLAG_ARMED = 1 << 1;
+
+    public int count;
+
+    public int[] type;
+    public int[] flags;
+
+    //Position, and where it was before the last tick for drawing in between
+    public int[] x;
+    public int[] y;
+    public int[] prevX;
+    public int[] prevY;
+
+    //Velocity: leftwards for scrolling entities, upwards for the player
+    public int[] speed;
+
+    //Sprite
+    public int[] sprite;
+
+    //Collider, 0x0 for none
+    public int[] width;
+    public int[] height;
+
+    //Lifetime in ticks, -1 forever
+    public int[] lifetime;
+
+    public World(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    private void allocate(int capacity) {
+        type = grow(type, capacity);
+        flags = grow(flags, capacity);
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        prevX = grow(prevX, capacity);
+        prevY = grow(prevY, capacity);
+        speed = grow(speed, capacity);
+        sprite = grow(sprite, capacity);
+        width = grow(width, capacity);
+        height = grow(height, capacity);
+        lifetime = grow(lifetime, capacity);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    /**
+     * Adds an entity of the given type at (x, y) with the given speed.
+     *
+     * @return the new entity's index
+     */
+    public int create(EntityType t, int x, int y, int speed) {
+        if (count == type.length) {
+            allocate(count * 2);
+        }
+        int e = count++;
+        type[e] = t.id;
+        flags[e] = 0;
+        this.x[e] = x;
+        this.y[e] = y;
+        prevX[e] = x;
+        prevY[e] = y;
+        this.speed[e] = speed;
+        sprite[e] = t.sprite;
+        width[e] = t.width;
+        height[e] = t.height;
+        lifetime[e] = t.lifetime;
+        return e;
+    }
+
+    /**
+     * Removes an entity by moving the last one into its slot.
+     */
+    public void destroy(int e) {
+        int last = --count;
+        if (e == last) {
+            return;
+        }
+        type[e] = type[last];
+        flags[e] = flags[last];
+        x[e] = x[last];
+        y[e] = y[last];
+        prevX[e] = prevX[last];
+        prevY[e] = prevY[last];
+        speed[e] = speed[last];
+        sprite[e] = sprite[last];
+        width[e] = width[last];
+        height[e] = height[last];
+        lifetime[e] = lifetime[last];
+    }
+
+    /**
+     * Moves an entity without interpolating the jump.
+     */
+    public void teleport(int e, int x, int y) {
+        this.x[e] = x;
+        this.y[e] = y;
+        prevX[e] = x;
+        prevY[e] = y;
+    }
+
+    /**
+     * Returns true if the colliders of the two entities overlap.
+     */
+    public boolean overlaps(int a, int b) {
+        return x[a] < x[b] + width[b] && x[b] < x[a] + width[a]
+                && y[a] < y[b] + height[b] && y[b] < y[a] + height[a];
+    }
+
+    public boolean hasFlag(int e, int flag) {
+        return (flags[e] & flag) != 0;
+    }
+
+    public void setFlag(int e, int flag, boolean on) {
+        flags[e] = on ? flags[e] | flag : flags[e] & ~flag;
+    }
+}
@@ -0,0 +1,29 @@
+package com.yufang.spacefighter.fx;
+
+/**
+ * How a burst of particles looks and behaves. Emitters are registered with a
+ * {@link ParticleSystem}, which assigns their ids.
+ */
+public class ParticleEmitter {
+
+    public int id;
+
+    //particles per burst, at the full particle budget
+    public int count = 32;
+
+    //initial speed in pixels per tick, in a random direction
+    public float minSpeed = 1;
+    public float maxSpeed = 4;
+
+    //lifetime in ticks
+    public int minLife = 10;
+    public int maxLife = 20;
+
+    //velocity kept per tick, and pull downwards per tick
+    public float drag = 1;
+    public float gravity = 0;
+
+    //ARGB, and the point size in pixels
+    public int color = 0xFFFFFFFF;
+    public float size = 3;
+}
@@ -0,0 +1,124 @@
+package com.yufang.spacefighter.fx;
+
+import com.yufang.spacefighter.sim.SimRandom;
+
+/**
+ * Pool of short lived particles for explosions, one primitive array per field and
+ * allocated once. Particles are eye candy and never touch the simulation: they use their own
+ * random generator and are advanced once per tick by the view.
+ *
+ * <p>The budget caps how many particles may be alive. Lowering it also thins out every new
+ * burst in proportion, so a slow device gets smaller explosions rather than missing ones.</p>
+ */
+public class ParticleSystem {
+
+    public final int capacity;
+    public int count;
+
+    public final float[] x;
+    public final float[] y;
+    public final float[] prevX;
+    public final float[] prevY;
+    public final float[] vx;
+    public final float[] vy;
+    public final int[] age;
+    public final int[] life;
+    public final int[] emitter;
+
+    private final ParticleEmitter[] emitters;
+    private final SimRandom random = new SimRandom(System.nanoTime());
+    private int budget;
+
+    public ParticleSystem(int capacity, ParticleEmitter... emitters) {
+        this.capacity = capacity;
+        this.emitters = emitters;
+        for (int i = 0; i < emitters.length; i++) {
+            emitters[i].id = i;
+        }
+        budget = capacity;
+        x = new float[capacity];
+        y = new float[capacity];
+        prevX = new float[capacity];
+        prevY = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        age = new int[capacity];
+        life = new int[capacity];
+        emitter = new int[capacity];
+    }
+
+    public ParticleEmitter[] getEmitters() {
+        return emitters;
+    }
+
+    /**
+     * Caps the live particles at {@code budget}, at most the capacity. Particles already
+     * alive are left to expire.
+     */
+    public void setBudget(int budget) {
+        this.budget = Math.max(0, Math.min(budget, capacity));
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    /**
+     * Starts a burst of the emitter's particles at (x, y).
+     */
+    public void emit(ParticleEmitter e, float x, float y) {
+        int n = (int) ((long) e.count * budget / capacity);
+        for (int k = 0; k < n && count < budget; k++) {
+            int i = count++;
+            double angle = random.nextFloat() * 2 * Math.PI;
+            float speed = e.minSpeed + random.nextFloat() * (e.maxSpeed - e.minSpeed);
+            this.x[i] = x;
+            this.y[i] = y;
+            prevX[i] = x;
+            prevY[i] = y;
+            vx[i] = (float) Math.cos(angle) * speed;
+            vy[i] = (float) Math.sin(angle) * speed;
+            age[i] = 0;
+            life[i] = e.minLife + random.nextInt(e.maxLife - e.minLife + 1);
+            emitter[i] = e.id;
+        }
+    }
+
+    /**
+     * Advances every particle by one tick and removes the ones that expired.
+     */
+    public void update() {
+        for (int i = 0; i < count; ) {
+            if (++age[i] >= life[i]) {
+                remove(i);
+                continue;
+            }
+            ParticleEmitter e = emitters[emitter[i]];
+            prevX[i] = x[i];
+            prevY[i] = y[i];
+            vx[i] *= e.drag;
+            vy[i] = vy[i] * e.drag + e.gravity;
+            x[i] += vx[i];
+            y[i] += vy[i];
+            i++;
+        }
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    //moves the last particle into slot i
+    private void remove(int i) {
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        prevX[i] = prevX[last];
+        prevY[i] = prevY[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        age[i] = age[last];
+        life[i] = life[last];
+        emitter[i] = emitter[last];
+    }
+}
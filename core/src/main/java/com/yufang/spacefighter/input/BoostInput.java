@@ -0,0 +1,50 @@
+package com.yufang.spacefighter.input;
+
+/**
+ * Turns the timestamped events of an {@link InputQueue} into one boost state per tick.
+ *
+ * <p>Events are applied at the tick whose time span contains them. At most one change is
+ * applied per tick, so a tap shorter than a tick still boosts for one tick instead of
+ * cancelling itself out before the simulation sees it.</p>
+ */
+public class BoostInput {
+
+    private final InputQueue queue;
+    private boolean boosting;
+
+    public BoostInput(InputQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Consumes the events up to the end of a tick and returns the boost state for it.
+     *
+     * @param tickEndNanos the time the tick being simulated ends at, on the same clock as the
+     *                     event timestamps
+     */
+    public boolean advance(long tickEndNanos) {
+        long entry;
+        while ((entry = queue.peek()) != -1 && InputQueue.timeOf(entry) <= tickEndNanos) {
+            queue.remove();
+            boolean next = InputQueue.isBoosting(entry);
+            if (next != boosting) {
+                boosting = next;
+                break;
+            }
+        }
+        return boosting;
+    }
+
+    public boolean isBoosting() {
+        return boosting;
+    }
+
+    /**
+     * Drops the events not consumed yet and lets go of the boost, for a game resumed after
+     * a pause: touches from before it are not replayed. Consumer side, with the loop stopped.
+     */
+    public void reset() {
+        queue.clear();
+        boosting = false;
+    }
+}
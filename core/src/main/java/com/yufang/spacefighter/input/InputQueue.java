@@ -0,0 +1,87 @@
+package com.yufang.spacefighter.input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single producer, single consumer queue of timestamped boost changes.
+ *
+ * <p>The UI thread offers an entry for every touch that changes the boost state, the game
+ * thread drains them tick by tick. Each entry is one long: the event time in nanoseconds
+ * shifted left by one, with the boost state in the low bit. Neither side ever blocks or
+ * allocates; if the game thread falls so far behind that the ring fills up, new events are
+ * dropped rather than overwriting ones not read yet.</p>
+ */
+public class InputQueue {
+
+    private static final long EMPTY = -1;
+
+    private final long[] entries;
+    private final int mask;
+
+    //next slot to read, written only by the consumer
+    private final AtomicLong head = new AtomicLong();
+    //next slot to write, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        entries = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Producer side.
+     *
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer(long timeNanos, boolean boosting) {
+        long t = tail.get();
+        if (t - head.get() == entries.length) {
+            return false;
+        }
+        entries[(int) t & mask] = (timeNanos << 1) | (boosting ? 1 : 0);
+        // publishes the entry, ordered after the array store
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side. Returns the oldest entry without removing it, or -1 if there is none;
+     * decode it with {@link #timeOf(long)} and {@link #isBoosting(long)}.
+     */
+    public long peek() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return EMPTY;
+        }
+        return entries[(int) h & mask];
+    }
+
+    /**
+     * Consumer side. Removes the entry last returned by {@link #peek()}.
+     */
+    public void remove() {
+        long h = head.get();
+        if (h != tail.get()) {
+            head.lazySet(h + 1);
+        }
+    }
+
+    /**
+     * Consumer side. Drops everything queued so far.
+     */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    public static long timeOf(long entry) {
+        return entry >>> 1;
+    }
+
+    public static boolean isBoosting(long entry) {
+        return (entry & 1) != 0;
+    }
+}
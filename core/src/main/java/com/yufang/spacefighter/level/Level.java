@@ -0,0 +1,109 @@
+package com.yufang.spacefighter.level;
+
+import com.yufang.spacefighter.sim.SimConfig;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * One level of a {@link LevelPack}: its rules and its waves. A view over the pack's buffer,
+ * every getter reads the value where it is stored.
+ */
+public class Level {
+
+    //byte offsets inside a level
+    private static final int STAR_COUNT = 0;
+    private static final int MISS_LIMIT = 4;
+    private static final int SCORE_PER_TICK = 8;
+    private static final int SCORE_PER_KILL = 12;
+    private static final int FIRE_INTERVAL = 16;
+    private static final int VOLLEY = 20;
+    private static final int BULLET_SPEED = 24;
+    private static final int BULLET_SPREAD = 28;
+    static final int WAVE_COUNT = 32;
+    static final int FIXED_SIZE = 36;
+    static final int WAVE_SIZE = 4 * SimConfig.WAVE_FIELDS;
+
+    private final ByteBuffer buffer;
+    private final int offset;
+
+    Level(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    public String getName() {
+        int at = offset + FIXED_SIZE + getWaveCount() * WAVE_SIZE;
+        byte[] name = new byte[buffer.getShort(at) & 0xFFFF];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(at + 2 + i);
+        }
+        return new String(name, Charset.forName("UTF-8"));
+    }
+
+    public int getStarCount() {
+        return buffer.getInt(offset + STAR_COUNT);
+    }
+
+    public int getMissLimit() {
+        return buffer.getInt(offset + MISS_LIMIT);
+    }
+
+    public int getScorePerTick() {
+        return buffer.getInt(offset + SCORE_PER_TICK);
+    }
+
+    public int getScorePerKill() {
+        return buffer.getInt(offset + SCORE_PER_KILL);
+    }
+
+    /**
+     * Returns how many ticks apart the player's weapon fires, 0 if the level is unarmed.
+     */
+    public int getFireInterval() {
+        return buffer.getInt(offset + FIRE_INTERVAL);
+    }
+
+    public int getVolley() {
+        return buffer.getInt(offset + VOLLEY);
+    }
+
+    public int getBulletSpeed() {
+        return buffer.getInt(offset + BULLET_SPEED);
+    }
+
+    public int getBulletSpread() {
+        return buffer.getInt(offset + BULLET_SPREAD);
+    }
+
+    public int getWaveCount() {
+        return buffer.getInt(offset + WAVE_COUNT);
+    }
+
+    /**
+     * @param field one of the SimConfig.WAVE_ indexes
+     */
+    public int getWave(int wave, int field) {
+        return buffer.getInt(offset + FIXED_SIZE + wave * WAVE_SIZE + 4 * field);
+    }
+
+    /**
+     * Sets the rules and waves of this level on a configuration and returns it.
+     */
+    public SimConfig applyTo(SimConfig config) {
+        config.starCount = getStarCount();
+        config.missLimit = getMissLimit();
+        config.scorePerTick = getScorePerTick();
+        config.scorePerKill = getScorePerKill();
+        config.fireInterval = getFireInterval();
+        config.volley = getVolley();
+        config.bulletSpeed = getBulletSpeed();
+        config.bulletSpread = getBulletSpread();
+        int[] waves = new int[getWaveCount() * SimConfig.WAVE_FIELDS];
+        for (int i = 0; i < waves.length; i++) {
+            waves[i] = buffer.getInt(offset + FIXED_SIZE + 4 * i);
+        }
+        config.waves = waves.length == 0 ? null : waves;
+        return config;
+    }
+}
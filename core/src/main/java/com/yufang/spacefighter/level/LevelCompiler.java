@@ -0,0 +1,271 @@
+package com.yufang.spacefighter.level;
+
+import com.yufang.spacefighter.sim.SimConfig;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles level sources into the binary format read by {@link LevelPack}. Runs at build
+ * time, so the game never parses text.
+ *
+ * <p>Sources are line based, {@code #} starts a comment. Each {@code level} line starts a new
+ * level, rules and waves below it belong to it. Anything left out keeps the default of
+ * {@link SimConfig}, and a wave keeps whatever the previous wave set:</p>
+ * <pre>
+ *   level Classic
+ *   stars 100
+ *   misses 3
+ *   score 1 0                          per tick, per kill
+ *   weapon 10 5 30 8                   every 10 ticks 5 bullets at 30 px/tick, spread 8
+ *   wave 0 enemies 1 enemy 10 10 friend 10 10
+ *   wave 3600 enemies 2 enemy 12 10    from one minute in
+ * </pre>
+ * <p>A wave's enemy and friend speeds are a base and a random range, like the respawn
+ * speeds in SimConfig. Waves must be in order of their start tick.</p>
+ */
+public class LevelCompiler {
+
+    private final List<byte[]> levels = new ArrayList<>();
+
+    //the level being compiled
+    private String name;
+    private SimConfig rules;
+    private List<int[]> waves;
+
+    /**
+     * Compiles one source file. Can be called several times, the levels are appended.
+     *
+     * @param source used in error messages
+     */
+    public void compile(Reader reader, String source) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens[0].isEmpty()) {
+                continue;
+            }
+            try {
+                parseLine(tokens);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(source + ":" + lineNumber + ": " + e.getMessage());
+            }
+        }
+        finishLevel();
+    }
+
+    private void parseLine(String[] t) {
+        String keyword = t[0];
+        if (keyword.equals("level")) {
+            finishLevel();
+            expect(t, 2);
+            name = t[1];
+            rules = new SimConfig();
+            waves = new ArrayList<>();
+            return;
+        }
+        if (rules == null) {
+            throw new IllegalArgumentException("'" + keyword + "' before the first level");
+        }
+        if (keyword.equals("stars")) {
+            expect(t, 2);
+            rules.starCount = number(t[1], 0);
+        } else if (keyword.equals("misses")) {
+            expect(t, 2);
+            rules.missLimit = number(t[1], 1);
+        } else if (keyword.equals("score")) {
+            expect(t, 3);
+            rules.scorePerTick = number(t[1], 0);
+            rules.scorePerKill = number(t[2], 0);
+        } else if (keyword.equals("weapon")) {
+            expect(t, 5);
+            rules.fireInterval = number(t[1], 1);
+            rules.volley = number(t[2], 1);
+            rules.bulletSpeed = number(t[3], 1);
+            rules.bulletSpread = number(t[4], 0);
+        } else if (keyword.equals("wave")) {
+            parseWave(t);
+        } else {
+            throw new IllegalArgumentException("unknown keyword '" + keyword + "'");
+        }
+    }
+
+    private void parseWave(String[] t) {
+        int[] previous = waves.isEmpty() ? null : waves.get(waves.size() - 1);
+        int[] wave;
+        if (previous == null) {
+            wave = new int[SimConfig.WAVE_FIELDS];
+            wave[SimConfig.WAVE_ENEMY_COUNT] = 1;
+            wave[SimConfig.WAVE_ENEMY_SPEED_BASE] = rules.enemyRespawnSpeedBase;
+            wave[SimConfig.WAVE_ENEMY_SPEED_RANGE] = rules.enemyRespawnSpeedRange;
+            wave[SimConfig.WAVE_FRIEND_SPEED_BASE] = rules.friendRespawnSpeedBase;
+            wave[SimConfig.WAVE_FRIEND_SPEED_RANGE] = rules.friendRespawnSpeedRange;
+        } else {
+            wave = previous.clone();
+        }
+        if (t.length < 2) {
+            throw new IllegalArgumentException("wave needs a start tick");
+        }
+        wave[SimConfig.WAVE_START_TICK] = number(t[1], 0);
+        if (previous != null
+                && wave[SimConfig.WAVE_START_TICK] < previous[SimConfig.WAVE_START_TICK]) {
+            throw new IllegalArgumentException("waves out of order");
+        }
+        for (int i = 2; i < t.length; ) {
+            String key = t[i];
+            if (key.equals("enemies") && i + 1 < t.length) {
+                wave[SimConfig.WAVE_ENEMY_COUNT] = number(t[i + 1], 1);
+                i += 2;
+            } else if (key.equals("enemy") && i + 2 < t.length) {
+                wave[SimConfig.WAVE_ENEMY_SPEED_BASE] = number(t[i + 1], 0);
+                wave[SimConfig.WAVE_ENEMY_SPEED_RANGE] = number(t[i + 2], 1);
+                i += 3;
+            } else if (key.equals("friend") && i + 2 < t.length) {
+                wave[SimConfig.WAVE_FRIEND_SPEED_BASE] = number(t[i + 1], 0);
+                wave[SimConfig.WAVE_FRIEND_SPEED_RANGE] = number(t[i + 2], 1);
+                i += 3;
+            } else {
+                throw new IllegalArgumentException("bad wave setting '" + key + "'");
+            }
+        }
+        waves.add(wave);
+    }
+
+    private static void expect(String[] tokens, int count) {
+        if (tokens.length != count) {
+            throw new IllegalArgumentException("'" + tokens[0] + "' takes " + (count - 1)
+                    + " value" + (count == 2 ? "" : "s"));
+        }
+    }
+
+    private static int number(String token, int min) {
+        int value;
+        try {
+            value = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + token + "' is not a number");
+        }
+        if (value < min) {
+            throw new IllegalArgumentException(token + " is below " + min);
+        }
+        return value;
+    }
+
+    private void finishLevel() {
+        if (rules == null) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(rules.starCount);
+            out.writeInt(rules.missLimit);
+            out.writeInt(rules.scorePerTick);
+            out.writeInt(rules.scorePerKill);
+            out.writeInt(rules.fireInterval);
+            out.writeInt(rules.volley);
+            out.writeInt(rules.bulletSpeed);
+            out.writeInt(rules.bulletSpread);
+            out.writeInt(waves.size());
+            for (int[] wave : waves) {
+                for (int value : wave) {
+                    out.writeInt(value);
+                }
+            }
+            byte[] utf8 = name.getBytes(Charset.forName("UTF-8"));
+            out.writeShort(utf8.length);
+            out.write(utf8);
+            while (out.size() % 4 != 0) {
+                out.writeByte(0);
+            }
+        } catch (IOException e) {
+            // cannot happen on a byte array
+            throw new IllegalStateException(e);
+        }
+        levels.add(bytes.toByteArray());
+        rules = null;
+    }
+
+    /**
+     * Writes the pack of all levels compiled so far.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (levels.size() > 0xFFFF) {
+            throw new IOException("Too many levels");
+        }
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.write(LevelPack.MAGIC);
+        out.writeShort(LevelPack.VERSION);
+        out.writeShort(levels.size());
+        int offset = LevelPack.HEADER_SIZE + 4 * levels.size();
+        for (byte[] level : levels) {
+            out.writeInt(offset);
+            offset += level.length;
+        }
+        for (byte[] level : levels) {
+            out.write(level);
+        }
+        out.flush();
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeTo(bytes);
+        } catch (IOException e) {
+            // cannot happen on a byte array
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * {@code LevelCompiler output.sfl source...}, sources are compiled in the order given.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: LevelCompiler output.sfl source...");
+            System.exit(2);
+        }
+        LevelCompiler compiler = new LevelCompiler();
+        for (String source : Arrays.asList(args).subList(1, args.length)) {
+            Reader reader = new InputStreamReader(new FileInputStream(source), "UTF-8");
+            try {
+                compiler.compile(reader, source);
+            } finally {
+                reader.close();
+            }
+        }
+        File output = new File(args[0]);
+        File dir = output.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        OutputStream out = new FileOutputStream(output);
+        try {
+            compiler.writeTo(out);
+        } finally {
+            out.close();
+        }
+        System.out.println("Compiled " + compiler.levels.size() + " levels into " + output);
+    }
+}
@@ -0,0 +1,114 @@
+package com.yufang.spacefighter.level;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A compiled set of levels, read in place from a buffer that is usually memory mapped.
+ * Nothing is parsed up front: opening a pack checks the header, and every accessor of a
+ * {@link Level} is an absolute read at a fixed offset.
+ *
+ * <p>Binary layout, written by {@link LevelCompiler}, all ints big endian and 4 byte
+ * aligned:</p>
+ * <pre>
+ *   "SFLV"             magic
+ *   u16                format version
+ *   u16                number of levels
+ *   i32 x levels       offset of each level from the start of the pack
+ *   level:
+ *     i32 x 4          star count, miss limit, score per tick, score per kill
+ *     i32 x 4          fire interval, volley, bullet speed, bullet spread
+ *     i32              number of waves
+ *     i32 x 6 x waves  start tick, enemy count, enemy and friend speed base and range
+ *     u16              length of the name, then its UTF-8 bytes, padded to 4
+ * </pre>
+ */
+public class LevelPack {
+
+    static final byte[] MAGIC = {'S', 'F', 'L', 'V'};
+    public static final int VERSION = 2;
+
+    static final int HEADER_SIZE = 8;
+
+    private final ByteBuffer buffer;
+    private final int levelCount;
+
+    private LevelPack(ByteBuffer buffer, int levelCount) {
+        this.buffer = buffer;
+        this.levelCount = levelCount;
+    }
+
+    /**
+     * Wraps a pack held in a buffer. The buffer's position and limit mark the pack and must
+     * not change while the pack is in use.
+     */
+    public static LevelPack wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer b = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        if (b.limit() < HEADER_SIZE) {
+            throw new IOException("Level pack truncated");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (b.get(i) != MAGIC[i]) {
+                throw new IOException("Not a level pack");
+            }
+        }
+        int version = b.getShort(4) & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported level pack version " + version);
+        }
+        int count = b.getShort(6) & 0xFFFF;
+        if (b.limit() < HEADER_SIZE + 4 * count) {
+            throw new IOException("Level pack truncated");
+        }
+        for (int i = 0; i < count; i++) {
+            int offset = b.getInt(HEADER_SIZE + 4 * i);
+            if (offset < 0 || offset > b.limit() - Level.FIXED_SIZE) {
+                throw new IOException("Level " + i + " out of bounds");
+            }
+            //the waves and the name length have to fit too, the getters trust them
+            long waves = b.getInt(offset + Level.WAVE_COUNT);
+            long end = offset + Level.FIXED_SIZE + waves * Level.WAVE_SIZE + 2;
+            if (waves < 0 || end > b.limit()
+                    || end + (b.getShort((int) end - 2) & 0xFFFF) > b.limit()) {
+                throw new IOException("Level " + i + " out of bounds");
+            }
+        }
+        return new LevelPack(b, count);
+    }
+
+    /**
+     * Maps {@code length} bytes of a channel starting at {@code offset}. The mapping stays
+     * valid after the channel is closed.
+     */
+    public static LevelPack map(FileChannel channel, long offset, long length) throws IOException {
+        return wrap(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+    }
+
+    public static LevelPack map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return map(channel, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Returns a view of level {@code index}. Views are cheap and read straight from the pack.
+     */
+    public Level getLevel(int index) {
+        if (index < 0 || index >= levelCount) {
+            throw new IndexOutOfBoundsException("level " + index + " of " + levelCount);
+        }
+        return new Level(buffer, buffer.getInt(HEADER_SIZE + 4 * index));
+    }
+}
@@ -0,0 +1,359 @@
+package com.yufang.spacefighter.net;
+
+import com.yufang.spacefighter.sim.GameSimulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps the simulations of 2 to 4 players in step by exchanging nothing but their boost
+ * inputs.
+ *
+ * <p>Every device runs the same seeded {@link GameSimulation} with a boost mask holding
+ * every player's input. A player's input sampled while the simulation is at tick t is
+ * scheduled for tick t + input delay, which gives it that long to reach the others before
+ * it is needed. When it is late anyway the simulation does not wait: the missing player is
+ * predicted to keep doing what it did last, and if the prediction turns out wrong the
+ * simulation is rolled back to a snapshot from before that tick and run forward again with
+ * the real input. The simulation only waits when it would get more than
+ * {@value #MAX_ROLLBACK} ticks ahead of the inputs of some player.</p>
+ *
+ * <p>Every tick each player sends every other player a packet with its inputs the
+ * recipient has not acknowledged yet, one bit per tick, and acknowledges the recipient's.
+ * A lost packet is therefore repaired by the next one. Varint layout:</p>
+ * <pre>
+ *   u8                protocol version
+ *   u8                session tag, from the seed
+ *   u8                sending player
+ *   varint            first tick of the inputs carried
+ *   varint            number of inputs carried, at most 64
+ *   zigzag varint     last tick of the recipient's inputs the sender has, minus the first
+ *   bytes             the inputs, the first in the low bit of the first byte
+ * </pre>
+ * <p>A packet is about ten bytes, sent once per tick to each other player.</p>
+ */
+public class LockstepSession {
+
+    public static final int PROTOCOL = 1;
+
+    //ticks between sampling an input and simulating it, a couple of LAN round trips
+    public static final int DEFAULT_INPUT_DELAY = 3;
+
+    //most ticks simulated on predicted input before waiting for the real one
+    public static final int MAX_ROLLBACK = 8;
+
+    //inputs kept per player, far more than can be unconfirmed or unacknowledged at once
+    private static final int HISTORY = 256;
+
+    //simulation states kept for rolling back, at least MAX_ROLLBACK + 1
+    private static final int SNAPSHOTS = 16;
+
+    //most inputs in one packet
+    private static final int MAX_INPUTS_PER_PACKET = 64;
+
+    private final GameSimulation simulation;
+    private final PacketTransport transport;
+    private final int playerCount;
+    private final int local;
+    private final int inputDelay;
+    private final int sessionTag;
+
+    //inputs by player and tick, and the last tick up to which each player's are all known
+    private final boolean[][] inputs;
+    private final long[] known;
+
+    //last tick of the local inputs each player has acknowledged
+    private final long[] acked;
+
+    //boost mask each tick was last simulated with, right or predicted
+    private final int[] usedMask = new int[HISTORY];
+
+    //simulation state at the start of a tick, and the tick it belongs to
+    private final StateBuffer[] snapshots = new StateBuffer[SNAPSHOTS];
+    private final long[] snapshotTicks = new long[SNAPSHOTS];
+
+    private final ByteBuffer packet = ByteBuffer.allocate(128);
+    private final byte[] bits = new byte[MAX_INPUTS_PER_PACKET / 8];
+
+    private int rollbackCount;
+    private int stallCount;
+
+    /**
+     * @param simulation a new simulation created with the session's seed and a config with
+     *                   one player per device
+     * @param local      the player steered on this device
+     */
+    public LockstepSession(GameSimulation simulation, PacketTransport transport, int local,
+            int inputDelay) {
+        playerCount = simulation.getPlayerCount();
+        if (playerCount < 2 || local < 0 || local >= playerCount) {
+            throw new IllegalArgumentException("Player " + local + " of " + playerCount);
+        }
+        if (inputDelay < 0 || inputDelay > MAX_INPUTS_PER_PACKET / 2) {
+            throw new IllegalArgumentException("Input delay " + inputDelay);
+        }
+        this.simulation = simulation;
+        this.transport = transport;
+        this.local = local;
+        this.inputDelay = inputDelay;
+        long seed = simulation.getSeed();
+        sessionTag = (int) (seed ^ (seed >>> 32) ^ (seed >>> 16)) & 0xFF;
+
+        inputs = new boolean[playerCount][HISTORY];
+        known = new long[playerCount];
+        acked = new long[playerCount];
+        for (int p = 0; p < playerCount; p++) {
+            //nobody boosts during the delay at the start
+            known[p] = inputDelay - 1;
+            acked[p] = inputDelay - 1;
+        }
+        for (int i = 0; i < SNAPSHOTS; i++) {
+            snapshots[i] = new StateBuffer();
+            snapshotTicks[i] = -1;
+        }
+    }
+
+    public GameSimulation getSimulation() {
+        return simulation;
+    }
+
+    public int getLocalPlayer() {
+        return local;
+    }
+
+    /**
+     * Returns the last tick whose inputs are known from every player.
+     */
+    public long getConfirmedTick() {
+        long confirmed = Long.MAX_VALUE;
+        for (long k : known) {
+            confirmed = Math.min(confirmed, k);
+        }
+        return confirmed;
+    }
+
+    public int getRollbackCount() {
+        return rollbackCount;
+    }
+
+    /**
+     * Returns how many ticks the simulation waited for a late player.
+     */
+    public int getStallCount() {
+        return stallCount;
+    }
+
+    /**
+     * Returns true once the game is over on the inputs of every player, so no late input
+     * can roll it back, and every player has the local inputs it needs to get there too.
+     */
+    public boolean isGameOverConfirmed() {
+        if (!simulation.isGameOver()) {
+            return false;
+        }
+        long last = simulation.getTick() - 1;
+        if (getConfirmedTick() < last) {
+            return false;
+        }
+        for (int p = 0; p < playerCount; p++) {
+            if (p != local && acked[p] < last) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the session for one tick of the local loop: schedules the local input, exchanges
+     * packets, rolls back if a prediction was wrong and simulates the next tick unless that
+     * has to wait for a late player.
+     *
+     * @param localBoost the local player's boost input, sampled now
+     * @return the EVENT_ flags of the tick simulated, 0 if none was
+     */
+    public int tick(boolean localBoost) throws IOException {
+        long current = simulation.getTick();
+        long scheduled = current + inputDelay;
+        //a tick that waited already has its input
+        if (known[local] < scheduled) {
+            inputs[local][(int) (scheduled % HISTORY)] = localBoost;
+            known[local] = scheduled;
+        }
+        poll();
+        if (simulation.isGameOver()) {
+            return 0;
+        }
+        if (current - getConfirmedTick() > MAX_ROLLBACK) {
+            stallCount++;
+            return 0;
+        }
+        return simulate(current);
+    }
+
+    /**
+     * Exchanges packets without simulating a new tick, correcting the ticks simulated so
+     * far if an input arrived that was predicted wrong.
+     */
+    public void poll() throws IOException {
+        send();
+        long rollbackTo = Long.MAX_VALUE;
+        for (int from = transport.receive(packet); from >= 0;
+                from = transport.receive(packet)) {
+            rollbackTo = Math.min(rollbackTo, receive(from));
+        }
+        if (rollbackTo < simulation.getTick()) {
+            rollBack(rollbackTo);
+        }
+    }
+
+    private void send() throws IOException {
+        for (int p = 0; p < playerCount; p++) {
+            if (p == local) {
+                continue;
+            }
+            long first = Math.max(acked[p] + 1, known[local] - MAX_INPUTS_PER_PACKET + 1);
+            int count = (int) (known[local] - first + 1);
+            packet.clear();
+            packet.put((byte) PROTOCOL);
+            packet.put((byte) sessionTag);
+            packet.put((byte) local);
+            putVarLong(packet, first);
+            putVarLong(packet, count);
+            long ack = known[p] - first;
+            putVarLong(packet, (ack << 1) ^ (ack >> 63));
+            for (int i = 0; i < count; i += 8) {
+                int bits = 0;
+                for (int b = 0; b < 8 && i + b < count; b++) {
+                    if (inputs[local][(int) ((first + i + b) % HISTORY)]) {
+                        bits |= 1 << b;
+                    }
+                }
+                packet.put((byte) bits);
+            }
+            packet.flip();
+            transport.send(p, packet);
+        }
+    }
+
+    //takes in a packet, returns the first tick simulated with a wrong prediction
+    private long receive(int from) {
+        long mispredicted = Long.MAX_VALUE;
+        try {
+            if (packet.get() != PROTOCOL || (packet.get() & 0xFF) != sessionTag
+                    || packet.get() != from || from == local) {
+                return mispredicted;
+            }
+            long first = getVarLong(packet);
+            int count = (int) getVarLong(packet);
+            long ackDelta = getVarLong(packet);
+            if (first < 0 || count < 0 || count > MAX_INPUTS_PER_PACKET) {
+                return mispredicted;
+            }
+            long ack = first + ((ackDelta >>> 1) ^ -(ackDelta & 1));
+            packet.get(bits, 0, (count + 7) / 8);
+            acked[from] = Math.max(acked[from], Math.min(ack, known[local]));
+
+            long simulated = simulation.getTick();
+            for (int i = 0; i < count; i++) {
+                long t = first + i;
+                if (t <= known[from]) {
+                    continue;
+                }
+                if (t != known[from] + 1 || t - getConfirmedTick() >= HISTORY) {
+                    //a gap, or further ahead than is kept; the next packet has it again
+                    break;
+                }
+                boolean boost = (bits[i >> 3] & (1 << (i & 7))) != 0;
+                boolean used = (usedMask[(int) (t % HISTORY)] & (1 << from)) != 0;
+                if (t < simulated && boost != used) {
+                    mispredicted = Math.min(mispredicted, t);
+                }
+                inputs[from][(int) (t % HISTORY)] = boost;
+                known[from] = t;
+            }
+        } catch (BufferUnderflowException e) {
+            //truncated, whatever it held comes again
+        }
+        return mispredicted;
+    }
+
+    //the inputs for a tick, predicting each player without one does what it did last
+    private int maskFor(long t) {
+        int mask = 0;
+        for (int p = 0; p < playerCount; p++) {
+            long k = Math.min(t, known[p]);
+            if (k >= 0 && inputs[p][(int) (k % HISTORY)]) {
+                mask |= 1 << p;
+            }
+        }
+        return mask;
+    }
+
+    private int simulate(long t) throws IOException {
+        //a tick on every player's real input is never rolled back past
+        if (t > getConfirmedTick()) {
+            int slot = (int) (t % SNAPSHOTS);
+            StateBuffer s = snapshots[slot];
+            s.reset();
+            simulation.writeState(s.data);
+            snapshotTicks[slot] = t;
+        }
+        int mask = maskFor(t);
+        usedMask[(int) (t % HISTORY)] = mask;
+        return simulation.step(mask);
+    }
+
+    private void rollBack(long to) throws IOException {
+        int slot = (int) (to % SNAPSHOTS);
+        if (snapshotTicks[slot] != to) {
+            throw new IllegalStateException("No snapshot for tick " + to);
+        }
+        long end = simulation.getTick();
+        StateBuffer s = snapshots[slot];
+        simulation.readState(new DataInputStream(
+                new ByteArrayInputStream(s.buffer(), 0, s.size())));
+        for (long t = to; t < end; t++) {
+            simulate(t);
+        }
+        rollbackCount++;
+    }
+
+    private static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    //a byte array stream that is written again and again without allocating
+    private static class StateBuffer extends ByteArrayOutputStream {
+
+        final DataOutputStream data = new DataOutputStream(this);
+
+        StateBuffer() {
+            super(4096);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
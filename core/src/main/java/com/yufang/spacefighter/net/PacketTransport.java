@@ -0,0 +1,23 @@
+package com.yufang.spacefighter.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Unreliable, unordered delivery of small packets between the players of a session, like
+ * UDP. Neither call may block.
+ */
+public interface PacketTransport {
+
+    /**
+     * Sends the remaining bytes of {@code packet} to a player. Packets may be lost.
+     */
+    void send(int player, ByteBuffer packet) throws IOException;
+
+    /**
+     * Receives one packet into {@code packet}, which is cleared first and flipped after.
+     *
+     * @return the player it came from, -1 if nothing is waiting
+     */
+    int receive(ByteBuffer packet) throws IOException;
+}
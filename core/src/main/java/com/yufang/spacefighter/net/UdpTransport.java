@@ -0,0 +1,68 @@
+package com.yufang.spacefighter.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * {@link PacketTransport} over a non-blocking UDP socket. Each player is known by its
+ * address, packets from anywhere else are dropped.
+ */
+public class UdpTransport implements PacketTransport {
+
+    private final DatagramChannel channel;
+    private final InetSocketAddress[] players;
+
+    /**
+     * @param local       address to receive on, port 0 picks a free one
+     * @param playerCount number of players in the session, this one included
+     */
+    public UdpTransport(InetSocketAddress local, int playerCount) throws IOException {
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().bind(local);
+        players = new InetSocketAddress[playerCount];
+    }
+
+    /**
+     * Returns the port this transport receives on.
+     */
+    public int getLocalPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    public void setPlayerAddress(int player, InetSocketAddress address) {
+        players[player] = address;
+    }
+
+    @Override
+    public void send(int player, ByteBuffer packet) throws IOException {
+        if (players[player] != null) {
+            //a full socket buffer drops the packet, the protocol sends it again anyway
+            channel.send(packet, players[player]);
+        }
+    }
+
+    @Override
+    public int receive(ByteBuffer packet) throws IOException {
+        while (true) {
+            packet.clear();
+            SocketAddress from = channel.receive(packet);
+            if (from == null) {
+                return -1;
+            }
+            packet.flip();
+            for (int p = 0; p < players.length; p++) {
+                if (from.equals(players[p])) {
+                    return p;
+                }
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,111 @@
+package com.yufang.spacefighter.perf;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size log-linear histogram of nanosecond durations, in the style of HdrHistogram.
+ *
+ * <p>Values below 64ns are counted exactly. Above that every power of two is split into 32
+ * linear sub-buckets, so any recorded value is reported within about 3% of its true value.
+ * All storage is allocated up front; {@link #record(long)} and the percentile queries never
+ * allocate, so it is safe to use on the game thread every frame.</p>
+ */
+public class FrameHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // about 68 seconds, anything longer is clamped
+    private static final long MAX_VALUE = (1L << 36) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final int[] counts = new int[BUCKET_COUNT];
+    private long totalCount;
+    private long maxValue;
+    private long sum;
+
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    // highest value that lands in the same bucket as index
+    private static long highestValueAt(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        } else if (nanos > MAX_VALUE) {
+            nanos = MAX_VALUE;
+        }
+        counts[indexOf(nanos)]++;
+        totalCount++;
+        sum += nanos;
+        if (nanos > maxValue) {
+            maxValue = nanos;
+        }
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the smallest recorded value (to bucket precision) that at least
+     * {@code percentile} percent of the recorded values do not exceed, 0 if empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(percentile / 100.0 * totalCount);
+        if (target < 1) {
+            target = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Returns how many recorded values were above {@code nanos}, to bucket precision.
+     */
+    public long getCountAbove(long nanos) {
+        long above = 0;
+        for (int i = counts.length - 1; i >= 0 && highestValueAt(i) > nanos; i--) {
+            above += counts[i];
+        }
+        return above;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public long getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        maxValue = 0;
+        sum = 0;
+    }
+}
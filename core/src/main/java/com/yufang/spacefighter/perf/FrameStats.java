@@ -0,0 +1,144 @@
+package com.yufang.spacefighter.perf;
+
+/**
+ * Per-phase frame timings of the game loop.
+ *
+ * <p>The loop records how long each phase took with {@link #record(int, long)} and calls
+ * {@link #frame(long)} once per frame with the current time; the interval between two
+ * frames is what the player sees, the phases tell where it went. Only the game thread may
+ * touch an instance.</p>
+ */
+public class FrameStats {
+
+    public static final int PHASE_FRAME = 0;
+    public static final int PHASE_UPDATE = 1;
+    public static final int PHASE_LOCK = 2;
+    public static final int PHASE_DRAW = 3;
+    public static final int PHASE_POST = 4;
+    public static final int PHASE_COUNT = 5;
+
+    private static final String[] PHASE_NAMES = {"frame", "update", "lock", "draw", "post"};
+
+    private final FrameHistogram[] histograms = new FrameHistogram[PHASE_COUNT];
+    private long frameBudgetNanos;
+
+    private long lastFrameNanos;
+    private long lateFrames;
+    private long gcCount = -1;
+
+    /**
+     * @param frameBudgetNanos target frame interval; a frame taking more than one and a half
+     *                         of it is counted late
+     */
+    public FrameStats(long frameBudgetNanos) {
+        this.frameBudgetNanos = frameBudgetNanos;
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            histograms[i] = new FrameHistogram();
+        }
+    }
+
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    public void record(int phase, long nanos) {
+        histograms[phase].record(nanos);
+    }
+
+    /**
+     * Marks the start of a frame and records the interval since the previous one.
+     */
+    public void frame(long nowNanos) {
+        if (lastFrameNanos != 0) {
+            long interval = nowNanos - lastFrameNanos;
+            histograms[PHASE_FRAME].record(interval);
+            if (interval > frameBudgetNanos + frameBudgetNanos / 2) {
+                lateFrames++;
+            }
+        }
+        lastFrameNanos = nowNanos;
+    }
+
+    /**
+     * Forgets the previous frame time, so a pause is not recorded as one very long frame.
+     */
+    public void restart() {
+        lastFrameNanos = 0;
+    }
+
+    public FrameHistogram getHistogram(int phase) {
+        return histograms[phase];
+    }
+
+    public long getFrameBudgetNanos() {
+        return frameBudgetNanos;
+    }
+
+    /**
+     * Sets the target frame interval, for a loop that measures its own as it goes.
+     */
+    public void setFrameBudgetNanos(long frameBudgetNanos) {
+        this.frameBudgetNanos = frameBudgetNanos;
+    }
+
+    public long getFrames() {
+        return histograms[PHASE_FRAME].getTotalCount();
+    }
+
+    public long getLateFrames() {
+        return lateFrames;
+    }
+
+    /**
+     * @param gcCount number of garbage collections so far, or -1 if the runtime does not say
+     */
+    public void setGcCount(long gcCount) {
+        this.gcCount = gcCount;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public void reset() {
+        for (FrameHistogram h : histograms) {
+            h.reset();
+        }
+        lateFrames = 0;
+        lastFrameNanos = 0;
+    }
+
+    /**
+     * Appends "p50/p95/p99" of a phase in milliseconds with one decimal, without allocating
+     * beyond the builder's own growth.
+     */
+    public void appendPercentiles(StringBuilder builder, int phase) {
+        FrameHistogram h = histograms[phase];
+        appendMillis(builder, h.getValueAtPercentile(50));
+        builder.append('/');
+        appendMillis(builder, h.getValueAtPercentile(95));
+        builder.append('/');
+        appendMillis(builder, h.getValueAtPercentile(99));
+    }
+
+    public static void appendMillis(StringBuilder builder, long nanos) {
+        long tenths = (nanos + 50000) / 100000;
+        builder.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    /**
+     * One line summary for logs and telemetry.
+     */
+    public String summary() {
+        StringBuilder builder = new StringBuilder(160);
+        builder.append("frames=").append(getFrames())
+                .append(" late=").append(lateFrames)
+                .append(" gc=").append(gcCount);
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            builder.append(' ').append(PHASE_NAMES[i]).append('=');
+            appendPercentiles(builder, i);
+        }
+        builder.append(" ms(p50/p95/p99)");
+        return builder.toString();
+    }
+}
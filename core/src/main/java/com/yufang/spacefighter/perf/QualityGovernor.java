@@ -0,0 +1,201 @@
+package com.yufang.spacefighter.perf;
+
+/**
+ * Trades visual quality for steady frame pacing when the device cannot keep up, gets too hot
+ * or runs low on battery.
+ *
+ * <p>Quality goes down one level at a time through fewer stars, no stars with the dirty-rect
+ * renderer, and finally a 30 fps cap on drawing. The simulation keeps ticking at full rate
+ * on every level; only drawing changes. Frame intervals are collected over windows of
+ * {@value #WINDOW_FRAMES} frames. A window whose p95 is well over budget steps down right
+ * away. Stepping back up needs {@value #UPGRADE_WINDOWS} comfortable windows in a row and a
+ * device that is not warm. Comfortable leaves room over the budget, since a sleep-paced loop
+ * runs its frames a little longer than its interval. A level stepped up to that fails its
+ * first window makes the next step up wait twice as long, so the level does not flap around
+ * a threshold.</p>
+ *
+ * <p>Frames are reported from the game thread; the device state may be set from any
+ * thread.</p>
+ */
+public class QualityGovernor {
+
+    public static final int LEVEL_FULL = 0;
+    public static final int LEVEL_HALF_STARS = 1;
+    public static final int LEVEL_DIRTY_RECTS = 2;
+    public static final int LEVEL_CAPPED = 3;
+
+    private static final int WINDOW_FRAMES = 120;
+    private static final int UPGRADE_WINDOWS = 5;
+    private static final int MAX_UPGRADE_WINDOWS = 8 * UPGRADE_WINDOWS;
+
+    //p95 over budget by this much steps down, under budget by this much counts as comfortable
+    private static final float DOWNGRADE_RATIO = 1.3f;
+    private static final float UPGRADE_RATIO = 1.25f;
+
+    //battery temperatures in tenths of a degree, the closest thing to a thermal status here
+    private static final int WARM_TEMPERATURE = 400;
+    private static final int HOT_TEMPERATURE = 430;
+    private static final int CRITICAL_TEMPERATURE = 460;
+
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    private long baseBudgetNanos;
+    private final FrameHistogram window = new FrameHistogram();
+
+    private int level = LEVEL_FULL;
+    private int comfortableWindows;
+    //comfortable windows needed to step up, and windows since the last step up
+    private int upgradeWindows = UPGRADE_WINDOWS;
+    private int windowsSinceUpgrade = Integer.MAX_VALUE;
+
+    private volatile int batteryPercent = 100;
+    private volatile boolean charging = true;
+    private volatile int temperature;
+    private volatile boolean powerSave;
+
+    /**
+     * @param baseBudgetNanos the frame interval the loop aims for at full quality
+     */
+    public QualityGovernor(long baseBudgetNanos) {
+        this.baseBudgetNanos = baseBudgetNanos;
+    }
+
+    /**
+     * Sets the frame interval the loop aims for at full quality, for a loop that measures
+     * its own as it goes. Game thread.
+     */
+    public void setBaseBudgetNanos(long baseBudgetNanos) {
+        this.baseBudgetNanos = baseBudgetNanos;
+    }
+
+    /**
+     * @param batteryPercent battery charge, 0-100
+     * @param charging       whether the device is plugged in
+     * @param temperature    battery temperature in tenths of a degree Celsius
+     * @param powerSave      whether the system battery saver is on
+     */
+    public void setDeviceState(int batteryPercent, boolean charging, int temperature,
+                               boolean powerSave) {
+        this.batteryPercent = batteryPercent;
+        this.charging = charging;
+        this.temperature = temperature;
+        this.powerSave = powerSave;
+    }
+
+    /**
+     * Records the interval since the previously drawn frame.
+     *
+     * @return true if the level changed
+     */
+    public boolean onFrame(long intervalNanos) {
+        window.record(intervalNanos);
+        if (window.getTotalCount() < WINDOW_FRAMES) {
+            return false;
+        }
+        long p95 = window.getValueAtPercentile(95);
+        window.reset();
+        return evaluate(p95);
+    }
+
+    private boolean evaluate(long p95) {
+        int previous = level;
+        int lowest = getBestAllowedLevel();
+        long budget = getFrameBudgetNanos();
+        if (level < lowest) {
+            level = lowest;
+            comfortableWindows = 0;
+        } else if (p95 > budget * DOWNGRADE_RATIO) {
+            if (level < LEVEL_CAPPED) {
+                level++;
+            }
+            comfortableWindows = 0;
+            if (windowsSinceUpgrade == 0) {
+                //the level stepped up to could not hold
+                upgradeWindows = Math.min(upgradeWindows * 2, MAX_UPGRADE_WINDOWS);
+            }
+            windowsSinceUpgrade = Integer.MAX_VALUE;
+        } else if (p95 < budget * UPGRADE_RATIO && temperature < WARM_TEMPERATURE) {
+            if (++comfortableWindows >= upgradeWindows && level > lowest) {
+                level--;
+                comfortableWindows = 0;
+                windowsSinceUpgrade = -1;
+            }
+        } else {
+            comfortableWindows = 0;
+        }
+        if (windowsSinceUpgrade < Integer.MAX_VALUE && ++windowsSinceUpgrade >= UPGRADE_WINDOWS) {
+            //the last step up held
+            upgradeWindows = UPGRADE_WINDOWS;
+        }
+        return level != previous;
+    }
+
+    /**
+     * Returns the best level the device state allows right now, whatever the frame times.
+     */
+    public int getBestAllowedLevel() {
+        if (temperature >= CRITICAL_TEMPERATURE) {
+            return LEVEL_CAPPED;
+        }
+        if (powerSave || (!charging && batteryPercent <= LOW_BATTERY_PERCENT)) {
+            return LEVEL_CAPPED;
+        }
+        if (temperature >= HOT_TEMPERATURE) {
+            return LEVEL_DIRTY_RECTS;
+        }
+        return LEVEL_FULL;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns how many of {@code total} stars to draw at the current level.
+     */
+    public int getVisibleStars(int total) {
+        switch (level) {
+            case LEVEL_FULL:
+                return total;
+            case LEVEL_HALF_STARS:
+                return total / 2;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns how many of {@code max} particles may be alive at the current level.
+     */
+    public int getParticleBudget(int max) {
+        switch (level) {
+            case LEVEL_FULL:
+                return max;
+            case LEVEL_HALF_STARS:
+                return max / 2;
+            default:
+                return max / 4;
+        }
+    }
+
+    /**
+     * Returns true if only the areas that changed should be redrawn.
+     */
+    public boolean useDirtyRects() {
+        return level >= LEVEL_DIRTY_RECTS;
+    }
+
+    /**
+     * Returns the shortest interval between drawn frames, 0 for no cap.
+     */
+    public long getFrameCapNanos() {
+        return level >= LEVEL_CAPPED ? 2 * baseBudgetNanos : 0;
+    }
+
+    /**
+     * Returns the frame interval expected at the current level.
+     */
+    public long getFrameBudgetNanos() {
+        return Math.max(baseBudgetNanos, getFrameCapNanos());
+    }
+}
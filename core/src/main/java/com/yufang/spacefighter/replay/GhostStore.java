@@ -0,0 +1,205 @@
+package com.yufang.spacefighter.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * The best runs, kept as {@link Replay}s in a single file with a fixed-size index in front.
+ *
+ * <p>The index is read when the store is opened and holds each run's score and length, so a
+ * leaderboard is listed without touching the replays, and the replay of any rank is one seek
+ * and one read. A replay is a hundred bytes or so, hundreds of ghosts fit in a few tens of
+ * kilobytes. Adding a run rewrites the file aside and renames it over the old one.</p>
+ *
+ * <pre>
+ *   "SFGH"            magic
+ *   u8                format version
+ *   i32               number of ghosts
+ *   16 bytes x n      index, best first: i32 score, i32 tick count, i32 offset, i32 length
+ *   bytes             the replays at their offsets
+ * </pre>
+ *
+ * <p>Not thread safe; open and use it on one background thread.</p>
+ */
+public class GhostStore {
+
+    private static final byte[] MAGIC = {'S', 'F', 'G', 'H'};
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = MAGIC.length + 1 + 4;
+    private static final int ENTRY_SIZE = 16;
+
+    private final File file;
+    private final int capacity;
+
+    private int count;
+    private int[] scores = new int[0];
+    private int[] tickCounts = new int[0];
+    private int[] offsets = new int[0];
+    private int[] lengths = new int[0];
+
+    /**
+     * Opens the store, which is empty if the file does not exist yet.
+     *
+     * @param capacity most runs kept, the worst drop out
+     */
+    public GhostStore(File file, int capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        this.file = file;
+        this.capacity = capacity;
+        if (file.exists()) {
+            readIndex();
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getScore(int rank) {
+        checkRank(rank);
+        return scores[rank];
+    }
+
+    public int getTickCount(int rank) {
+        checkRank(rank);
+        return tickCounts[rank];
+    }
+
+    /**
+     * Reads the run at a rank, 0 being the best.
+     */
+    public Replay read(int rank) throws IOException {
+        checkRank(rank);
+        byte[] data = new byte[lengths[rank]];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(offsets[rank]);
+            in.readFully(data);
+        }
+        return Replay.fromByteArray(data);
+    }
+
+    /**
+     * Adds a run where its score ranks it. A tie ranks below the runs already kept.
+     *
+     * @return the rank it got, -1 if it is not good enough to keep
+     */
+    public int add(Replay replay) throws IOException {
+        int score = replay.getScore();
+        int rank = 0;
+        while (rank < count && scores[rank] >= score) {
+            rank++;
+        }
+        if (rank >= capacity) {
+            return -1;
+        }
+
+        //the kept runs, in rank order, and their bytes
+        int newCount = Math.min(count + 1, capacity);
+        byte[][] data = new byte[newCount][];
+        int[] newScores = new int[newCount];
+        int[] newTicks = new int[newCount];
+        byte[] old = count > 0 ? readAll() : null;
+        for (int i = 0, from = 0; i < newCount; i++) {
+            if (i == rank) {
+                data[i] = replay.toByteArray();
+                newScores[i] = score;
+                newTicks[i] = (int) Math.min(Integer.MAX_VALUE, replay.getTickCount());
+            } else {
+                data[i] = Arrays.copyOfRange(old, offsets[from], offsets[from] + lengths[from]);
+                newScores[i] = scores[from];
+                newTicks[i] = tickCounts[from];
+                from++;
+            }
+        }
+        write(data, newScores, newTicks);
+        readIndex();
+        return rank;
+    }
+
+    private void write(byte[][] data, int[] newScores, int[] newTicks) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(data.length);
+            int offset = HEADER_SIZE + data.length * ENTRY_SIZE;
+            for (int i = 0; i < data.length; i++) {
+                out.writeInt(newScores[i]);
+                out.writeInt(newTicks[i]);
+                out.writeInt(offset);
+                out.writeInt(data[i].length);
+                offset += data[i].length;
+            }
+            for (byte[] d : data) {
+                out.write(d);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot rename " + temp + " to " + file);
+        }
+    }
+
+    private void readIndex() throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a ghost file");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported ghost version " + version);
+            }
+            int n = in.readInt();
+            long length = in.length();
+            if (n < 0 || HEADER_SIZE + (long) n * ENTRY_SIZE > length) {
+                throw new IOException("Corrupt ghost index, " + n + " entries");
+            }
+            //a file from a build that kept more is cut down to this capacity
+            int kept = Math.min(n, capacity);
+            int[] s = new int[kept];
+            int[] t = new int[kept];
+            int[] o = new int[kept];
+            int[] l = new int[kept];
+            for (int i = 0; i < kept; i++) {
+                s[i] = in.readInt();
+                t[i] = in.readInt();
+                o[i] = in.readInt();
+                l[i] = in.readInt();
+                if (o[i] < HEADER_SIZE || l[i] < 0 || (long) o[i] + l[i] > length) {
+                    throw new IOException("Corrupt ghost index entry " + i);
+                }
+            }
+            count = kept;
+            scores = s;
+            tickCounts = t;
+            offsets = o;
+            lengths = l;
+        }
+    }
+
+    private byte[] readAll() throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] data = new byte[(int) in.length()];
+            in.readFully(data);
+            return data;
+        }
+    }
+
+    private void checkRank(int rank) {
+        if (rank < 0 || rank >= count) {
+            throw new IndexOutOfBoundsException("rank " + rank + " of " + count);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.yufang.spacefighter.replay;
+
+import com.yufang.spacefighter.sim.SimConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A recorded session: the seed, the playing field it ran on and the ticks at which the boost
+ * state changed. That is everything needed to re-run the session through a
+ * {@link com.yufang.spacefighter.sim.GameSimulation} and get the same result.
+ *
+ * <p>Binary layout, all varints unsigned LEB128:</p>
+ * <pre>
+ *   "SFRP"            magic
+ *   u8                format version
+ *   i64               seed, big endian
+ *   varint x 8        screenX, screenY, player/enemy/friend width and height
+ *   varint x 4        star count, miss limit, score per tick, score per kill (version 2)
+ *   varint            number of wave ints, then that many varints (version 2)
+ *   varint x 5        fire interval, volley, bullet speed, spread and capacity (version 3)
+ *   varint            number of ticks simulated
+ *   varint            final score
+ *   varint            number of boost changes
+ *   varint x n        tick deltas between consecutive changes
+ * </pre>
+ *
+ * <p>Boosting always starts off and every change flips it, so only the change ticks are
+ * stored. A typical run costs a byte or two per touch.</p>
+ */
+public class Replay {
+
+    private static final byte[] MAGIC = {'S', 'F', 'R', 'P'};
+    public static final int VERSION = 3;
+
+    private final long seed;
+    private final SimConfig config;
+    private final long tickCount;
+    private final int score;
+    private final long[] changeTicks;
+
+    public Replay(long seed, SimConfig config, long tickCount, int score, long[] changeTicks) {
+        this.seed = seed;
+        this.config = config;
+        this.tickCount = tickCount;
+        this.score = score;
+        this.changeTicks = changeTicks;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the configuration to run the replay with. The playing field, sprite sizes and
+     * the level's rules and waves are recorded, the remaining tuning is the defaults of the
+     * build reading it. Version 1 replays predate levels and play by the default rules, version 2
+     * replays predate the weapon and play unarmed.
+     */
+    public SimConfig getConfig() {
+        return config;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the ticks at which the boost state flipped, in increasing order.
+     */
+    public long[] getChangeTicks() {
+        return changeTicks;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(seed);
+        writeVarLong(out, config.screenX);
+        writeVarLong(out, config.screenY);
+        writeVarLong(out, config.playerWidth);
+        writeVarLong(out, config.playerHeight);
+        writeVarLong(out, config.enemyWidth);
+        writeVarLong(out, config.enemyHeight);
+        writeVarLong(out, config.friendWidth);
+        writeVarLong(out, config.friendHeight);
+        writeVarLong(out, config.starCount);
+        writeVarLong(out, config.missLimit);
+        writeVarLong(out, config.scorePerTick);
+        writeVarLong(out, config.scorePerKill);
+        int[] waves = config.waves == null ? new int[0] : config.waves;
+        writeVarLong(out, waves.length);
+        for (int value : waves) {
+            writeVarLong(out, value);
+        }
+        writeVarLong(out, config.fireInterval);
+        writeVarLong(out, config.volley);
+        writeVarLong(out, config.bulletSpeed);
+        writeVarLong(out, config.bulletSpread);
+        writeVarLong(out, config.bulletCapacity);
+        writeVarLong(out, tickCount);
+        writeVarLong(out, score);
+        writeVarLong(out, changeTicks.length);
+        long previous = 0;
+        for (long tick : changeTicks) {
+            writeVarLong(out, tick - previous);
+            previous = tick;
+        }
+        out.flush();
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + changeTicks.length * 2);
+        try {
+            writeTo(bytes);
+        } catch (IOException e) {
+            // cannot happen on a byte array
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Replay readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a replay file");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        long seed = in.readLong();
+        SimConfig config = new SimConfig(readVarInt(in), readVarInt(in));
+        config.playerWidth = readVarInt(in);
+        config.playerHeight = readVarInt(in);
+        config.enemyWidth = readVarInt(in);
+        config.enemyHeight = readVarInt(in);
+        config.friendWidth = readVarInt(in);
+        config.friendHeight = readVarInt(in);
+        if (version >= 2) {
+            config.starCount = readVarInt(in);
+            config.missLimit = readVarInt(in);
+            config.scorePerTick = readVarInt(in);
+            config.scorePerKill = readVarInt(in);
+            int waveInts = readVarInt(in);
+            if (waveInts > 0) {
+                config.waves = new int[waveInts];
+                for (int i = 0; i < waveInts; i++) {
+                    config.waves[i] = readVarInt(in);
+                }
+            }
+        }
+        if (version >= 3) {
+            config.fireInterval = readVarInt(in);
+            config.volley = readVarInt(in);
+            config.bulletSpeed = readVarInt(in);
+            config.bulletSpread = readVarInt(in);
+            config.bulletCapacity = readVarInt(in);
+        }
+        long tickCount = readVarLong(in);
+        int score = readVarInt(in);
+        int count = readVarInt(in);
+        long[] changeTicks = new long[count];
+        long tick = 0;
+        for (int i = 0; i < count; i++) {
+            tick += readVarLong(in);
+            changeTicks[i] = tick;
+        }
+        return new Replay(seed, config, tickCount, score, changeTicks);
+    }
+
+    public static Replay fromByteArray(byte[] data) throws IOException {
+        return readFrom(new ByteArrayInputStream(data));
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative varint " + value);
+        }
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Varint out of range");
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,59 @@
+package com.yufang.spacefighter.replay;
+
+import com.yufang.spacefighter.sim.GameSimulation;
+import com.yufang.spacefighter.sim.TickInput;
+
+/**
+ * Feeds a recorded {@link Replay} back into a fresh simulation. There is no frame pacing
+ * here, so a whole session replays in a fraction of the time it took to play.
+ */
+public class ReplayPlayer implements TickInput {
+
+    private final Replay replay;
+    private final long[] changeTicks;
+
+    //index of the next change not yet reached, and the boost state before it
+    private int cursor;
+    private boolean boosting;
+
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+        changeTicks = replay.getChangeTicks();
+    }
+
+    @Override
+    public boolean isBoosting(long tick) {
+        if (cursor > 0 && tick < changeTicks[cursor - 1]) {
+            // went backwards, start again from the top
+            cursor = 0;
+            boosting = false;
+        }
+        while (cursor < changeTicks.length && changeTicks[cursor] <= tick) {
+            boosting = !boosting;
+            cursor++;
+        }
+        return boosting;
+    }
+
+    /**
+     * Creates a simulation from the replay's seed and runs the recorded input through it.
+     *
+     * @return the simulation after the last recorded tick
+     */
+    public GameSimulation play() {
+        GameSimulation simulation = new GameSimulation(replay.getConfig(), replay.getSeed());
+        cursor = 0;
+        boosting = false;
+        simulation.run(this, replay.getTickCount());
+        return simulation;
+    }
+
+    /**
+     * Replays the session and checks that it reproduces the recorded tick count and score.
+     */
+    public boolean verify() {
+        GameSimulation simulation = play();
+        return simulation.getTick() == replay.getTickCount()
+                && simulation.getScore() == replay.getScore();
+    }
+}
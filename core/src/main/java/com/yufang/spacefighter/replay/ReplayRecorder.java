@@ -0,0 +1,71 @@
+package com.yufang.spacefighter.replay;
+
+import com.yufang.spacefighter.sim.GameSimulation;
+
+import java.util.Arrays;
+
+/**
+ * Records the boost input of a running session. Call {@link #record(long, boolean)} once per
+ * tick with the input fed to the simulation; only changes are kept, so recording does not
+ * allocate except when the change buffer has to grow.
+ */
+public class ReplayRecorder {
+
+    private final GameSimulation simulation;
+
+    private long[] changeTicks = new long[64];
+    private int changeCount;
+    private boolean boosting;
+
+    /**
+     * @param simulation the simulation being recorded, before its first step
+     */
+    public ReplayRecorder(GameSimulation simulation) {
+        if (simulation.getPlayerCount() != 1) {
+            throw new IllegalArgumentException("Replays record a single player");
+        }
+        this.simulation = simulation;
+    }
+
+    /**
+     * Carries on recording a session restored from a {@link SessionSnapshot}.
+     *
+     * @param simulation the restored simulation
+     * @param previous   the session up to the snapshot
+     */
+    public ReplayRecorder(GameSimulation simulation, Replay previous) {
+        this(simulation);
+        long[] previousTicks = previous.getChangeTicks();
+        changeTicks = Arrays.copyOf(previousTicks, Math.max(64, previousTicks.length * 2));
+        changeCount = previousTicks.length;
+        //every change flips the boost state, which starts off
+        boosting = (changeCount & 1) != 0;
+    }
+
+    public GameSimulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * @param tick     the tick about to be simulated
+     * @param boosting the boost input for that tick
+     */
+    public void record(long tick, boolean boosting) {
+        if (boosting == this.boosting) {
+            return;
+        }
+        if (changeCount == changeTicks.length) {
+            changeTicks = Arrays.copyOf(changeTicks, changeCount * 2);
+        }
+        changeTicks[changeCount++] = tick;
+        this.boosting = boosting;
+    }
+
+    /**
+     * Returns the session so far, ending at the current tick of the simulation.
+     */
+    public Replay toReplay() {
+        return new Replay(simulation.getSeed(), simulation.getConfig(), simulation.getTick(),
+                simulation.getScore(), Arrays.copyOf(changeTicks, changeCount));
+    }
+}
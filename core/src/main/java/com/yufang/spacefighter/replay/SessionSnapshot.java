@@ -0,0 +1,106 @@
+package com.yufang.spacefighter.replay;
+
+import com.yufang.spacefighter.sim.GameSimulation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A session in progress, saved so it can carry on where it stopped after the process was
+ * killed.
+ *
+ * <p>The snapshot holds the session's replay so far, which supplies the seed and the
+ * config and lets the recording carry on, and the full simulation state at that point.
+ * Restoring does not re-run the session, so it takes the same time however long the
+ * session has been going.</p>
+ *
+ * <pre>
+ *   "SFSN"            magic
+ *   u8                format version
+ *   replay            the session so far, in the {@link Replay} format
+ *   state             {@link GameSimulation#writeState(java.io.DataOutput)}
+ * </pre>
+ */
+public class SessionSnapshot {
+
+    private static final byte[] MAGIC = {'S', 'F', 'S', 'N'};
+    public static final int VERSION = 1;
+
+    private final Replay replay;
+    private final GameSimulation simulation;
+
+    private SessionSnapshot(Replay replay, GameSimulation simulation) {
+        this.replay = replay;
+        this.simulation = simulation;
+    }
+
+    /**
+     * Returns the recording up to the snapshot, to carry on with
+     * {@link ReplayRecorder#ReplayRecorder(GameSimulation, Replay)}.
+     */
+    public Replay getReplay() {
+        return replay;
+    }
+
+    /**
+     * Returns the restored simulation, ready for its next step.
+     */
+    public GameSimulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * Writes the session of a recorder and the state of its simulation. The simulation must
+     * not be stepped while this runs.
+     */
+    public static void write(ReplayRecorder recorder, OutputStream outputStream)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        recorder.toReplay().writeTo(out);
+        recorder.getSimulation().writeState(out);
+        out.flush();
+    }
+
+    public static byte[] toByteArray(ReplayRecorder recorder) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try {
+            write(recorder, bytes);
+        } catch (IOException e) {
+            // cannot happen on a byte array
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static SessionSnapshot readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a snapshot file");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        Replay replay = Replay.readFrom(in);
+        GameSimulation simulation = new GameSimulation(replay.getConfig(), replay.getSeed());
+        simulation.readState(in);
+        if (simulation.getTick() != replay.getTickCount()) {
+            throw new IOException("Snapshot state does not match its replay");
+        }
+        return new SessionSnapshot(replay, simulation);
+    }
+
+    public static SessionSnapshot fromByteArray(byte[] data) throws IOException {
+        return readFrom(new ByteArrayInputStream(data));
+    }
+}
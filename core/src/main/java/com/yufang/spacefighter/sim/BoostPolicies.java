@@ -0,0 +1,107 @@
+package com.yufang.spacefighter.sim;
+
+import com.yufang.spacefighter.ecs.World;
+
+/**
+ * Ready made {@link BoostPolicy} implementations for balance testing. They keep no state of
+ * their own, so one instance can be shared by runs on different threads.
+ */
+public final class BoostPolicies {
+
+    private BoostPolicies() {
+    }
+
+    /**
+     * Never touches the screen.
+     */
+    public static BoostPolicy idle() {
+        return new BoostPolicy() {
+            @Override
+            public boolean isBoosting(GameSimulation simulation, SimRandom random) {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Keeps the finger down for the whole run.
+     */
+    public static BoostPolicy hold() {
+        return new BoostPolicy() {
+            @Override
+            public boolean isBoosting(GameSimulation simulation, SimRandom random) {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Boosts for {@code onTicks} then releases for {@code offTicks}, repeatedly.
+     */
+    public static BoostPolicy pulse(final int onTicks, final int offTicks) {
+        return new BoostPolicy() {
+            @Override
+            public boolean isBoosting(GameSimulation simulation, SimRandom random) {
+                return simulation.getTick() % (onTicks + offTicks) < onTicks;
+            }
+        };
+    }
+
+    /**
+     * Flips the boost state with the given probability each tick, like a jittery thumb.
+     */
+    public static BoostPolicy random(final float flipChance) {
+        return new BoostPolicy() {
+            @Override
+            public boolean isBoosting(GameSimulation simulation, SimRandom random) {
+                boolean boosting = simulation.isBoosting();
+                return random.nextFloat() < flipChance ? !boosting : boosting;
+            }
+        };
+    }
+
+    /**
+     * Steers towards the enemy's height while keeping clear of the friend when it is close,
+     * roughly what a good human player does.
+     */
+    public static BoostPolicy chase() {
+        return new BoostPolicy() {
+            @Override
+            public boolean isBoosting(GameSimulation simulation, SimRandom random) {
+                World w = simulation.getWorld();
+                int self = simulation.getPlayer();
+                int friend = simulation.getFriend();
+                int enemy = simulation.getEnemy();
+                int centerY2 = 2 * w.y[self] + w.height[self];
+                if (w.x[friend] < w.x[self] + w.width[self] + 200
+                        && w.x[friend] + w.width[friend] > w.x[self]) {
+                    // friend ahead, dodge to whichever side is further from it
+                    return 2 * w.y[friend] + w.height[friend] > centerY2;
+                }
+                return 2 * w.y[enemy] + w.height[enemy] < centerY2;
+            }
+        };
+    }
+
+    /**
+     * Looks up a policy by the name used on the command line.
+     *
+     * @throws IllegalArgumentException for unknown names
+     */
+    public static BoostPolicy byName(String name) {
+        switch (name) {
+            case "idle":
+                return idle();
+            case "hold":
+                return hold();
+            case "pulse":
+                return pulse(10, 10);
+            case "random":
+                return random(0.1f);
+            case "chase":
+                return chase();
+            default:
+                throw new IllegalArgumentException("Unknown policy " + name);
+        }
+    }
+}
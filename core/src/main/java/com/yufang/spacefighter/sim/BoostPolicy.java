@@ -0,0 +1,16 @@
+package com.yufang.spacefighter.sim;
+
+/**
+ * Scripted stand-in for a player, used when the simulation runs headless.
+ */
+public interface BoostPolicy {
+
+    /**
+     * Decides the boost input for the next tick.
+     *
+     * @param simulation the game about to be stepped, to be read but not modified
+     * @param random     a generator private to this run, seeded from the run's seed
+     * @return true to boost during the next tick
+     */
+    boolean isBoosting(GameSimulation simulation, SimRandom random);
+}
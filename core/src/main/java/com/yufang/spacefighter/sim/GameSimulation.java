@@ -0,0 +1,496 @@
+package com.yufang.spacefighter.sim;
+
+import com.yufang.spacefighter.ecs.CollisionSystem;
+import com.yufang.spacefighter.ecs.EntityType;
+import com.yufang.spacefighter.ecs.LifetimeSystem;
+import com.yufang.spacefighter.ecs.PlayerSystem;
+import com.yufang.spacefighter.ecs.Projectiles;
+import com.yufang.spacefighter.ecs.ScrollSystem;
+import com.yufang.spacefighter.ecs.SpriteId;
+import com.yufang.spacefighter.ecs.WeaponSystem;
+import com.yufang.spacefighter.ecs.World;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Deterministic game simulation with no Android dependencies.
+ *
+ * <p>All game rules live here: player movement, the star field, the enemy and friendly
+ * ship, collisions, misses and the score. Every random decision is drawn from one
+ * {@link SimRandom} seeded at construction, and the only input is the boost state passed to
+ * {@link #step(boolean)} each tick, so the same seed and the same input sequence always
+ * produce bit-identical state. {@code GameView} drives it at frame rate on the device and
+ * tests or tools can drive it on a plain JVM as fast as they like.</p>
+ *
+ * <p>Entities live in a {@link World} and are updated by the systems in the ecs package,
+ * one linear pass each. The entity kinds are {@link EntityType} instances built from the
+ * {@link SimConfig}.</p>
+ */
+public class GameSimulation {
+
+    //event flags returned by step()
+    public static final int EVENT_ENEMY_DESTROYED = 1;
+    public static final int EVENT_ENEMY_MISSED = 1 << 1;
+    public static final int EVENT_FRIEND_DESTROYED = 1 << 2;
+    public static final int EVENT_GAME_OVER = 1 << 3;
+
+    //type ids, indexes into getTypes()
+    public static final int TYPE_PLAYER = 0;
+    public static final int TYPE_STAR = 1;
+    public static final int TYPE_ENEMY = 2;
+    public static final int TYPE_FRIEND = 3;
+    public static final int TYPE_BOOM = 4;
+
+    //most ships in one game
+    public static final int MAX_PLAYERS = 4;
+
+    private final SimConfig config;
+    private final long seed;
+    private final SimRandom random;
+
+    private final EntityType[] types;
+    private final World world;
+    private final Projectiles projectiles;
+
+    private final PlayerSystem playerSystem;
+    private final ScrollSystem scrollSystem;
+    private final CollisionSystem collisionSystem;
+    private final WeaponSystem weaponSystem;
+    private final LifetimeSystem lifetimeSystem = new LifetimeSystem();
+
+    //these are created before anything that can be destroyed, so their indexes are stable.
+    //player is the first of the players, the only one in a single player game
+    private final int[] players;
+    private final int player;
+    private final int enemy;
+    private final int friend;
+
+    //enemies alive in the world and the next wave of the level to start
+    private int enemyCount = 1;
+    private int nextWave;
+
+    private long tick;
+    private int score;
+    private int countMisses;
+    private boolean gameOver;
+
+    public GameSimulation(SimConfig config, long seed) {
+        if (config.playerCount < 1 || config.playerCount > MAX_PLAYERS) {
+            throw new IllegalArgumentException("Unsupported player count " + config.playerCount);
+        }
+        this.config = config;
+        this.seed = seed;
+        random = new SimRandom(seed);
+        types = createTypes(config);
+
+        world = new World(config.starCount + config.playerCount + 8);
+        playerSystem = new PlayerSystem(config);
+        scrollSystem = new ScrollSystem(config.screenX, config.screenY);
+        collisionSystem = new CollisionSystem(config.screenX, types[TYPE_BOOM]);
+        projectiles = new Projectiles(config.fireInterval > 0 ? config.bulletCapacity : 0);
+        weaponSystem = new WeaponSystem(config, types[TYPE_BOOM]);
+
+        players = new int[config.playerCount];
+        for (int i = 0; i < players.length; i++) {
+            //stacked downwards, a ship height apart
+            players[i] = world.create(types[TYPE_PLAYER], config.playerStartX,
+                    config.playerStartY + i * 2 * config.playerHeight, 1);
+        }
+        player = players[0];
+        for (int i = 0; i < config.starCount; i++) {
+            scrollSystem.spawn(world, types[TYPE_STAR], random);
+        }
+        enemy = scrollSystem.spawn(world, types[TYPE_ENEMY], random);
+        friend = scrollSystem.spawn(world, types[TYPE_FRIEND], random);
+        startWaves();
+    }
+
+    private static EntityType[] createTypes(SimConfig config) {
+        EntityType player = new EntityType();
+        player.behavior = EntityType.BEHAVIOR_PLAYER;
+        player.sprite = SpriteId.PLAYER;
+        player.width = config.playerWidth;
+        player.height = config.playerHeight;
+
+        EntityType star = new EntityType();
+        star.behavior = EntityType.BEHAVIOR_SCROLL | EntityType.BEHAVIOR_BACKGROUND;
+        star.sprite = SpriteId.POINT;
+        star.spawnSpeedRange = config.starSpawnSpeedRange;
+        star.respawnSpeedRange = config.starRespawnSpeedRange;
+        star.spawnAnywhere = true;
+
+        EntityType enemy = new EntityType();
+        enemy.behavior = EntityType.BEHAVIOR_SCROLL | EntityType.BEHAVIOR_HOSTILE;
+        enemy.sprite = SpriteId.ENEMY;
+        enemy.width = config.enemyWidth;
+        enemy.height = config.enemyHeight;
+        enemy.spawnSpeedBase = config.enemySpawnSpeedBase;
+        enemy.spawnSpeedRange = config.enemySpawnSpeedRange;
+        enemy.respawnSpeedBase = config.enemyRespawnSpeedBase;
+        enemy.respawnSpeedRange = config.enemyRespawnSpeedRange;
+
+        EntityType friend = new EntityType();
+        friend.behavior = EntityType.BEHAVIOR_SCROLL | EntityType.BEHAVIOR_FRIENDLY;
+        friend.sprite = SpriteId.FRIEND;
+        friend.width = config.friendWidth;
+        friend.height = config.friendHeight;
+        friend.spawnSpeedBase = config.friendSpawnSpeedBase;
+        friend.spawnSpeedRange = config.friendSpawnSpeedRange;
+        friend.respawnSpeedBase = config.friendRespawnSpeedBase;
+        friend.respawnSpeedRange = config.friendRespawnSpeedRange;
+
+        //lives for the tick after the collision, the view turns it into particles
+        EntityType boom = new EntityType();
+        boom.sprite = SpriteId.BOOM;
+        boom.lifetime = 1;
+
+        EntityType[] types = {player, star, enemy, friend, boom};
+        for (int i = 0; i < types.length; i++) {
+            types[i].id = i;
+        }
+        return types;
+    }
+
+    /**
+     * Advances the game by one tick.
+     *
+     * @param boosting whether the player is boosting during this tick
+     * @return a combination of the EVENT_ flags for what happened, 0 if nothing did or the
+     * game is already over
+     */
+    public int step(boolean boosting) {
+        return step(boosting ? 1 : 0);
+    }
+
+    /**
+     * Advances a game with several players by one tick.
+     *
+     * @param boostMask bit i set if player i is boosting during this tick
+     * @return a combination of the EVENT_ flags, as for {@link #step(boolean)}
+     */
+    public int step(int boostMask) {
+        if (gameOver) {
+            return 0;
+        }
+        int events = 0;
+        tick++;
+        startWaves();
+
+        //incrementing score as time passes
+        score += config.scorePerTick;
+
+        //explosions from the last tick go away
+        lifetimeSystem.update(world);
+
+        //the world scrolls past at the speed of the fastest ship
+        int scrollSpeed = 0;
+        for (int i = 0; i < players.length; i++) {
+            playerSystem.update(world, players[i], (boostMask & (1 << i)) != 0);
+            scrollSpeed = Math.max(scrollSpeed, world.speed[players[i]]);
+        }
+
+        //hostiles just entering the screen start counting for misses
+        collisionSystem.arm(world, types);
+
+        scrollSystem.update(world, types, scrollSpeed, random);
+
+        for (int p : players) {
+            weaponSystem.fire(projectiles, world, p, tick);
+        }
+        int shot = weaponSystem.update(projectiles, world, types);
+        if (shot > 0) {
+            score += config.scorePerKill * shot;
+            events |= EVENT_ENEMY_DESTROYED;
+        }
+
+        int hits = 0;
+        int kills = 0;
+        int misses = 0;
+        for (int p : players) {
+            //a hostile rammed or missed by one ship is out of reach of the next
+            hits |= collisionSystem.update(world, types, p);
+            kills += collisionSystem.getKills();
+            misses += collisionSystem.getMisses();
+        }
+        if ((hits & CollisionSystem.HIT_HOSTILE) != 0) {
+            score += config.scorePerKill * kills;
+            events |= EVENT_ENEMY_DESTROYED;
+        }
+        if ((hits & CollisionSystem.MISSED_HOSTILE) != 0) {
+            events |= EVENT_ENEMY_MISSED;
+            //a wave passing at once may miss more than the limit, the count stops there
+            for (int i = misses; i > 0 && !gameOver; i--) {
+                //if no of Misses is equal to the limit, then game is over.
+                if (++countMisses == config.missLimit) {
+                    gameOver = true;
+                    events |= EVENT_GAME_OVER;
+                }
+            }
+        }
+        if ((hits & CollisionSystem.HIT_FRIENDLY) != 0) {
+            gameOver = true;
+            events |= EVENT_FRIEND_DESTROYED | EVENT_GAME_OVER;
+        }
+        return events;
+    }
+
+    //starts the waves of the level that are due by the current tick
+    private void startWaves() {
+        int[] waves = config.waves;
+        while (waves != null && nextWave * SimConfig.WAVE_FIELDS < waves.length
+                && waves[nextWave * SimConfig.WAVE_FIELDS + SimConfig.WAVE_START_TICK] <= tick) {
+            int w = nextWave++ * SimConfig.WAVE_FIELDS;
+            applyWaveSpeeds(w);
+            //enemies are only ever added, a wave asking for fewer keeps the ones flying
+            for (; enemyCount < waves[w + SimConfig.WAVE_ENEMY_COUNT]; enemyCount++) {
+                scrollSystem.spawn(world, types[TYPE_ENEMY], random);
+            }
+        }
+    }
+
+    //sets the ship speeds of the wave starting at index w of the waves
+    private void applyWaveSpeeds(int w) {
+        int[] waves = config.waves;
+        //enemies added by the wave spawn at its respawn speed too
+        EntityType enemy = types[TYPE_ENEMY];
+        enemy.respawnSpeedBase = waves[w + SimConfig.WAVE_ENEMY_SPEED_BASE];
+        enemy.respawnSpeedRange = waves[w + SimConfig.WAVE_ENEMY_SPEED_RANGE];
+        enemy.spawnSpeedBase = enemy.respawnSpeedBase;
+        enemy.spawnSpeedRange = enemy.respawnSpeedRange;
+        EntityType friend = types[TYPE_FRIEND];
+        friend.respawnSpeedBase = waves[w + SimConfig.WAVE_FRIEND_SPEED_BASE];
+        friend.respawnSpeedRange = waves[w + SimConfig.WAVE_FRIEND_SPEED_RANGE];
+    }
+
+    /**
+     * Writes everything that changes while the game runs: the counters, the random
+     * generator, the entities and the bullets. The config and the seed are not included, a
+     * simulation created from them reads the state back with {@link #readState(DataInput)}.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(tick);
+        out.writeInt(score);
+        out.writeInt(countMisses);
+        out.writeBoolean(gameOver);
+        out.writeLong(random.getState());
+        out.writeInt(enemyCount);
+        out.writeInt(nextWave);
+        out.writeInt(world.count);
+        for (int e = 0; e < world.count; e++) {
+            //sprite and collider come with the type
+            out.writeByte(world.type[e]);
+            out.writeByte(world.flags[e]);
+            out.writeInt(world.x[e]);
+            out.writeInt(world.y[e]);
+            out.writeInt(world.prevX[e]);
+            out.writeInt(world.prevY[e]);
+            out.writeInt(world.speed[e]);
+            out.writeInt(world.lifetime[e]);
+        }
+        out.writeInt(projectiles.count);
+        for (int i = 0; i < projectiles.count; i++) {
+            out.writeInt(projectiles.x[i]);
+            out.writeInt(projectiles.y[i]);
+            out.writeInt(projectiles.prevX[i]);
+            out.writeInt(projectiles.prevY[i]);
+            out.writeInt(projectiles.vx[i]);
+            out.writeInt(projectiles.vy[i]);
+        }
+    }
+
+    /**
+     * Replaces the state of this simulation with one written by
+     * {@link #writeState(DataOutput)} from a simulation with the same config and seed.
+     */
+    public void readState(DataInput in) throws IOException {
+        long tick = in.readLong();
+        int score = in.readInt();
+        int countMisses = in.readInt();
+        boolean gameOver = in.readBoolean();
+        long randomState = in.readLong();
+        int enemyCount = in.readInt();
+        int nextWave = in.readInt();
+        int waveCount = config.waves == null ? 0 : config.waves.length / SimConfig.WAVE_FIELDS;
+        if (tick < 0 || enemyCount < 1 || nextWave < 0 || nextWave > waveCount) {
+            throw new IOException("Corrupt simulation state");
+        }
+
+        //the players and the ships are created first, they must be where they always are
+        int count = in.readInt();
+        if (count <= Math.max(enemy, friend)) {
+            throw new IOException("Corrupt simulation state");
+        }
+        world.count = 0;
+        for (int e = 0; e < count; e++) {
+            int type = in.readUnsignedByte();
+            if (type >= types.length) {
+                throw new IOException("Corrupt simulation state");
+            }
+            world.create(types[type], 0, 0, 0);
+            world.flags[e] = in.readUnsignedByte();
+            world.x[e] = in.readInt();
+            world.y[e] = in.readInt();
+            world.prevX[e] = in.readInt();
+            world.prevY[e] = in.readInt();
+            world.speed[e] = in.readInt();
+            world.lifetime[e] = in.readInt();
+        }
+        for (int p : players) {
+            if (world.type[p] != TYPE_PLAYER) {
+                throw new IOException("Corrupt simulation state");
+            }
+        }
+        if (world.type[enemy] != TYPE_ENEMY || world.type[friend] != TYPE_FRIEND) {
+            throw new IOException("Corrupt simulation state");
+        }
+
+        int bullets = in.readInt();
+        if (bullets < 0 || bullets > projectiles.capacity) {
+            throw new IOException("Corrupt simulation state");
+        }
+        projectiles.count = 0;
+        for (int i = 0; i < bullets; i++) {
+            projectiles.add(in.readInt(), in.readInt(), 0, 0);
+            projectiles.prevX[i] = in.readInt();
+            projectiles.prevY[i] = in.readInt();
+            projectiles.vx[i] = in.readInt();
+            projectiles.vy[i] = in.readInt();
+        }
+
+        this.tick = tick;
+        this.score = score;
+        this.countMisses = countMisses;
+        this.gameOver = gameOver;
+        random.setState(randomState);
+        this.enemyCount = enemyCount;
+        this.nextWave = nextWave;
+        if (nextWave > 0) {
+            applyWaveSpeeds((nextWave - 1) * SimConfig.WAVE_FIELDS);
+        }
+    }
+
+    /**
+     * Steps the simulation until the game is over or {@code maxTicks} ticks have run.
+     *
+     * @return the number of ticks simulated by this call
+     */
+    public long run(TickInput input, long maxTicks) {
+        long start = tick;
+        long end = start + maxTicks;
+        while (!gameOver && tick < end) {
+            step(input.isBoosting(tick));
+        }
+        return tick - start;
+    }
+
+    /**
+     * Returns a 64-bit hash over the complete simulation state. Two simulations with the same
+     * seed and inputs return the same value after the same number of ticks.
+     */
+    public long stateHash() {
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, seed);
+        h = mix(h, random.getState());
+        h = mix(h, tick);
+        h = mix(h, score);
+        h = mix(h, countMisses);
+        h = mix(h, gameOver ? 1 : 0);
+        h = mix(h, world.count);
+        for (int e = 0; e < world.count; e++) {
+            h = mix(h, world.type[e]);
+            h = mix(h, world.flags[e]);
+            h = mix(h, world.x[e]);
+            h = mix(h, world.y[e]);
+            h = mix(h, world.speed[e]);
+            h = mix(h, world.lifetime[e]);
+        }
+        h = mix(h, projectiles.count);
+        for (int i = 0; i < projectiles.count; i++) {
+            h = mix(h, projectiles.x[i]);
+            h = mix(h, projectiles.y[i]);
+            h = mix(h, projectiles.vy[i]);
+        }
+        return h;
+    }
+
+    private static long mix(long h, long v) {
+        h ^= v;
+        h *= 0x100000001b3L;
+        return h ^ (h >>> 29);
+    }
+
+    public SimConfig getConfig() {
+        return config;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getCountMisses() {
+        return countMisses;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Returns the bullets in flight. Empty unless the config arms the player.
+     */
+    public Projectiles getProjectiles() {
+        return projectiles;
+    }
+
+    public EntityType[] getTypes() {
+        return types;
+    }
+
+    public int getPlayer() {
+        return player;
+    }
+
+    public int getPlayerCount() {
+        return players.length;
+    }
+
+    /**
+     * Returns the entity of player i, the one steered by bit i of the boost mask.
+     */
+    public int getPlayer(int i) {
+        return players[i];
+    }
+
+    public int getEnemy() {
+        return enemy;
+    }
+
+    public int getFriend() {
+        return friend;
+    }
+
+    /**
+     * Returns whether the first player is boosting.
+     */
+    public boolean isBoosting() {
+        return world.hasFlag(player, World.FLAG_BOOSTING);
+    }
+
+    public int getPlayerSpeed() {
+        return world.speed[player];
+    }
+}
@@ -0,0 +1,199 @@
+package com.yufang.spacefighter.sim;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs many games back to back with no surface and no frame pacing, spread over all cores,
+ * and reports how the scores are distributed. Meant for balance tuning on a desktop JVM:
+ * change a {@link SimConfig} field, run a few hundred thousand games, compare the reports.
+ *
+ * <p>Run {@code i} of a batch uses seed {@code baseSeed + i}, so a batch is reproducible and
+ * any single run can be replayed on its own.</p>
+ */
+public class HeadlessRunner {
+
+    //runs per fork/join leaf, small enough to balance, large enough to amortize the split
+    private static final int RUNS_PER_TASK = 64;
+
+    private final SimConfig config;
+    private final BoostPolicy policy;
+    private final long maxTicks;
+
+    /**
+     * @param maxTicks cut off for runs the policy never loses
+     */
+    public HeadlessRunner(SimConfig config, BoostPolicy policy, long maxTicks) {
+        this.config = config;
+        this.policy = policy;
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * Plays a single game to the end, or to the tick limit.
+     */
+    public GameSimulation runOne(long seed) {
+        GameSimulation simulation = new GameSimulation(config, seed);
+        SimRandom random = new SimRandom(~seed);
+        while (!simulation.isGameOver() && simulation.getTick() < maxTicks) {
+            simulation.step(policy.isBoosting(simulation, random));
+        }
+        return simulation;
+    }
+
+    /**
+     * Plays {@code runs} games on the given pool.
+     */
+    public ScoreReport run(ForkJoinPool pool, long baseSeed, int runs) {
+        long start = System.nanoTime();
+        Batch result = pool.invoke(new BatchTask(baseSeed, 0, runs));
+        return new ScoreReport(result.scores, result.friendKills, result.missOuts,
+                result.timeouts, result.ticks, System.nanoTime() - start);
+    }
+
+    public ScoreReport run(long baseSeed, int runs) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return run(pool, baseSeed, runs);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Results of a contiguous range of runs
+    private static final class Batch {
+        final int[] scores;
+        int friendKills;
+        int missOuts;
+        int timeouts;
+        long ticks;
+
+        Batch(int size) {
+            scores = new int[size];
+        }
+    }
+
+    private final class BatchTask extends RecursiveTask<Batch> {
+        private static final long serialVersionUID = 1L;
+
+        private final long baseSeed;
+        private final int from;
+        private final int to;
+
+        BatchTask(long baseSeed, int from, int to) {
+            this.baseSeed = baseSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Batch compute() {
+            if (to - from <= RUNS_PER_TASK) {
+                Batch batch = new Batch(to - from);
+                for (int i = from; i < to; i++) {
+                    GameSimulation simulation = runOne(baseSeed + i);
+                    batch.scores[i - from] = simulation.getScore();
+                    batch.ticks += simulation.getTick();
+                    if (!simulation.isGameOver()) {
+                        batch.timeouts++;
+                    } else if (simulation.getCountMisses() == config.missLimit) {
+                        batch.missOuts++;
+                    } else {
+                        batch.friendKills++;
+                    }
+                }
+                return batch;
+            }
+            int mid = (from + to) >>> 1;
+            BatchTask left = new BatchTask(baseSeed, from, mid);
+            left.fork();
+            Batch right = new BatchTask(baseSeed, mid, to).compute();
+            Batch merged = left.join();
+            Batch all = new Batch(to - from);
+            System.arraycopy(merged.scores, 0, all.scores, 0, merged.scores.length);
+            System.arraycopy(right.scores, 0, all.scores, merged.scores.length,
+                    right.scores.length);
+            all.friendKills = merged.friendKills + right.friendKills;
+            all.missOuts = merged.missOuts + right.missOuts;
+            all.timeouts = merged.timeouts + right.timeouts;
+            all.ticks = merged.ticks + right.ticks;
+            return all;
+        }
+    }
+
+    /**
+     * Command line entry point. Arguments are {@code key=value} pairs:
+     * <pre>
+     *   runs=100000 seed=0 policy=chase maxTicks=100000
+     *   missLimit=3 maxSpeed=20 gravity=-10
+     *   enemySpeed=10:6 enemyRespawnSpeed=10:10 friendSpeed=10:6 friendRespawnSpeed=10:10
+     * </pre>
+     * Speeds are {@code base:range}, as in {@code nextInt(range) + base}.
+     */
+    public static void main(String[] args) {
+        SimConfig config = new SimConfig();
+        int runs = 100000;
+        long seed = 0;
+        long maxTicks = 100000;
+        String policy = "chase";
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            String key = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+            switch (key) {
+                case "runs":
+                    runs = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "maxTicks":
+                    maxTicks = Long.parseLong(value);
+                    break;
+                case "policy":
+                    policy = value;
+                    break;
+                case "missLimit":
+                    config.missLimit = Integer.parseInt(value);
+                    break;
+                case "maxSpeed":
+                    config.playerMaxSpeed = Integer.parseInt(value);
+                    break;
+                case "gravity":
+                    config.gravity = Integer.parseInt(value);
+                    break;
+                case "enemySpeed":
+                    config.enemySpawnSpeedBase = base(value);
+                    config.enemySpawnSpeedRange = range(value);
+                    break;
+                case "enemyRespawnSpeed":
+                    config.enemyRespawnSpeedBase = base(value);
+                    config.enemyRespawnSpeedRange = range(value);
+                    break;
+                case "friendSpeed":
+                    config.friendSpawnSpeedBase = base(value);
+                    config.friendSpawnSpeedRange = range(value);
+                    break;
+                case "friendRespawnSpeed":
+                    config.friendRespawnSpeedBase = base(value);
+                    config.friendRespawnSpeedRange = range(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+        HeadlessRunner runner = new HeadlessRunner(config, BoostPolicies.byName(policy), maxTicks);
+        System.out.print(runner.run(seed, runs));
+    }
+
+    private static int base(String baseAndRange) {
+        return Integer.parseInt(baseAndRange.substring(0, baseAndRange.indexOf(':')));
+    }
+
+    private static int range(String baseAndRange) {
+        return Integer.parseInt(baseAndRange.substring(baseAndRange.indexOf(':') + 1));
+    }
+}
@@ -0,0 +1,151 @@
+package com.yufang.spacefighter.sim;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Score distribution over a batch of headless runs.
+ */
+public class ScoreReport {
+
+    private final int[] scores;
+    private final int friendKills;
+    private final int missOuts;
+    private final int timeouts;
+    private final long totalTicks;
+    private final long elapsedNanos;
+
+    /**
+     * @param scores the final score of every run, sorted in place
+     */
+    ScoreReport(int[] scores, int friendKills, int missOuts, int timeouts,
+                long totalTicks, long elapsedNanos) {
+        Arrays.sort(scores);
+        this.scores = scores;
+        this.friendKills = friendKills;
+        this.missOuts = missOuts;
+        this.timeouts = timeouts;
+        this.totalTicks = totalTicks;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getRuns() {
+        return scores.length;
+    }
+
+    public int getMin() {
+        return scores.length == 0 ? 0 : scores[0];
+    }
+
+    public int getMax() {
+        return scores.length == 0 ? 0 : scores[scores.length - 1];
+    }
+
+    public double getMean() {
+        if (scores.length == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int s : scores) {
+            sum += s;
+        }
+        return (double) sum / scores.length;
+    }
+
+    public double getStandardDeviation() {
+        if (scores.length == 0) {
+            return 0;
+        }
+        double mean = getMean();
+        double sum = 0;
+        for (int s : scores) {
+            sum += (s - mean) * (s - mean);
+        }
+        return Math.sqrt(sum / scores.length);
+    }
+
+    /**
+     * @param p percentile between 0 and 100
+     * @return the nearest-rank percentile of the scores
+     */
+    public int getPercentile(double p) {
+        if (scores.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100.0 * scores.length);
+        return scores[Math.max(0, Math.min(scores.length - 1, rank - 1))];
+    }
+
+    /**
+     * Runs that ended by ramming the friendly ship.
+     */
+    public int getFriendKills() {
+        return friendKills;
+    }
+
+    /**
+     * Runs that ended by reaching the miss limit.
+     */
+    public int getMissOuts() {
+        return missOuts;
+    }
+
+    /**
+     * Runs still alive when the tick limit was reached.
+     */
+    public int getTimeouts() {
+        return timeouts;
+    }
+
+    public long getTotalTicks() {
+        return totalTicks;
+    }
+
+    public double getTicksPerSecond() {
+        return elapsedNanos == 0 ? 0 : totalTicks * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns how many runs fall in each of {@code buckets} equal score ranges between the
+     * minimum and maximum score.
+     */
+    public int[] getHistogram(int buckets) {
+        int[] counts = new int[buckets];
+        if (scores.length == 0) {
+            return counts;
+        }
+        long range = (long) getMax() - getMin() + 1;
+        for (int s : scores) {
+            counts[(int) ((s - getMin()) * buckets / range)]++;
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US,
+                "runs=%d ticks=%d (%.1fM ticks/s)%n", getRuns(), totalTicks,
+                getTicksPerSecond() / 1e6));
+        builder.append(String.format(Locale.US,
+                "score min=%d p10=%d p50=%d p90=%d p99=%d max=%d mean=%.1f sd=%.1f%n",
+                getMin(), getPercentile(10), getPercentile(50), getPercentile(90),
+                getPercentile(99), getMax(), getMean(), getStandardDeviation()));
+        builder.append(String.format(Locale.US,
+                "ended by friend=%d misses=%d timeout=%d%n", friendKills, missOuts, timeouts));
+        int[] histogram = getHistogram(10);
+        long range = (long) getMax() - getMin() + 1;
+        int widest = 1;
+        for (int c : histogram) {
+            widest = Math.max(widest, c);
+        }
+        for (int i = 0; i < histogram.length; i++) {
+            long from = getMin() + range * i / histogram.length;
+            char[] bar = new char[histogram[i] * 50 / widest];
+            Arrays.fill(bar, '#');
+            builder.append(String.format(Locale.US, "%8d %7d %s%n", from, histogram[i],
+                    new String(bar)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,132 @@
+package com.yufang.spacefighter.sim;
+
+/**
+ * Tunable parameters of a {@link GameSimulation}.
+ *
+ * <p>The defaults reproduce the original hand tuned game. Sprite sizes are only used for
+ * collision and spawning, so headless runs can leave them at the stock drawable sizes.</p>
+ */
+public class SimConfig {
+
+    //layout of one wave in {@link #waves}
+    public static final int WAVE_START_TICK = 0;
+    public static final int WAVE_ENEMY_COUNT = 1;
+    public static final int WAVE_ENEMY_SPEED_BASE = 2;
+    public static final int WAVE_ENEMY_SPEED_RANGE = 3;
+    public static final int WAVE_FRIEND_SPEED_BASE = 4;
+    public static final int WAVE_FRIEND_SPEED_RANGE = 5;
+    public static final int WAVE_FIELDS = 6;
+
+    //size of the world the game is played in, the camera maps it onto the screen
+    public static final int WORLD_WIDTH = 1280;
+    public static final int WORLD_HEIGHT = 720;
+
+    //size of the playing field in world units. Everything below is in world units too.
+    public int screenX = WORLD_WIDTH;
+    public int screenY = WORLD_HEIGHT;
+
+    //sprite sizes used for the collision boxes
+    public int playerWidth = 100;
+    public int playerHeight = 50;
+    public int enemyWidth = 100;
+    public int enemyHeight = 72;
+    public int friendWidth = 74;
+    public int friendHeight = 40;
+
+    //ships steered by the players, 2 to 4 in a multiplayer game, each its own boost input
+    public int playerCount = 1;
+
+    //player movement
+    public int playerStartX = 75;
+    public int playerStartY = 50;
+    public int playerMinSpeed = 1;
+    public int playerMaxSpeed = 20;
+    public int gravity = -10;
+    public int boostAcceleration = 2;
+    public int deceleration = 5;
+
+    //enemy speed is base + nextInt(range), on first spawn and on every respawn
+    public int enemySpawnSpeedBase = 10;
+    public int enemySpawnSpeedRange = 6;
+    public int enemyRespawnSpeedBase = 10;
+    public int enemyRespawnSpeedRange = 10;
+
+    //same for the friendly ship
+    public int friendSpawnSpeedBase = 10;
+    public int friendSpawnSpeedRange = 6;
+    public int friendRespawnSpeedBase = 10;
+    public int friendRespawnSpeedRange = 10;
+
+    //background stars
+    public int starCount = 100;
+    public int starSpawnSpeedRange = 10;
+    public int starRespawnSpeedRange = 15;
+
+    //number of enemies the player may let pass before the game is over
+    public int missLimit = 3;
+
+    //the player's weapon fires a volley every fireInterval ticks, 0 leaves it unarmed.
+    //The bullets of a volley are spread evenly between -bulletSpread and +bulletSpread
+    //vertical speed, and shots are dropped while bulletCapacity bullets are in flight.
+    public int fireInterval = 0;
+    public int volley = 1;
+    public int bulletSpeed = 30;
+    public int bulletSpread = 0;
+    public int bulletCapacity = 4096;
+
+    //score for every tick survived and for every enemy rammed
+    public int scorePerTick = 1;
+    public int scorePerKill = 0;
+
+    //the waves of a level, WAVE_FIELDS ints each in order of start tick. When a wave starts
+    //the enemies and the friend respawn at its speeds, and enemies are added until there are
+    //as many as it asks for. Null plays the whole game with the settings above.
+    public int[] waves;
+
+    public SimConfig() {
+    }
+
+    public SimConfig(int screenX, int screenY) {
+        this.screenX = screenX;
+        this.screenY = screenY;
+    }
+
+    public SimConfig copy() {
+        SimConfig c = new SimConfig(screenX, screenY);
+        c.playerWidth = playerWidth;
+        c.playerHeight = playerHeight;
+        c.enemyWidth = enemyWidth;
+        c.enemyHeight = enemyHeight;
+        c.friendWidth = friendWidth;
+        c.friendHeight = friendHeight;
+        c.playerCount = playerCount;
+        c.playerStartX = playerStartX;
+        c.playerStartY = playerStartY;
+        c.playerMinSpeed = playerMinSpeed;
+        c.playerMaxSpeed = playerMaxSpeed;
+        c.gravity = gravity;
+        c.boostAcceleration = boostAcceleration;
+        c.deceleration = deceleration;
+        c.enemySpawnSpeedBase = enemySpawnSpeedBase;
+        c.enemySpawnSpeedRange = enemySpawnSpeedRange;
+        c.enemyRespawnSpeedBase = enemyRespawnSpeedBase;
+        c.enemyRespawnSpeedRange = enemyRespawnSpeedRange;
+        c.friendSpawnSpeedBase = friendSpawnSpeedBase;
+        c.friendSpawnSpeedRange = friendSpawnSpeedRange;
+        c.friendRespawnSpeedBase = friendRespawnSpeedBase;
+        c.friendRespawnSpeedRange = friendRespawnSpeedRange;
+        c.starCount = starCount;
+        c.starSpawnSpeedRange = starSpawnSpeedRange;
+        c.starRespawnSpeedRange = starRespawnSpeedRange;
+        c.missLimit = missLimit;
+        c.fireInterval = fireInterval;
+        c.volley = volley;
+        c.bulletSpeed = bulletSpeed;
+        c.bulletSpread = bulletSpread;
+        c.bulletCapacity = bulletCapacity;
+        c.scorePerTick = scorePerTick;
+        c.scorePerKill = scorePerKill;
+        c.waves = waves == null ? null : waves.clone();
+        return c;
+    }
+}
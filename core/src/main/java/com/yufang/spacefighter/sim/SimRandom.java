@@ -0,0 +1,76 @@
+package com.yufang.spacefighter.sim;
+
+/**
+ * Seeded pseudo random generator for the simulation.
+ *
+ * <p>Uses the same 48-bit linear congruential formula as {@link java.util.Random} so the
+ * sequences are identical for a given seed, but the internal state can be read back and
+ * restored. That is what makes a run reproducible from its seed alone, and lets a snapshot
+ * carry the generator along with the rest of the game state.</p>
+ */
+public final class SimRandom {
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    public SimRandom(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Resets the generator as if it had just been created with this seed.
+     */
+    public void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * Returns the raw 48-bit state, suitable for {@link #setState(long)}.
+     */
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+
+    private int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    public int nextInt() {
+        return next(32);
+    }
+
+    /**
+     * Returns a value in [0, bound), matching {@link java.util.Random#nextInt(int)}.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        if ((bound & -bound) == bound) {
+            return (int) ((bound * (long) next(31)) >> 31);
+        }
+        int bits;
+        int val;
+        do {
+            bits = next(31);
+            val = bits % bound;
+        } while (bits - val + (bound - 1) < 0);
+        return val;
+    }
+
+    public boolean nextBoolean() {
+        return next(1) != 0;
+    }
+
+    public float nextFloat() {
+        return next(24) / ((float) (1 << 24));
+    }
+}
@@ -0,0 +1,13 @@
+package com.yufang.spacefighter.sim;
+
+/**
+ * Source of player input for a simulation run, queried once per tick.
+ */
+public interface TickInput {
+
+    /**
+     * @param tick index of the tick about to be simulated, starting at 0
+     * @return true if the player is boosting during that tick
+     */
+    boolean isBoosting(long tick);
+}
@@ -0,0 +1,132 @@
+package com.yufang.spacefighter.view;
+
+/**
+ * Maps world coordinates, the fixed units the simulation works in, to screen pixels.
+ *
+ * <p>The world is the same size on every device, so gameplay is too. At zoom 1 the camera
+ * fits the whole world into the screen, keeping its aspect ratio and centering it; the
+ * bars left over on a screen of another shape show nothing. Zooming in and moving the
+ * center scroll the view over the world.</p>
+ *
+ * <p>The mapping is a uniform scale and a translation, applied to the canvas once per
+ * frame, so everything in the world is drawn in world units.</p>
+ */
+public class Camera {
+
+    private final int worldWidth;
+    private final int worldHeight;
+
+    private int screenX;
+    private int screenY;
+    private float zoom = 1;
+    private float centerX;
+    private float centerY;
+
+    //screen = world * scale + translate
+    private float scale = 1;
+    private float translateX;
+    private float translateY;
+
+    public Camera(int worldWidth, int worldHeight) {
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+        centerX = worldWidth / 2f;
+        centerY = worldHeight / 2f;
+        setViewport(worldWidth, worldHeight);
+    }
+
+    /**
+     * Sets the size of the screen in pixels.
+     */
+    public void setViewport(int screenX, int screenY) {
+        this.screenX = screenX;
+        this.screenY = screenY;
+        update();
+    }
+
+    /**
+     * Centers the view on a world position.
+     */
+    public void lookAt(float x, float y) {
+        centerX = x;
+        centerY = y;
+        update();
+    }
+
+    /**
+     * Magnifies the view around its center, 1 shows the whole world.
+     */
+    public void setZoom(float zoom) {
+        if (zoom <= 0) {
+            throw new IllegalArgumentException("zoom must be positive");
+        }
+        this.zoom = zoom;
+        update();
+    }
+
+    private void update() {
+        float fit = Math.min((float) screenX / worldWidth, (float) screenY / worldHeight);
+        scale = fit * zoom;
+        translateX = screenX / 2f - centerX * scale;
+        translateY = screenY / 2f - centerY * scale;
+    }
+
+    public int getWorldWidth() {
+        return worldWidth;
+    }
+
+    public int getWorldHeight() {
+        return worldHeight;
+    }
+
+    /**
+     * Returns the screen pixels per world unit.
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    public float getTranslateX() {
+        return translateX;
+    }
+
+    public float getTranslateY() {
+        return translateY;
+    }
+
+    public float toScreenX(float x) {
+        return x * scale + translateX;
+    }
+
+    public float toScreenY(float y) {
+        return y * scale + translateY;
+    }
+
+    public float toWorldX(float x) {
+        return (x - translateX) / scale;
+    }
+
+    public float toWorldY(float y) {
+        return (y - translateY) / scale;
+    }
+
+    /**
+     * Left edge of the world on the screen, clamped to the screen. The world's edges bound
+     * what is drawn, entities waiting just outside it stay hidden.
+     */
+    public int getViewLeft() {
+        return Math.max(0, (int) Math.floor(toScreenX(0)));
+    }
+
+    public int getViewTop() {
+        return Math.max(0, (int) Math.floor(toScreenY(0)));
+    }
+
+    public int getViewRight() {
+        return Math.min(screenX, (int) Math.ceil(toScreenX(worldWidth)));
+    }
+
+    public int getViewBottom() {
+        return Math.min(screenY, (int) Math.ceil(toScreenY(worldHeight)));
+    }
+}
@@ -0,0 +1,36 @@
+package com.yufang.spacefighter.anim;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the precomputed timelines.
+ */
+public class AnimationTest {
+
+    @Test
+    public void loopingTimelineRepeats() {
+        Animation a = new Animation(new int[]{7, 8, 9}, new int[]{2, 1, 3}, true);
+        assertEquals(6, a.getLength());
+        int[] expected = {7, 7, 8, 9, 9, 9, 7, 7, 8};
+        for (int tick = 0; tick < expected.length; tick++) {
+            assertEquals(expected[tick], a.frameAt(tick));
+        }
+        assertEquals(8, a.frameAt(6L * 1000000000L + 2));
+    }
+
+    @Test
+    public void oneShotHoldsLastFrame() {
+        Animation a = new Animation(new int[]{1, 2}, new int[]{3, 3}, false);
+        assertEquals(1, a.frameAt(-5));
+        assertEquals(2, a.frameAt(5));
+        assertEquals(2, a.frameAt(500));
+        assertEquals(4, Animation.still(4).frameAt(123));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroLengthFrames() {
+        new Animation(new int[]{1}, new int[]{0}, true);
+    }
+}
@@ -0,0 +1,93 @@
+package com.yufang.spacefighter.audio;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks voice allocation, stealing and clipping in the mixer, and the command encoding.
+ */
+public class MixerTest {
+
+    private static short[] constant(int length, int value) {
+        short[] pcm = new short[length];
+        Arrays.fill(pcm, (short) value);
+        return pcm;
+    }
+
+    @Test
+    public void voicesEndWithTheirSound() {
+        Mixer m = new Mixer(new short[][]{constant(10, 1000), constant(30, -1000)}, 4);
+        m.play(0, 255);
+        m.play(1, 255);
+        assertEquals(2, m.getActiveVoices());
+        short[] out = new short[8];
+        int[] mix = new int[8];
+        m.mix(out, mix, 8);
+        assertEquals(0, out[0]);
+        m.mix(out, mix, 8);
+        //the short sound ends after two samples of this block
+        assertEquals(0, out[1]);
+        assertEquals(-1000, out[2]);
+        assertEquals(1, m.getActiveVoices());
+    }
+
+    @Test
+    public void oldestVoiceIsStolen() {
+        Mixer m = new Mixer(new short[][]{constant(100, 10)}, 2);
+        short[] out = new short[4];
+        int[] mix = new int[4];
+        int first = m.play(0, 255);
+        m.mix(out, mix, 4);
+        int second = m.play(0, 255);
+        m.mix(out, mix, 2);
+        assertNotEquals(first, second);
+        assertEquals(first, m.play(0, 255));
+        assertEquals(second, m.play(0, 255));
+        assertEquals(2, m.getActiveVoices());
+        assertEquals(-1, m.play(5, 255));
+    }
+
+    @Test
+    public void mixClampsAndAppliesGain() {
+        Mixer m = new Mixer(new short[][]{constant(4, 30000)}, 3);
+        m.play(0, 255);
+        m.play(0, 255);
+        m.play(0, 127);
+        short[] out = new short[4];
+        m.mix(out, new int[4], 4);
+        assertEquals(Short.MAX_VALUE, out[0]);
+
+        m.play(0, 127);
+        m.mix(out, new int[4], 4);
+        assertEquals(15000, out[0]);
+    }
+
+    @Test
+    public void commandsKeepOrderAndDropWhenFull() {
+        CommandQueue q = new CommandQueue(4);
+        assertTrue(q.offer(3, 300));
+        assertTrue(q.offer(1, 10));
+        assertTrue(q.offer(2, 0));
+        assertTrue(q.offer(0, 255));
+        assertFalse(q.offer(1, 1));
+        int c = q.poll();
+        assertEquals(3, CommandQueue.soundOf(c));
+        assertEquals(255, CommandQueue.gainOf(c));
+        assertEquals(10, CommandQueue.gainOf(q.poll()));
+        assertEquals(2, CommandQueue.soundOf(q.poll()));
+        assertEquals(0, CommandQueue.soundOf(q.poll()));
+        assertEquals(-1, q.poll());
+    }
+
+    @Test
+    public void renderedSoundsAreAllThere() {
+        short[][] bank = Sounds.render(22050);
+        assertEquals(Sounds.COUNT, bank.length);
+        for (short[] pcm : bank) {
+            assertTrue(pcm.length > 22050 / 10);
+        }
+    }
+}
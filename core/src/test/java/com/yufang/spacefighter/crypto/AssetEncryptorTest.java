@@ -0,0 +1,246 @@
+package com.yufang.spacefighter.crypto;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Encrypts assets the way the build does and decrypts them the way the DRM session does.
+ */
+public class AssetEncryptorTest {
+
+    private static final String KEY_ID = "3be2b25db355fc64a0e69a50f4dbb298";
+    private static final String KEY = "000102030405060708090a0b0c0d0e0f";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    //what the DRM crypto session does on a device, counting the chunks decrypted
+    private static class JvmDecryptor implements EncryptedAssetReader.Decryptor {
+
+        int chunks;
+
+        @Override
+        public byte[] decrypt(byte[] keyId, byte[] data, byte[] iv) throws IOException {
+            assertArrayEquals(AssetEncryptor.parseHex(KEY_ID), keyId);
+            chunks++;
+            try {
+                Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+                cipher.init(Cipher.DECRYPT_MODE,
+                        new SecretKeySpec(AssetEncryptor.parseHex(KEY), "AES"),
+                        new IvParameterSpec(iv));
+                return cipher.doFinal(data);
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static byte[] decrypt(byte[] encrypted) throws Exception {
+        return EncryptedAssetReader.decrypt(new ByteArrayInputStream(encrypted),
+                new JvmDecryptor());
+    }
+
+    private static byte[] plain(int length) {
+        byte[] plain = new byte[length];
+        for (int i = 0; i < length; i++) {
+            plain[i] = (byte) (i * 31 + length);
+        }
+        return plain;
+    }
+
+    @Test
+    public void assetsOfAnyLengthRoundTrip() throws Exception {
+        AssetEncryptor encryptor = new AssetEncryptor(AssetEncryptor.parseHex(KEY_ID),
+                AssetEncryptor.parseHex(KEY), 1024);
+        for (int length : new int[]{0, 1, 15, 16, 17, 1024, 1025, 73836}) {
+            byte[] plain = plain(length);
+            byte[] encrypted = encryptor.encrypt(plain);
+            int chunks = EncryptedAsset.chunkCount(length, 1024);
+            //only the last chunk is padded
+            assertEquals(EncryptedAsset.headerSize(chunks) + EncryptedAsset.paddedLength(length),
+                    encrypted.length);
+            assertArrayEquals(plain, decrypt(encrypted));
+        }
+        //no header, like the assets encrypted on a device
+        assertFalse(EncryptedAsset.hasMagic(new byte[64], 64));
+    }
+
+    @Test
+    public void randomAccessDecryptsOnlyTheChunksRead() throws Exception {
+        AssetEncryptor encryptor = new AssetEncryptor(AssetEncryptor.parseHex(KEY_ID),
+                AssetEncryptor.parseHex(KEY), 1024);
+        byte[] plain = plain(10000);
+        JvmDecryptor decryptor = new JvmDecryptor();
+        EncryptedAssetReader reader = new EncryptedAssetReader(
+                ByteBuffer.wrap(encryptor.encrypt(plain)), decryptor);
+        assertEquals(10000, reader.getLength());
+        assertEquals(10, reader.getAsset().getChunkCount());
+
+        //across the boundary of chunks 4 and 5
+        byte[] out = new byte[100];
+        assertEquals(100, reader.read(4050, out, 0, 100));
+        assertArrayEquals(Arrays.copyOfRange(plain, 4050, 4150), out);
+        assertEquals(2, decryptor.chunks);
+        //past the end
+        assertEquals(16, reader.read(9984, out, 0, 100));
+        assertArrayEquals(Arrays.copyOfRange(plain, 9984, 10000), Arrays.copyOf(out, 16));
+        assertEquals(3, decryptor.chunks);
+        assertArrayEquals(plain, reader.readFully());
+    }
+
+    @Test
+    public void mappedAssetKeepsRecentChunksDecrypted() throws Exception {
+        AssetEncryptor encryptor = new AssetEncryptor(AssetEncryptor.parseHex(KEY_ID),
+                AssetEncryptor.parseHex(KEY), 1024);
+        byte[] plain = plain(20000);
+        byte[] encrypted = encryptor.encrypt(plain);
+        //stored at an offset inside a larger file, like a raw resource in an apk
+        File file = folder.newFile("app.apk");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[777]);
+            out.write(encrypted);
+            out.write(new byte[55]);
+        }
+        JvmDecryptor decryptor = new JvmDecryptor();
+        EncryptedAssetReader reader;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            reader = EncryptedAssetReader.map(in.getChannel(), 777, encrypted.length,
+                    decryptor, 2);
+        }
+
+        byte[] out = new byte[10];
+        //3 is read again before 12 comes in, so 7 is the one dropped
+        int[] chunks = {3, 3, 7, 3, 12, 3, 7};
+        int[] decrypted = {1, 1, 2, 2, 3, 3, 4};
+        for (int i = 0; i < chunks.length; i++) {
+            int at = chunks[i] * 1024 + 100;
+            assertEquals(10, reader.read(at, out, 0, 10));
+            assertArrayEquals(Arrays.copyOfRange(plain, at, at + 10), out);
+            assertEquals("after reading chunk " + chunks[i], decrypted[i], decryptor.chunks);
+        }
+
+        //streamed through the cache
+        InputStream stream = reader.newInputStream();
+        assertEquals(1024, stream.skip(1024));
+        byte[] rest = new byte[plain.length];
+        int n = 0;
+        for (int r; (r = stream.read(rest, n, rest.length - n)) > 0; ) {
+            n += r;
+        }
+        assertEquals(plain.length - 1024, n);
+        assertArrayEquals(Arrays.copyOfRange(plain, 1024, plain.length), Arrays.copyOf(rest, n));
+        assertEquals(-1, stream.read());
+    }
+
+    @Test
+    public void headerClaimingAHugeIndexIsRejectedUpFront() throws Exception {
+        AssetEncryptor encryptor = new AssetEncryptor(AssetEncryptor.parseHex(KEY_ID),
+                AssetEncryptor.parseHex(KEY), 1024);
+        byte[] encrypted = encryptor.encrypt(plain(5000));
+        //chunk count at the end of the fixed header, disagreeing with length and chunk size
+        ByteBuffer.wrap(encrypted).putInt(EncryptedAsset.FIXED_HEADER_SIZE - 4, 200000000);
+        try {
+            decrypt(encrypted);
+            fail("the chunk count does not match the length");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Corrupt"));
+        }
+
+        //consistent but far more index than the stream holds
+        ByteBuffer header = ByteBuffer.wrap(encrypted);
+        header.putInt(EncryptedAsset.FIXED_HEADER_SIZE - 12, Integer.MAX_VALUE);
+        header.putInt(EncryptedAsset.FIXED_HEADER_SIZE - 8, 16);
+        header.putInt(EncryptedAsset.FIXED_HEADER_SIZE - 4,
+                EncryptedAsset.chunkCount(Integer.MAX_VALUE, 16));
+        try {
+            decrypt(encrypted);
+            fail("the index is truncated");
+        } catch (EOFException e) {
+            //ran out of stream
+        }
+    }
+
+    @Test
+    public void headerClaimingHugeChunksRunsOutOfStreamFirst() throws Exception {
+        AssetEncryptor encryptor = new AssetEncryptor(AssetEncryptor.parseHex(KEY_ID),
+                AssetEncryptor.parseHex(KEY), 1024);
+        byte[] encrypted = encryptor.encrypt(plain(5000));
+        //two chunks of a gigabyte each, consistent and a small index
+        int chunkSize = 1 << 30;
+        ByteBuffer header = ByteBuffer.wrap(encrypted);
+        header.putInt(EncryptedAsset.FIXED_HEADER_SIZE - 12, chunkSize + 1);
+        header.putInt(EncryptedAsset.FIXED_HEADER_SIZE - 8, chunkSize);
+        header.putInt(EncryptedAsset.FIXED_HEADER_SIZE - 4, 2);
+        try {
+            decrypt(encrypted);
+            fail("the chunks are truncated");
+        } catch (EOFException e) {
+            //ran out of stream, nothing the size of the claim was allocated
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void damagedChunkFailsItsCheck() throws Exception {
+        AssetEncryptor encryptor = new AssetEncryptor(AssetEncryptor.parseHex(KEY_ID),
+                AssetEncryptor.parseHex(KEY), 1024);
+        byte[] encrypted = encryptor.encrypt(plain(5000));
+        encrypted[encrypted.length - 100] ^= 1;
+        decrypt(encrypted);
+    }
+
+    @Test
+    public void encryptsEverySourceFromAKeyFile() throws Exception {
+        File keyFile = folder.newFile("asset.key");
+        try (OutputStream out = new FileOutputStream(keyFile)) {
+            out.write(("# key id, then key\n" + KEY_ID + "\n" + KEY + "\n").getBytes("UTF-8"));
+        }
+        AssetEncryptor encryptor = AssetEncryptor.fromKeyFile(keyFile);
+
+        List<File> sources = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            File source = folder.newFile("sprite" + i + ".png");
+            try (OutputStream out = new FileOutputStream(source)) {
+                byte[] data = new byte[1000 + i * 77];
+                Arrays.fill(data, (byte) i);
+                out.write(data);
+            }
+            sources.add(source);
+        }
+        File outputDir = new File(folder.getRoot(), "raw");
+        List<File> outputs = encryptor.encryptAll(sources, outputDir);
+
+        assertEquals(sources.size(), outputs.size());
+        for (int i = 0; i < outputs.size(); i++) {
+            assertEquals(new File(outputDir, "sprite" + i + "_enc.bin"), outputs.get(i));
+            byte[] encrypted;
+            try (RandomAccessFile in = new RandomAccessFile(outputs.get(i), "r")) {
+                encrypted = new byte[(int) in.length()];
+                in.readFully(encrypted);
+            }
+            byte[] expected = new byte[1000 + i * 77];
+            Arrays.fill(expected, (byte) i);
+            assertArrayEquals(expected, decrypt(encrypted));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.yufang.spacefighter.crypto;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the license exchange against the mock server, offline.
+ */
+public class LicenseExchangeTest {
+
+    private static final String URL = "http://license.test/proxy";
+
+    private static byte[] bytes(String s) throws Exception {
+        return s.getBytes("US-ASCII");
+    }
+
+    @Test
+    public void replaysRecordedResponsesInTurn() throws Exception {
+        MockLicenseServer server = new MockLicenseServer(1)
+                .respond(URL, 200, bytes("first"))
+                .respond(URL, 200, bytes("second"));
+        LicenseExchange exchange = new LicenseExchange(server);
+
+        assertArrayEquals(bytes("first"), exchange.post(URL + "?a", null, null));
+        assertArrayEquals(bytes("second"), exchange.post(URL, new byte[4], null));
+        assertArrayEquals(bytes("first"), exchange.post(URL, null, null));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void glsHeaderIsStrippedFromTheDrmMessage() throws Exception {
+        byte[] message = {0, 13, 10, 13, 10, (byte) 0xFF, 'G'};
+        byte[] header = bytes("GLS/1.0 0 OK\r\nX\r\n\r\n");
+        byte[] wrapped = Arrays.copyOf(header, header.length + message.length);
+        System.arraycopy(message, 0, wrapped, header.length, message.length);
+
+        assertArrayEquals(message, LicenseExchange.parseResponseBody(wrapped));
+        assertArrayEquals(message, LicenseExchange.parseResponseBody(message));
+        assertNull(LicenseExchange.parseResponseBody(bytes("GLS/2.0 0 OK\r\n\r\n")));
+        assertNull(LicenseExchange.parseResponseBody(bytes("GLS/1.0 0 OK")));
+    }
+
+    @Test
+    public void slowServerTimesOutOnEveryAttempt() throws Exception {
+        MockLicenseServer server = new MockLicenseServer(2)
+                .respond(URL, 200, bytes("late"))
+                .setLatency(2000, 2000);
+        LicenseExchange exchange = new LicenseExchange(server, 50, 3);
+
+        long start = System.nanoTime();
+        try {
+            exchange.post(URL, null, null);
+            fail("every attempt should time out");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("50ms"));
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertEquals(3, server.getRequestCount());
+        //given up at the time limit, not after the server's latency
+        assertTrue(millis + "ms", millis < 1000);
+    }
+
+    @Test
+    public void errorsAreRetriedAndUnknownUrlsAreNot200() throws Exception {
+        MockLicenseServer server = new MockLicenseServer(3)
+                .respond(URL, 200, bytes("ok"))
+                .setFailureRates(0, 1);
+        try {
+            new LicenseExchange(server, 1000, 2).post(URL, null, null);
+            fail("a server that always errs never answers 200");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("500"));
+        }
+        assertEquals(2, server.getRequestCount());
+        assertEquals(2, server.getFailureCount());
+
+        try {
+            new LicenseExchange(new MockLicenseServer(3), 1000, 1).post(URL, null, null);
+            fail("nothing is recorded");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("404"));
+        }
+    }
+
+    @Test
+    public void flakySlowServerUnderLoad() throws Exception {
+        //a fifth of the requests fail one way or the other, some are too slow
+        final MockLicenseServer server = new MockLicenseServer(4)
+                .respond(URL, 200, bytes("license"))
+                .setLatency(0, 55)
+                .setFailureRates(0.1, 0.1);
+        final LicenseExchange exchange = new LicenseExchange(server, 50, 10);
+        int clients = 64;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                results.add(pool.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        return exchange.post(URL, new byte[64], null);
+                    }
+                }));
+            }
+            for (Future<byte[]> result : results) {
+                assertTrue(Arrays.equals(bytes("license"), result.get()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        //every retry is another request
+        assertTrue(server.getRequestCount() > clients);
+        assertTrue(server.getFailureCount() > 0);
+    }
+}
@@ -0,0 +1,158 @@
+package com.yufang.spacefighter.crypto;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renews with a fake license server on short timings.
+ */
+public class LicenseRenewalSchedulerTest {
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    //records every state it hears, in order
+    private static class States implements LicenseRenewalScheduler.Listener {
+
+        final List<Integer> states = new ArrayList<>();
+
+        @Override
+        public synchronized void onLicenseStateChanged(int state, long expiresAt) {
+            states.add(state);
+        }
+
+        synchronized List<Integer> get() {
+            return new ArrayList<>(states);
+        }
+    }
+
+    @Test
+    public void concurrentRenewalsShareOneFetch() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger fetches = new AtomicInteger();
+        LicenseRenewalScheduler scheduler = new LicenseRenewalScheduler(
+                new LicenseRenewalScheduler.Renewer() {
+                    @Override
+                    public long renew() throws Exception {
+                        fetches.incrementAndGet();
+                        release.await();
+                        return System.currentTimeMillis() + 60000;
+                    }
+                }, executor, 1000, 60000, 1000);
+
+        Future<Long> first = scheduler.renew();
+        assertSame(first, scheduler.renew());
+        scheduler.keyExpired();
+        assertSame(first, scheduler.renew());
+        assertEquals(LicenseRenewalScheduler.STATE_RENEWING, scheduler.getState());
+        release.countDown();
+
+        assertTrue(first.get(2, TimeUnit.SECONDS) > System.currentTimeMillis());
+        assertEquals(1, fetches.get());
+        assertEquals(LicenseRenewalScheduler.STATE_VALID, scheduler.getState());
+        assertTrue(scheduler.isValid());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void renewsBeforeTheLicenseExpires() throws Exception {
+        final CountDownLatch renewed = new CountDownLatch(3);
+        final List<Long> lapses = new ArrayList<>();
+        final long[] expiry = {0};
+        LicenseRenewalScheduler scheduler = new LicenseRenewalScheduler(
+                new LicenseRenewalScheduler.Renewer() {
+                    @Override
+                    public long renew() {
+                        long now = System.currentTimeMillis();
+                        //how long the last license was left when it was renewed
+                        if (expiry[0] != 0) {
+                            lapses.add(expiry[0] - now);
+                        }
+                        expiry[0] = now + 300;
+                        renewed.countDown();
+                        return expiry[0];
+                    }
+                }, executor, 200, 60000, 1000);
+        scheduler.renew();
+
+        assertTrue(renewed.await(2, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        for (long left : lapses) {
+            assertTrue("renewed " + left + "ms before expiry", left > 0);
+        }
+    }
+
+    @Test
+    public void heartbeatRenewsLicensesThatDoNotExpire() throws Exception {
+        final CountDownLatch renewed = new CountDownLatch(3);
+        LicenseRenewalScheduler scheduler = new LicenseRenewalScheduler(
+                new LicenseRenewalScheduler.Renewer() {
+                    @Override
+                    public long renew() {
+                        renewed.countDown();
+                        return Long.MAX_VALUE;
+                    }
+                }, executor, 1000, 50, 1000);
+        scheduler.renew();
+
+        assertTrue(renewed.await(2, TimeUnit.SECONDS));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void failedRenewalsRetryUntilOneWorks() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final CountDownLatch renewed = new CountDownLatch(1);
+        LicenseRenewalScheduler scheduler = new LicenseRenewalScheduler(
+                new LicenseRenewalScheduler.Renewer() {
+                    @Override
+                    public long renew() throws Exception {
+                        if (attempts.incrementAndGet() < 3) {
+                            throw new IOException("server down");
+                        }
+                        renewed.countDown();
+                        return System.currentTimeMillis() + 60000;
+                    }
+                }, executor, 1000, 60000, 20);
+        States states = new States();
+        scheduler.setListener(states);
+
+        try {
+            scheduler.renew().get();
+            fail("first fetch should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertTrue(renewed.await(2, TimeUnit.SECONDS));
+        //the listener hears of the success after the fetch returns, on the executor
+        for (int i = 0; i < 100 && states.get().size() < 6; i++) {
+            Thread.sleep(10);
+        }
+        scheduler.shutdown();
+
+        assertEquals(3, attempts.get());
+        int renewing = LicenseRenewalScheduler.STATE_RENEWING;
+        int expired = LicenseRenewalScheduler.STATE_EXPIRED;
+        //no license yet, so each failure leaves it expired
+        assertEquals(Arrays.asList(renewing, expired, renewing, expired, renewing,
+                LicenseRenewalScheduler.STATE_VALID), states.get());
+    }
+}
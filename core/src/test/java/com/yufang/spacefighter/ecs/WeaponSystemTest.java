@@ -0,0 +1,70 @@
+package com.yufang.spacefighter.ecs;
+
+import com.yufang.spacefighter.sim.GameSimulation;
+import com.yufang.spacefighter.sim.SimConfig;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the swept bullet test and the bullet pool.
+ */
+public class WeaponSystemTest {
+
+    @Test
+    public void fastBulletDoesNotTunnel() {
+        //a 10 px wide box, the bullet jumps from well before it to well after it
+        assertTrue(WeaponSystem.segmentHitsBox(-50, 5, 60, 5, 10, 10));
+        //same jump, passing below and beside it
+        assertFalse(WeaponSystem.segmentHitsBox(-50, 15, 60, 15, 10, 10));
+        assertFalse(WeaponSystem.segmentHitsBox(-50, 5, -1, 5, 10, 10));
+        //diagonal that clips the corner, and one that misses it
+        assertTrue(WeaponSystem.segmentHitsBox(-10, 10, 10, -10, 10, 10));
+        assertFalse(WeaponSystem.segmentHitsBox(-10, 9, 9, -10, 10, 10));
+        //standing still inside
+        assertTrue(WeaponSystem.segmentHitsBox(3, 3, 3, 3, 10, 10));
+    }
+
+    @Test
+    public void bulletHitsHostileMovingTowardsIt() {
+        EntityType hostile = new EntityType();
+        hostile.behavior = EntityType.BEHAVIOR_HOSTILE;
+        hostile.width = 20;
+        hostile.height = 20;
+        EntityType boom = new EntityType();
+        boom.id = 1;
+        EntityType[] types = {hostile, boom};
+
+        World w = new World(4);
+        int e = w.create(hostile, 100, 0, 0);
+        //the hostile moved 40 px left this tick, past where the bullet ends up
+        w.prevX[e] = 140;
+
+        Projectiles p = new Projectiles(4);
+        p.add(90, 10, 35, 0);
+        WeaponSystem weapons = new WeaponSystem(new SimConfig(), boom);
+        assertEquals(1, weapons.update(p, w, types));
+        assertEquals(0, p.count);
+        assertEquals(2, w.count);
+        assertFalse(w.hasFlag(e, World.FLAG_ARMED));
+    }
+
+    @Test
+    public void fullPoolDropsShots() {
+        SimConfig config = new SimConfig();
+        config.fireInterval = 1;
+        config.volley = 9;
+        config.bulletSpread = 4;
+        config.bulletCapacity = 20;
+        GameSimulation simulation = new GameSimulation(config, 3);
+        simulation.step(false);
+        simulation.step(false);
+        simulation.step(false);
+        Projectiles p = simulation.getProjectiles();
+        assertTrue(p.count <= 20);
+        for (int i = 0; i < p.count; i++) {
+            assertTrue(Math.abs(p.vy[i]) <= 4);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.yufang.spacefighter.ecs;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the component storage: growth, swap-removal and expiring entities.
+ */
+public class WorldTest {
+
+    private static EntityType type(int id, int width, int height, int lifetime) {
+        EntityType t = new EntityType();
+        t.id = id;
+        t.width = width;
+        t.height = height;
+        t.lifetime = lifetime;
+        return t;
+    }
+
+    @Test
+    public void destroyMovesLastEntityIntoSlot() {
+        World w = new World(1);
+        EntityType t = type(0, 10, 10, -1);
+        for (int i = 0; i < 5; i++) {
+            w.create(t, i * 100, i, i);
+        }
+        assertEquals(5, w.count);
+
+        w.destroy(1);
+        assertEquals(4, w.count);
+        assertEquals(400, w.x[1]);
+        assertEquals(4, w.speed[1]);
+        assertFalse(w.overlaps(0, 1));
+    }
+
+    @Test
+    public void lifetimeSystemRemovesExpiredEntities() {
+        World w = new World(4);
+        EntityType forever = type(0, 10, 10, -1);
+        EntityType once = type(1, 10, 10, 1);
+        EntityType twice = type(2, 10, 10, 2);
+        w.create(forever, 0, 0, 0);
+        w.create(once, 5, 5, 0);
+        w.create(twice, 8, 8, 0);
+        w.create(once, 20, 20, 0);
+        assertTrue(w.overlaps(0, 1));
+
+        LifetimeSystem lifetimes = new LifetimeSystem();
+        lifetimes.update(w);
+        assertEquals(2, w.count);
+        assertEquals(0, w.type[0]);
+        assertEquals(2, w.type[1]);
+
+        lifetimes.update(w);
+        assertEquals(1, w.count);
+    }
+}
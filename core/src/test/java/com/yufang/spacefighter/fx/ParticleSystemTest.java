@@ -0,0 +1,59 @@
+package com.yufang.spacefighter.fx;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks particle lifetimes and how bursts shrink with the budget.
+ */
+public class ParticleSystemTest {
+
+    private static ParticleEmitter emitter(int count, int minLife, int maxLife) {
+        ParticleEmitter e = new ParticleEmitter();
+        e.count = count;
+        e.minLife = minLife;
+        e.maxLife = maxLife;
+        return e;
+    }
+
+    @Test
+    public void particlesExpireWithTheirEmitter() {
+        ParticleEmitter shortLived = emitter(10, 3, 3);
+        ParticleEmitter longLived = emitter(5, 6, 6);
+        ParticleSystem p = new ParticleSystem(100, shortLived, longLived);
+        p.emit(shortLived, 0, 0);
+        p.emit(longLived, 0, 0);
+        p.emit(shortLived, 50, 50);
+        assertEquals(25, p.count);
+
+        p.update();
+        p.update();
+        assertEquals(25, p.count);
+        p.update();
+        assertEquals(5, p.count);
+        for (int i = 0; i < p.count; i++) {
+            assertEquals(longLived.id, p.emitter[i]);
+        }
+        p.update();
+        p.update();
+        p.update();
+        assertEquals(0, p.count);
+    }
+
+    @Test
+    public void budgetThinsBurstsAndCapsThePool() {
+        ParticleEmitter e = emitter(40, 10, 10);
+        ParticleSystem p = new ParticleSystem(100, e);
+        p.setBudget(25);
+        p.emit(e, 0, 0);
+        assertEquals(10, p.count);
+        p.emit(e, 0, 0);
+        p.emit(e, 0, 0);
+        assertEquals(25, p.count);
+
+        p.setBudget(0);
+        p.emit(e, 0, 0);
+        assertEquals(25, p.count);
+    }
+}
@@ -0,0 +1,78 @@
+package com.yufang.spacefighter.input;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InputQueueTest {
+
+    @Test
+    public void eventsApplyAtTheTickTheyHappenIn() throws Exception {
+        InputQueue queue = new InputQueue(16);
+        BoostInput input = new BoostInput(queue);
+        queue.offer(25, true);
+        queue.offer(28, false);
+        queue.offer(55, true);
+
+        assertFalse(input.advance(10));
+        // a tap shorter than a tick still boosts for one tick
+        assertTrue(input.advance(30));
+        assertFalse(input.advance(40));
+        assertFalse(input.advance(50));
+        assertTrue(input.advance(60));
+    }
+
+    @Test
+    public void resetDropsTouchesFromBeforeAPause() throws Exception {
+        InputQueue queue = new InputQueue(16);
+        BoostInput input = new BoostInput(queue);
+        queue.offer(5, true);
+        assertTrue(input.advance(10));
+        queue.offer(15, false);
+        queue.offer(18, true);
+
+        input.reset();
+        assertFalse(input.advance(100));
+        assertEquals(-1, queue.peek());
+    }
+
+    @Test
+    public void fullQueueDropsNewEvents() throws Exception {
+        InputQueue queue = new InputQueue(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i, true));
+        }
+        assertFalse(queue.offer(4, true));
+        assertEquals(0, InputQueue.timeOf(queue.peek()));
+    }
+
+    @Test
+    public void consumerSeesProducerEventsInOrder() throws Exception {
+        final InputQueue queue = new InputQueue(64);
+        final int count = 20000;
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= count; i++) {
+                    while (!queue.offer(i, (i & 1) != 0)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        };
+        producer.start();
+        long expected = 1;
+        while (expected <= count) {
+            long entry = queue.peek();
+            if (entry == -1) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(expected, InputQueue.timeOf(entry));
+            assertEquals((expected & 1) != 0, InputQueue.isBoosting(entry));
+            queue.remove();
+            expected++;
+        }
+        producer.join();
+    }
+}
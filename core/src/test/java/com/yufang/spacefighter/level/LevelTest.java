@@ -0,0 +1,121 @@
+package com.yufang.spacefighter.level;
+
+import com.yufang.spacefighter.ecs.World;
+import com.yufang.spacefighter.replay.Replay;
+import com.yufang.spacefighter.replay.ReplayPlayer;
+import com.yufang.spacefighter.replay.ReplayRecorder;
+import com.yufang.spacefighter.sim.GameSimulation;
+import com.yufang.spacefighter.sim.SimConfig;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles level sources, reads them back from the binary pack and plays their waves.
+ */
+public class LevelTest {
+
+    private static final String SOURCE = ""
+            + "# two levels\n"
+            + "level Classic\n"
+            + "\n"
+            + "level Swarm   # waves\n"
+            + "stars 40\n"
+            + "misses 5\n"
+            + "score 2 50\n"
+            + "wave 0 enemy 8 6\n"
+            + "wave 100 enemies 3 friend 12 4\n";
+
+    private static LevelPack compile(String source) throws IOException {
+        LevelCompiler compiler = new LevelCompiler();
+        compiler.compile(new StringReader(source), "test.lvl");
+        return LevelPack.wrap(ByteBuffer.wrap(compiler.toByteArray()));
+    }
+
+    @Test
+    public void packReadsBackWhatWasCompiled() throws IOException {
+        LevelPack pack = compile(SOURCE);
+        assertEquals(2, pack.getLevelCount());
+
+        Level classic = pack.getLevel(0);
+        assertEquals("Classic", classic.getName());
+        assertEquals(new SimConfig().starCount, classic.getStarCount());
+        assertEquals(0, classic.getWaveCount());
+        assertNull(classic.applyTo(new SimConfig()).waves);
+
+        Level swarm = pack.getLevel(1);
+        assertEquals("Swarm", swarm.getName());
+        assertEquals(40, swarm.getStarCount());
+        assertEquals(5, swarm.getMissLimit());
+        assertEquals(2, swarm.getScorePerTick());
+        assertEquals(50, swarm.getScorePerKill());
+        assertEquals(2, swarm.getWaveCount());
+        assertEquals(8, swarm.getWave(0, SimConfig.WAVE_ENEMY_SPEED_BASE));
+        assertEquals(1, swarm.getWave(0, SimConfig.WAVE_ENEMY_COUNT));
+        //later waves keep what they do not set
+        assertEquals(100, swarm.getWave(1, SimConfig.WAVE_START_TICK));
+        assertEquals(3, swarm.getWave(1, SimConfig.WAVE_ENEMY_COUNT));
+        assertEquals(6, swarm.getWave(1, SimConfig.WAVE_ENEMY_SPEED_RANGE));
+        assertEquals(12, swarm.getWave(1, SimConfig.WAVE_FRIEND_SPEED_BASE));
+    }
+
+    @Test
+    public void errorsNameTheLine() {
+        try {
+            compile("level A\nwave 10\nwave 5\n");
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("test.lvl:3:"));
+        }
+    }
+
+    @Test
+    public void corruptPackIsRejected() throws IOException {
+        LevelCompiler compiler = new LevelCompiler();
+        compiler.compile(new StringReader(SOURCE), "test.lvl");
+        byte[] data = compiler.toByteArray();
+        //wave count of the second level far past the end
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.putInt(buffer.getInt(LevelPack.HEADER_SIZE + 4) + Level.WAVE_COUNT, 1000);
+        try {
+            LevelPack.wrap(ByteBuffer.wrap(data));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void wavesAddEnemiesAndReplay() throws IOException {
+        SimConfig config = compile(SOURCE).getLevel(1).applyTo(new SimConfig());
+        GameSimulation simulation = new GameSimulation(config, 2);
+        ReplayRecorder recorder = new ReplayRecorder(simulation);
+        while (simulation.getTick() < 150 && !simulation.isGameOver()) {
+            boolean boost = simulation.getTick() % 40 < 15;
+            recorder.record(simulation.getTick(), boost);
+            simulation.step(boost);
+        }
+        assertFalse(simulation.isGameOver());
+        assertEquals(3, countEnemies(simulation));
+
+        Replay replay = Replay.fromByteArray(recorder.toReplay().toByteArray());
+        assertEquals(40, replay.getConfig().starCount);
+        GameSimulation replayed = new ReplayPlayer(replay).play();
+        assertEquals(simulation.stateHash(), replayed.stateHash());
+    }
+
+    private static int countEnemies(GameSimulation simulation) {
+        World world = simulation.getWorld();
+        int count = 0;
+        for (int e = 0; e < world.count; e++) {
+            if (world.type[e] == GameSimulation.TYPE_ENEMY) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
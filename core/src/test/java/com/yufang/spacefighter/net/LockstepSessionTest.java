@@ -0,0 +1,139 @@
+package com.yufang.spacefighter.net;
+
+import com.yufang.spacefighter.sim.GameSimulation;
+import com.yufang.spacefighter.sim.SimConfig;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs several sessions against each other over loopback UDP and checks that they all end
+ * up in the state of one simulation fed everybody's input directly.
+ */
+public class LockstepSessionTest {
+
+    private static final long SEED = 88;
+
+    //the input each player gives while its simulation is at a tick
+    private static boolean boost(int player, long tick) {
+        return ((tick + player * 17) % (31 + player * 6)) < 12;
+    }
+
+    //drops every fourth packet it sends, a different player's each time with three peers
+    private static class LossyTransport implements PacketTransport {
+
+        private final PacketTransport transport;
+        private int sent;
+
+        LossyTransport(PacketTransport transport) {
+            this.transport = transport;
+        }
+
+        @Override
+        public void send(int player, ByteBuffer packet) throws IOException {
+            if (++sent % 4 != 0) {
+                transport.send(player, packet);
+            }
+        }
+
+        @Override
+        public int receive(ByteBuffer packet) throws IOException {
+            return transport.receive(packet);
+        }
+    }
+
+    private static SimConfig config(int players) {
+        SimConfig config = new SimConfig();
+        config.playerCount = players;
+        //no misses to end the game, so it runs long enough to check
+        config.missLimit = Integer.MAX_VALUE;
+        return config;
+    }
+
+    private static void play(int players, int delay, boolean lossy, int ticks,
+            boolean expectRollbacks) throws Exception {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        UdpTransport[] transports = new UdpTransport[players];
+        for (int p = 0; p < players; p++) {
+            transports[p] = new UdpTransport(new InetSocketAddress(loopback, 0), players);
+        }
+        LockstepSession[] sessions = new LockstepSession[players];
+        try {
+            for (int p = 0; p < players; p++) {
+                for (int q = 0; q < players; q++) {
+                    transports[p].setPlayerAddress(q,
+                            new InetSocketAddress(loopback, transports[q].getLocalPort()));
+                }
+                PacketTransport t = lossy ? new LossyTransport(transports[p]) : transports[p];
+                sessions[p] = new LockstepSession(
+                        new GameSimulation(config(players), SEED), t, p, delay);
+            }
+
+            //round robin on one thread, each session stops simulating at the end tick
+            //but keeps exchanging packets until everyone has everything
+            for (int round = 0; round < ticks * 50; round++) {
+                boolean done = true;
+                for (int p = 0; p < players; p++) {
+                    LockstepSession s = sessions[p];
+                    GameSimulation sim = s.getSimulation();
+                    if (sim.getTick() < ticks && !sim.isGameOver()) {
+                        s.tick(boost(p, sim.getTick()));
+                    } else {
+                        s.poll();
+                    }
+                    done &= (sim.getTick() >= ticks || sim.isGameOver())
+                            && s.getConfirmedTick() >= sim.getTick() - 1;
+                }
+                if (done) {
+                    break;
+                }
+                if (round % 16 == 0) {
+                    Thread.sleep(1);
+                }
+            }
+
+            GameSimulation reference = new GameSimulation(config(players), SEED);
+            while (reference.getTick() < sessions[0].getSimulation().getTick()) {
+                long t = reference.getTick();
+                int mask = 0;
+                for (int p = 0; p < players; p++) {
+                    if (t >= delay && boost(p, t - delay)) {
+                        mask |= 1 << p;
+                    }
+                }
+                reference.step(mask);
+            }
+            for (LockstepSession s : sessions) {
+                assertEquals(reference.getTick(), s.getSimulation().getTick());
+                assertEquals(reference.stateHash(), s.getSimulation().stateHash());
+            }
+            if (expectRollbacks) {
+                int rollbacks = 0;
+                for (LockstepSession s : sessions) {
+                    rollbacks += s.getRollbackCount();
+                }
+                assertTrue(rollbacks > 0);
+            }
+        } finally {
+            for (UdpTransport t : transports) {
+                t.close();
+            }
+        }
+    }
+
+    @Test
+    public void twoPlayersWithoutDelayRollBackToTheSameState() throws Exception {
+        play(2, 0, false, 400, true);
+    }
+
+    @Test
+    public void fourPlayersStayInStepDespiteLoss() throws Exception {
+        play(4, 2, true, 400, false);
+    }
+}
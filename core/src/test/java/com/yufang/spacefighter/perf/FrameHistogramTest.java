@@ -0,0 +1,31 @@
+package com.yufang.spacefighter.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameHistogramTest {
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() throws Exception {
+        FrameHistogram histogram = new FrameHistogram();
+        for (long ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1000000L);
+        }
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(50e6, histogram.getValueAtPercentile(50), 50e6 * 0.04);
+        assertEquals(99e6, histogram.getValueAtPercentile(99), 99e6 * 0.04);
+        assertEquals(100000000L, histogram.getValueAtPercentile(100));
+        assertEquals(20, histogram.getCountAbove(80500000L), 1);
+    }
+
+    @Test
+    public void emptyAndResetReportZero() throws Exception {
+        FrameHistogram histogram = new FrameHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        histogram.record(17);
+        assertEquals(17, histogram.getValueAtPercentile(50));
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+    }
+}
@@ -0,0 +1,89 @@
+package com.yufang.spacefighter.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QualityGovernorTest {
+
+    private static final long BUDGET = 16666667L;
+
+    private static void frames(QualityGovernor governor, int count, long interval) {
+        for (int i = 0; i < count; i++) {
+            governor.onFrame(interval);
+        }
+    }
+
+    @Test
+    public void slowFramesStepDownAndRecoverWithHysteresis() throws Exception {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        frames(governor, 120, 30000000L);
+        assertEquals(QualityGovernor.LEVEL_HALF_STARS, governor.getLevel());
+
+        // a few good windows are not enough to step back up
+        frames(governor, 120 * 4, BUDGET);
+        assertEquals(QualityGovernor.LEVEL_HALF_STARS, governor.getLevel());
+        frames(governor, 120, BUDGET);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    }
+
+    @Test
+    public void hotOrLowBatteryDeviceIsCapped() throws Exception {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        governor.setDeviceState(10, false, 300, false);
+        frames(governor, 120, BUDGET);
+        assertEquals(QualityGovernor.LEVEL_CAPPED, governor.getLevel());
+        assertEquals(2 * BUDGET, governor.getFrameCapNanos());
+
+        // still warm, no stepping up however good the frames are
+        governor.setDeviceState(80, true, 420, false);
+        frames(governor, 120 * 10, BUDGET);
+        assertEquals(QualityGovernor.LEVEL_CAPPED, governor.getLevel());
+
+        governor.setDeviceState(80, true, 300, false);
+        frames(governor, 120 * 5, BUDGET);
+        assertEquals(QualityGovernor.LEVEL_DIRTY_RECTS, governor.getLevel());
+        assertEquals(0, governor.getVisibleStars(100));
+    }
+
+    @Test
+    public void sleepPacedLoopRecoversOnceTheLoadGoesAway() throws Exception {
+        //the sleep driver aims at 17ms and its frames take a little longer than that
+        long interval = 17000000L;
+        QualityGovernor governor = new QualityGovernor(interval);
+        frames(governor, 120, 30000000L);
+        frames(governor, 120, 30000000L);
+        assertEquals(QualityGovernor.LEVEL_DIRTY_RECTS, governor.getLevel());
+
+        frames(governor, 120 * 10, 19500000L);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    }
+
+    @Test
+    public void levelThatCannotHoldWaitsLongerToStepUpAgain() throws Exception {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        frames(governor, 120, 30000000L);
+        frames(governor, 120 * 5, BUDGET);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+
+        //full quality is too slow right away, back down
+        frames(governor, 120, 30000000L);
+        assertEquals(QualityGovernor.LEVEL_HALF_STARS, governor.getLevel());
+        frames(governor, 120 * 9, BUDGET);
+        assertEquals(QualityGovernor.LEVEL_HALF_STARS, governor.getLevel());
+        frames(governor, 120, BUDGET);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    }
+
+    @Test
+    public void measuredBudgetReplacesTheNominalOne() throws Exception {
+        //started at 60Hz, the panel turned out to run at 120Hz
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        frames(governor, 120, BUDGET);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+
+        governor.setBaseBudgetNanos(BUDGET / 2);
+        frames(governor, 120, BUDGET);
+        assertEquals(QualityGovernor.LEVEL_HALF_STARS, governor.getLevel());
+    }
+}
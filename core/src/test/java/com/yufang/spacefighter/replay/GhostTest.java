@@ -0,0 +1,79 @@
+package com.yufang.spacefighter.replay;
+
+import com.yufang.spacefighter.sim.GameSimulation;
+import com.yufang.spacefighter.sim.SimConfig;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Keeps runs in the ghost store and races a live session against one.
+ */
+public class GhostTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Replay run(long seed, int score) {
+        return new Replay(seed, new SimConfig(), 100 + seed, score,
+                new long[]{seed, seed + 10, seed + 25});
+    }
+
+    @Test
+    public void storeKeepsTheBestRunsInOrder() throws Exception {
+        File file = new File(folder.getRoot(), "ghosts.sfg");
+        GhostStore store = new GhostStore(file, 3);
+        assertEquals(0, store.size());
+        assertEquals(0, store.add(run(1, 50)));
+        assertEquals(0, store.add(run(2, 80)));
+        assertEquals(2, store.add(run(3, 20)));
+        //a tie ranks below, and the worst run drops out
+        assertEquals(2, store.add(run(4, 50)));
+        assertEquals(-1, store.add(run(5, 10)));
+
+        //reopened, the index and every replay read back by rank
+        store = new GhostStore(file, 3);
+        assertEquals(3, store.size());
+        long[] seeds = {2, 1, 4};
+        int[] scores = {80, 50, 50};
+        for (int rank = 0; rank < 3; rank++) {
+            assertEquals(scores[rank], store.getScore(rank));
+            assertEquals(100 + seeds[rank], store.getTickCount(rank));
+            Replay replay = store.read(rank);
+            assertEquals(seeds[rank], replay.getSeed());
+            assertEquals(scores[rank], replay.getScore());
+            assertArrayEquals(new long[]{seeds[rank], seeds[rank] + 10, seeds[rank] + 25},
+                    replay.getChangeTicks());
+        }
+    }
+
+    @Test
+    public void ghostFollowsTheRecordedRun() throws Exception {
+        GameSimulation recorded = new GameSimulation(new SimConfig(), 27);
+        ReplayRecorder recorder = new ReplayRecorder(recorded);
+        for (int i = 0; i < 500 && !recorded.isGameOver(); i++) {
+            boolean boost = (i % 29) < 9;
+            recorder.record(recorded.getTick(), boost);
+            recorded.step(boost);
+        }
+        File file = new File(folder.getRoot(), "ghosts.sfg");
+        GhostStore store = new GhostStore(file, 10);
+        store.add(recorder.toReplay());
+
+        Ghost ghost = new Ghost(store.read(0));
+        GameSimulation replayed = new ReplayPlayer(recorder.toReplay()).play();
+        //stepped along with a live session, and past the end of the run
+        for (long tick = 1; tick <= recorded.getTick() + 50; tick++) {
+            ghost.advanceTo(tick);
+        }
+        assertTrue(ghost.isFinished());
+        assertEquals(recorded.getTick(), ghost.getSimulation().getTick());
+        assertEquals(recorded.stateHash(), ghost.getSimulation().stateHash());
+        assertEquals(replayed.stateHash(), ghost.getSimulation().stateHash());
+    }
+}
@@ -0,0 +1,34 @@
+package com.yufang.spacefighter.replay;
+
+import com.yufang.spacefighter.sim.GameSimulation;
+import com.yufang.spacefighter.sim.SimConfig;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips a recorded session through the binary format and the replay player.
+ */
+public class ReplayTest {
+
+    @Test
+    public void recordedRunReplaysToSameState() throws Exception {
+        GameSimulation live = new GameSimulation(new SimConfig(), 99);
+        ReplayRecorder recorder = new ReplayRecorder(live);
+        for (int i = 0; i < 3000 && !live.isGameOver(); i++) {
+            boolean boost = (i % 37) < 11;
+            recorder.record(live.getTick(), boost);
+            live.step(boost);
+        }
+
+        Replay replay = Replay.fromByteArray(recorder.toReplay().toByteArray());
+        assertEquals(99, replay.getSeed());
+        assertEquals(live.getTick(), replay.getTickCount());
+
+        ReplayPlayer player = new ReplayPlayer(replay);
+        GameSimulation replayed = player.play();
+        assertEquals(live.stateHash(), replayed.stateHash());
+        assertTrue(player.verify());
+    }
+}
@@ -0,0 +1,71 @@
+package com.yufang.spacefighter.replay;
+
+import com.yufang.spacefighter.sim.GameSimulation;
+import com.yufang.spacefighter.sim.SimConfig;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Restores a session mid-game and checks it carries on exactly like the original.
+ */
+public class SessionSnapshotTest {
+
+    private static boolean boost(long tick) {
+        return (tick % 41) < 13;
+    }
+
+    private static SimConfig armedWithWaves() {
+        SimConfig config = new SimConfig();
+        config.fireInterval = 6;
+        config.volley = 3;
+        config.bulletSpread = 4;
+        config.waves = new int[]{
+                0, 1, 10, 6, 10, 6,
+                200, 3, 12, 8, 10, 6,
+        };
+        return config;
+    }
+
+    @Test
+    public void restoredSessionCarriesOnIdentically() throws Exception {
+        GameSimulation live = new GameSimulation(armedWithWaves(), 27);
+        ReplayRecorder recorder = new ReplayRecorder(live);
+        for (int i = 0; i < 150; i++) {
+            recorder.record(live.getTick(), boost(live.getTick()));
+            live.step(boost(live.getTick()));
+        }
+        assertFalse(live.isGameOver());
+        assertTrue(live.getProjectiles().count > 0);
+
+        SessionSnapshot snapshot =
+                SessionSnapshot.fromByteArray(SessionSnapshot.toByteArray(recorder));
+        GameSimulation restored = snapshot.getSimulation();
+        assertEquals(live.stateHash(), restored.stateHash());
+
+        ReplayRecorder resumed = new ReplayRecorder(restored, snapshot.getReplay());
+        for (int i = 0; i < 600; i++) {
+            recorder.record(live.getTick(), boost(live.getTick()));
+            live.step(boost(live.getTick()));
+            resumed.record(restored.getTick(), boost(restored.getTick()));
+            restored.step(boost(restored.getTick()));
+            assertEquals(live.stateHash(), restored.stateHash());
+        }
+
+        //the recording spans the whole session, from before and after the snapshot
+        ReplayPlayer player = new ReplayPlayer(resumed.toReplay());
+        assertEquals(live.stateHash(), player.play().stateHash());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedSnapshotIsRejected() throws Exception {
+        GameSimulation live = new GameSimulation(new SimConfig(), 3);
+        ReplayRecorder recorder = new ReplayRecorder(live);
+        live.step(false);
+        byte[] data = SessionSnapshot.toByteArray(recorder);
+        SessionSnapshot.fromByteArray(java.util.Arrays.copyOf(data, data.length - 10));
+    }
+}
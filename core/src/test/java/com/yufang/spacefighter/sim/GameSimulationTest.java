@@ -0,0 +1,79 @@
+package com.yufang.spacefighter.sim;
+
+import com.yufang.spacefighter.ecs.EntityType;
+import com.yufang.spacefighter.ecs.World;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the simulation is reproducible from its seed and input alone.
+ */
+public class GameSimulationTest {
+
+    private static final TickInput PULSE = new TickInput() {
+        @Override
+        public boolean isBoosting(long tick) {
+            return (tick / 20) % 2 == 0;
+        }
+    };
+
+    @Test
+    public void randomMatchesJavaUtilRandom() throws Exception {
+        Random expected = new Random(42);
+        SimRandom actual = new SimRandom(42);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(expected.nextInt(15), actual.nextInt(15));
+        }
+    }
+
+    @Test
+    public void sameSeedAndInputGiveIdenticalState() throws Exception {
+        GameSimulation a = new GameSimulation(new SimConfig(), 1234);
+        GameSimulation b = new GameSimulation(new SimConfig(), 1234);
+        for (int i = 0; i < 5000 && !a.isGameOver(); i++) {
+            boolean boost = PULSE.isBoosting(i);
+            assertEquals(a.step(boost), b.step(boost));
+            assertEquals(a.stateHash(), b.stateHash());
+        }
+        assertEquals(a.getScore(), b.getScore());
+    }
+
+    @Test
+    public void differentSeedsDiverge() throws Exception {
+        GameSimulation a = new GameSimulation(new SimConfig(), 1);
+        GameSimulation b = new GameSimulation(new SimConfig(), 2);
+        assertNotEquals(a.stateHash(), b.stateHash());
+    }
+
+    @Test
+    public void waveMissedAtOnceEndsTheGameAtTheLimit() throws Exception {
+        SimConfig config = new SimConfig();
+        config.waves = new int[]{1, 10, 10, 1, 10, 1};
+        GameSimulation sim = new GameSimulation(config, 7);
+        sim.step(false);
+
+        //every enemy just past the player, well below it, armed to count as a miss
+        World world = sim.getWorld();
+        int hostiles = 0;
+        for (int e = 0; e < world.count; e++) {
+            if (sim.getTypes()[world.type[e]].is(EntityType.BEHAVIOR_HOSTILE)) {
+                world.teleport(e, 60, 600);
+                world.setFlag(e, World.FLAG_ARMED, true);
+                hostiles++;
+            }
+        }
+        world.teleport(sim.getFriend(), 1000, 600);
+        assertTrue(hostiles > config.missLimit);
+
+        int events = sim.step(false);
+        assertNotEquals(0, events & GameSimulation.EVENT_ENEMY_MISSED);
+        assertNotEquals(0, events & GameSimulation.EVENT_GAME_OVER);
+        assertEquals(0, events & GameSimulation.EVENT_FRIEND_DESTROYED);
+        assertTrue(sim.isGameOver());
+        assertEquals(config.missLimit, sim.getCountMisses());
+    }
+}
@@ -0,0 +1,52 @@
+package com.yufang.spacefighter.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the world fits the screen whatever its shape, and the mapping both ways.
+ */
+public class CameraTest {
+
+    private static final float EPSILON = 1e-3f;
+
+    @Test
+    public void wideScreenIsPillarboxed() {
+        Camera c = new Camera(1280, 720);
+        c.setViewport(2400, 1080);
+        assertEquals(1.5f, c.getScale(), EPSILON);
+        //1920 pixels of world centered in 2400
+        assertEquals(240, c.getViewLeft());
+        assertEquals(0, c.getViewTop());
+        assertEquals(2160, c.getViewRight());
+        assertEquals(1080, c.getViewBottom());
+        assertEquals(240f, c.toScreenX(0), EPSILON);
+        assertEquals(1080f, c.toScreenY(720), EPSILON);
+    }
+
+    @Test
+    public void tallScreenIsLetterboxed() {
+        Camera c = new Camera(1280, 720);
+        c.setViewport(640, 480);
+        assertEquals(0.5f, c.getScale(), EPSILON);
+        assertEquals(0, c.getViewLeft());
+        assertEquals(60, c.getViewTop());
+        assertEquals(420, c.getViewBottom());
+    }
+
+    @Test
+    public void zoomKeepsTheCenterAndRoundTrips() {
+        Camera c = new Camera(1280, 720);
+        c.setViewport(1280, 720);
+        c.lookAt(300, 200);
+        c.setZoom(2);
+        assertEquals(640f, c.toScreenX(300), EPSILON);
+        assertEquals(360f, c.toScreenY(200), EPSILON);
+        assertEquals(123f, c.toWorldX(c.toScreenX(123)), EPSILON);
+        assertEquals(45f, c.toWorldY(c.toScreenY(45)), EPSILON);
+        //the world's left edge is on screen, its right one is clamped to the screen
+        assertEquals(40, c.getViewLeft());
+        assertEquals(1280, c.getViewRight());
+    }
+}